@@ -0,0 +1,144 @@
+package dev.aratax.redis.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.BulkOperationResult;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserRedisService;
+import reactor.core.publisher.Flux;
+
+/**
+ * The reactive {@link UserRedisService} side by side with the blocking one on virtual threads
+ * ({@code app.user-store.execution}), through the real Spring context against
+ * {@link LocalRedis}.
+ *
+ * <p>Each invocation issues {@value #BATCH_SIZE} operations with at most {@code concurrency}
+ * in flight, so {@code concurrency=1} shows the cost of one call and higher values show how
+ * each model copes with waiting callers; the blocking one parks a virtual thread per call.
+ * Add {@code -prof gc} for allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExecutionModelBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param("0")
+    public int redisPort;
+
+    @Param({"reactive", "virtual-threads"})
+    public String execution;
+
+    @Param({"1", "64"})
+    public int concurrency;
+
+    @Param("1000")
+    public int userCount;
+
+    private LocalRedis redis;
+    private ConfigurableApplicationContext context;
+    private UserRedisService service;
+    private List<User> users;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        List<User> next(List<User> users, int count) {
+            List<User> batch = IntStream.range(next, next + count)
+                    .mapToObj(i -> users.get(i % users.size()))
+                    .toList();
+            next = (next + count) % users.size();
+            return batch;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redis = LocalRedis.start(redisPort);
+        context = new SpringApplicationBuilder(RedisApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("replica")
+                .run("--spring.data.redis.master.host=localhost",
+                        "--spring.data.redis.master.port=" + redis.port(),
+                        "--spring.data.redis.replicas[0].host=localhost",
+                        "--spring.data.redis.replicas[0].port=" + redis.port(),
+                        "--spring.data.redis.read-from=master",
+                        // keep every released connection rather than reconnect under load
+                        "--spring.data.redis.lettuce.pool.max-idle=10",
+                        "--app.user-store.execution=" + execution,
+                        "--logging.level.root=WARN",
+                        "--logging.level.dev.aratax.redis=WARN",
+                        "--logging.level.org.springframework.data.redis=WARN");
+        service = context.getBean(UserRedisService.class);
+        users = IntStream.range(0, userCount)
+                .mapToObj(ExecutionModelBenchmark::user)
+                .toList();
+        service.deleteAll().block();
+        service.saveAll(users).blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.deleteAll().block();
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<User> findById(Cursor cursor) {
+        return Flux.fromIterable(cursor.next(users, BATCH_SIZE))
+                .flatMap(user -> service.findById(user.getId()), concurrency)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<User> save(Cursor cursor) {
+        return Flux.fromIterable(cursor.next(users, BATCH_SIZE))
+                .flatMap(service::save, concurrency)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BulkOperationResult> saveAll(Cursor cursor) {
+        return service.saveAll(cursor.next(users, BATCH_SIZE)).collectList().block();
+    }
+
+    private static User user(int i) {
+        User user = new User("bench-" + i, "Benchmark User " + i, "user" + i + "@example.com", 20 + i % 60);
+        user.setCreatedAt(LocalDateTime.of(2023, 12, 1, 10, 30));
+        user.setUpdatedAt(LocalDateTime.of(2023, 12, 1, 15, 45));
+        return user;
+    }
+}
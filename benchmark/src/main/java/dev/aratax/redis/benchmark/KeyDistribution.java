@@ -0,0 +1,69 @@
+package dev.aratax.redis.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks which of {@code keys} users the next request of a {@link LoadTest} targets.
+ */
+interface KeyDistribution {
+
+    /**
+     * @return index of a key in [0, keys)
+     */
+    int next(ThreadLocalRandom random);
+
+    static KeyDistribution of(String name, int keys, double exponent) {
+        return switch (name) {
+            case "uniform" -> random -> random.nextInt(keys);
+            case "zipfian" -> new Zipfian(keys, exponent);
+            default -> throw new IllegalArgumentException("Unknown key distribution " + name);
+        };
+    }
+
+    /**
+     * Zipfian distribution where key 0 is the most popular, generated in constant time per key
+     * as in Gray et al., "Quickly Generating Billion-Record Synthetic Databases" (the YCSB
+     * generator). An exponent of 0.99 sends over a quarter of the requests of 10,000 keys to the
+     * hottest ten.
+     */
+    final class Zipfian implements KeyDistribution {
+
+        private final int keys;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(int keys, double exponent) {
+            if (exponent <= 0 || exponent == 1) {
+                throw new IllegalArgumentException("Zipfian exponent must be positive and not 1: " + exponent);
+            }
+            this.keys = keys;
+            this.theta = exponent;
+            this.zetan = zeta(keys, exponent);
+            this.alpha = 1 / (1 - exponent);
+            this.eta = (1 - Math.pow(2.0 / keys, 1 - exponent)) / (1 - zeta(2, exponent) / zetan);
+        }
+
+        @Override
+        public int next(ThreadLocalRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, keys - 1);
+            }
+            return (int) Math.min(keys - 1, (long) (keys * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dev.aratax.redis.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Settings of a {@link LoadTest} run, parsed from {@code --name=value} arguments.
+ *
+ * @param profiles application profiles to run one after the other
+ * @param baseUrl URL of an application that is already running; it is started in-process when null
+ * @param embeddedRedis run the replica profile against an embedded Redis instead of the local processes
+ * @param duration measured time per profile
+ * @param warmup unrecorded time per profile before the measurement
+ * @param concurrency requests in flight at once
+ * @param rate requests per second across all workers, or 0 to send the next request as soon as one completes
+ * @param readRatio share of requests that read a user, the others overwrite it
+ * @param keys number of users the requests are spread over
+ * @param distribution {@code uniform} or {@code zipfian}
+ * @param zipfExponent skew of the zipfian distribution
+ * @param payloadSize length of the user name written, which dominates the value size
+ * @param timeout time after which a request counts as failed
+ * @param output path of the JSON report
+ */
+record LoadOptions(List<String> profiles, String baseUrl, boolean embeddedRedis, Duration duration,
+                   Duration warmup, int concurrency, int rate, double readRatio, int keys, String distribution,
+                   double zipfExponent, int payloadSize, Duration timeout, String output) {
+
+    static LoadOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator),
+                    separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+        LoadOptions options = new LoadOptions(
+                Arrays.stream(values.getOrDefault("profiles", "replica").split(",")).map(String::trim).toList(),
+                values.get("base-url"),
+                Boolean.parseBoolean(values.getOrDefault("embedded-redis", "false")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "30s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("concurrency", "64")),
+                Integer.parseInt(values.getOrDefault("rate", "0")),
+                Double.parseDouble(values.getOrDefault("read-ratio", "0.9")),
+                Integer.parseInt(values.getOrDefault("keys", "10000")),
+                values.getOrDefault("distribution", "zipfian"),
+                Double.parseDouble(values.getOrDefault("zipf-exponent", "0.99")),
+                Integer.parseInt(values.getOrDefault("payload-size", "256")),
+                DurationStyle.detectAndParse(values.getOrDefault("timeout", "5s")),
+                values.getOrDefault("output", "target/load-report.json"));
+        if (options.concurrency < 1 || options.keys < 1 || options.rate < 0 || options.payloadSize < 0) {
+            throw new IllegalArgumentException("concurrency and keys must be positive, rate and payload-size not negative");
+        }
+        if (options.readRatio < 0 || options.readRatio > 1) {
+            throw new IllegalArgumentException("read-ratio must be between 0 and 1: " + options.readRatio);
+        }
+        if (options.baseUrl != null && options.profiles.size() != 1) {
+            throw new IllegalArgumentException("base-url targets one running application; give a single profile to label it");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,37 @@
+package dev.aratax.redis.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Machine-readable result of a {@link LoadTest} run, written as JSON.
+ */
+record LoadReport(String startedAt, LoadOptions options, List<ProfileResult> profiles) {
+
+    /**
+     * Result of one profile; {@code error} is set, and the rest absent, when it could not be run.
+     *
+     * @param errorsByCause failed requests by HTTP status or exception name
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record ProfileResult(String profile, String error, Double seconds, Long requests, Double throughput,
+                         Long errors, Map<String, Long> errorsByCause, Latency latency,
+                         Map<String, OperationResult> operations) {
+
+        static ProfileResult failed(String profile, Exception error) {
+            return new ProfileResult(profile, error.toString(), null, null, null, null, null, null, null);
+        }
+    }
+
+    record OperationResult(long requests, double throughput, long errors, Latency latency) {
+    }
+
+    /**
+     * Latency of successful requests in microseconds, measured from the time a request was due
+     * to be sent, so that a stalled server also delays the requests queued behind it
+     */
+    record Latency(double p50, double p99, double p999, double max, double mean) {
+    }
+}
@@ -0,0 +1,337 @@
+package dev.aratax.redis.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.benchmark.LoadReport.Latency;
+import dev.aratax.redis.benchmark.LoadReport.OperationResult;
+import dev.aratax.redis.benchmark.LoadReport.ProfileResult;
+import dev.aratax.redis.model.BulkOperationResult;
+import dev.aratax.redis.model.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Load test of the {@code /api/users} endpoints, run once per deployment profile so the
+ * replica, sentinel and cluster topologies can be compared under the same workload.
+ *
+ * <p>For each profile the application is started in-process on a free port against the Redis
+ * processes the profile is configured for (see {@code script/redis-startup-docker.sh}), or,
+ * with {@code --embedded-redis}, the replica profile against an embedded Redis. {@code keys}
+ * users are loaded through the bulk endpoint; then {@code concurrency} workers read them with
+ * {@code GET /api/users/{id}} and overwrite them with {@code PUT /api/users/{id}} in the
+ * {@code read-ratio} mix, picking ids from a {@link KeyDistribution}. Requests are sent back to
+ * back, or at a fixed total {@code rate}. After {@code warmup} the run is measured for
+ * {@code duration}, and the loaded users are deleted afterwards.
+ *
+ * <p>Throughput, latency percentiles and errors, overall and per operation, are printed and
+ * written to {@code output} as a {@link LoadReport}; see {@link LoadOptions} for all settings.
+ * The process exits with 1 if a profile could not be run. The client shares the JVM with the
+ * application unless {@code --base-url} points at one started separately.
+ */
+public final class LoadTest {
+
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    private final LoadOptions options;
+    private final KeyDistribution distribution;
+    // one random name shared by all users, so values have the requested size but do not compress away
+    private final String name;
+
+    LoadTest(LoadOptions options) {
+        this.options = options;
+        this.distribution = KeyDistribution.of(options.distribution(), options.keys(), options.zipfExponent());
+        Random random = new Random(42);
+        StringBuilder name = new StringBuilder(options.payloadSize());
+        for (int i = 0; i < options.payloadSize(); i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        this.name = name.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadOptions options = LoadOptions.parse(args);
+        LoadTest test = new LoadTest(options);
+        String startedAt = Instant.now().toString();
+        List<ProfileResult> results = new ArrayList<>();
+        for (String profile : options.profiles()) {
+            results.add(test.run(profile));
+        }
+
+        Path output = Path.of(options.output()).toAbsolutePath();
+        Files.createDirectories(output.getParent());
+        new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(output.toFile(), new LoadReport(startedAt, options, results));
+        System.out.printf("Report written to %s%n", output);
+        System.exit(results.stream().anyMatch(result -> result.error() != null) ? 1 : 0);
+    }
+
+    ProfileResult run(String profile) {
+        ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                .maxConnections(options.concurrency())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        try (Target target = Target.start(profile, options)) {
+            WebClient client = WebClient.builder()
+                    .baseUrl(target.baseUrl)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            load(client);
+            if (!options.warmup().isZero()) {
+                drive(client, options.warmup(), new Recorder());
+            }
+            Recorder recorder = new Recorder();
+            long elapsed = drive(client, options.duration(), recorder);
+            unload(client);
+
+            ProfileResult result = recorder.result(profile, elapsed);
+            System.out.printf("%-10s %10.0f req/s  p50 %8.0f us  p99 %8.0f us  p999 %8.0f us  errors %d %s%n",
+                    profile, result.throughput(), result.latency().p50(), result.latency().p99(),
+                    result.latency().p999(), result.errors(), result.errorsByCause());
+            return result;
+        } catch (RuntimeException e) {
+            System.err.printf("%-10s failed: %s%n", profile, e);
+            return ProfileResult.failed(profile, e);
+        } finally {
+            connections.dispose();
+        }
+    }
+
+    private void load(WebClient client) {
+        long failed = Flux.range(0, options.keys())
+                .map(this::user)
+                .buffer(LOAD_CHUNK_SIZE)
+                .concatMap(chunk -> client.post().uri("/api/users/bulk").bodyValue(chunk)
+                        .retrieve().bodyToFlux(BulkOperationResult.class))
+                .filter(result -> !result.isSuccess())
+                .count()
+                .block();
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + options.keys() + " users could not be loaded");
+        }
+    }
+
+    private void unload(WebClient client) {
+        Flux.range(0, options.keys())
+                .map(LoadTest::id)
+                .buffer(LOAD_CHUNK_SIZE)
+                .concatMap(ids -> client.post().uri("/api/users/bulk/delete").bodyValue(ids)
+                        .retrieve().bodyToFlux(BulkOperationResult.class))
+                .blockLast();
+    }
+
+    /**
+     * @return nanoseconds from the first request until the last one completed
+     */
+    private long drive(WebClient client, Duration duration, Recorder recorder) {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        Flux.range(0, options.concurrency())
+                .flatMap(worker -> options.rate() == 0
+                        ? Mono.defer(() -> request(client, System.nanoTime(), recorder)).repeat(() -> System.nanoTime() < end)
+                        : paced(client, worker, start, end, recorder), options.concurrency())
+                .blockLast();
+        return System.nanoTime() - start;
+    }
+
+    // each worker sends every concurrency-th request of the schedule; latency counts from when a
+    // request was due, so a stalled server is charged for the requests queued behind the stall
+    private Flux<Void> paced(WebClient client, int worker, long start, long end, Recorder recorder) {
+        double interval = 1e9 / options.rate();
+        AtomicLong sent = new AtomicLong();
+        return Mono.defer(() -> {
+                    long due = start + (long) ((sent.getAndIncrement() * options.concurrency() + worker) * interval);
+                    long wait = due - System.nanoTime();
+                    Mono<Void> request = Mono.defer(() -> request(client, due, recorder));
+                    return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).then(request) : request;
+                })
+                .repeat(() -> start + (long) ((sent.get() * options.concurrency() + worker) * interval) < end);
+    }
+
+    private Mono<Void> request(WebClient client, long due, Recorder recorder) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = distribution.next(random);
+        boolean read = random.nextDouble() < options.readRatio();
+        String operation = read ? READ : WRITE;
+        WebClient.RequestHeadersSpec<?> request = read
+                ? client.get().uri("/api/users/{id}", id(index))
+                : client.put().uri("/api/users/{id}", id(index)).bodyValue(user(index));
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .timeout(options.timeout())
+                .doOnNext(status -> recorder.completed(operation, status, System.nanoTime() - due))
+                .onErrorResume(e -> {
+                    recorder.failed(operation, e.getClass().getSimpleName());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private User user(int index) {
+        return new User(id(index), name, id(index) + "@example.com", 20 + index % 60);
+    }
+
+    private static String id(int index) {
+        return "load-" + index;
+    }
+
+    /**
+     * The application under load: started in-process for a profile, or already running at
+     * {@code base-url}
+     */
+    private static final class Target implements AutoCloseable {
+
+        private final LocalRedis redis;
+        private final ConfigurableApplicationContext context;
+        private final String baseUrl;
+
+        private Target(LocalRedis redis, ConfigurableApplicationContext context, String baseUrl) {
+            this.redis = redis;
+            this.context = context;
+            this.baseUrl = baseUrl;
+        }
+
+        static Target start(String profile, LoadOptions options) {
+            if (options.baseUrl() != null) {
+                return new Target(null, null, options.baseUrl());
+            }
+            List<String> args = new ArrayList<>(List.of("--server.port=0",
+                    "--logging.level.root=WARN",
+                    "--logging.level.dev.aratax.redis=WARN",
+                    "--logging.level.org.springframework.data.redis=WARN"));
+            LocalRedis redis = null;
+            if (options.embeddedRedis()) {
+                if (!"replica".equals(profile)) {
+                    throw new IllegalArgumentException("An embedded Redis only stands in for the replica profile, not " + profile);
+                }
+                redis = LocalRedis.start(0);
+                args.addAll(List.of("--spring.data.redis.master.host=localhost",
+                        "--spring.data.redis.master.port=" + redis.port(),
+                        "--spring.data.redis.replicas[0].host=localhost",
+                        "--spring.data.redis.replicas[0].port=" + redis.port(),
+                        "--spring.data.redis.read-from=master"));
+            }
+            try {
+                ConfigurableApplicationContext context = new SpringApplicationBuilder(RedisApplication.class)
+                        .profiles(profile)
+                        .run(args.toArray(String[]::new));
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                return new Target(redis, context, "http://localhost:" + port);
+            } catch (RuntimeException e) {
+                if (redis != null) {
+                    redis.close();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (context != null) {
+                context.close();
+            }
+            if (redis != null) {
+                redis.close();
+            }
+        }
+    }
+
+    /**
+     * Latency of successful requests and causes of failed ones, per operation
+     */
+    private static final class Recorder {
+
+        private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+        Recorder() {
+            operations.put(READ, new Operation());
+            operations.put(WRITE, new Operation());
+        }
+
+        private record Operation(Histogram latency, Map<String, LongAdder> failures) {
+            Operation() {
+                this(new ConcurrentHistogram(3), new ConcurrentHashMap<>());
+            }
+        }
+
+        void completed(String operation, HttpStatusCode status, long nanos) {
+            if (status.is2xxSuccessful()) {
+                operations.get(operation).latency.recordValue(nanos);
+            } else {
+                failed(operation, String.valueOf(status.value()));
+            }
+        }
+
+        void failed(String operation, String cause) {
+            operations.get(operation).failures.computeIfAbsent(cause, key -> new LongAdder()).increment();
+        }
+
+        ProfileResult result(String profile, long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            Histogram all = new Histogram(3);
+            Map<String, Long> causes = new TreeMap<>();
+            Map<String, OperationResult> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+                Histogram latency = entry.getValue().latency;
+                long errors = 0;
+                for (Map.Entry<String, LongAdder> failure : entry.getValue().failures.entrySet()) {
+                    causes.merge(failure.getKey(), failure.getValue().sum(), Long::sum);
+                    errors += failure.getValue().sum();
+                }
+                all.add(latency);
+                long requests = latency.getTotalCount() + errors;
+                results.put(entry.getKey(), new OperationResult(requests, requests / seconds, errors, latency(latency)));
+            }
+            long errors = causes.values().stream().mapToLong(Long::longValue).sum();
+            long requests = all.getTotalCount() + errors;
+            return new ProfileResult(profile, null, seconds, requests, requests / seconds, errors, causes,
+                    latency(all), results);
+        }
+
+        private static Latency latency(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return new Latency(0, 0, 0, 0, 0);
+            }
+            return new Latency(micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMaxValue()),
+                    histogram.getMean() / 1000);
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1000.0;
+        }
+    }
+}
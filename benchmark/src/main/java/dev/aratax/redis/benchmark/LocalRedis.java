@@ -0,0 +1,65 @@
+package dev.aratax.redis.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Redis instance the end-to-end benchmarks run against: an embedded server on a free port, or
+ * an already running server when a port is given.
+ */
+final class LocalRedis implements AutoCloseable {
+
+    private final RedisServer server;
+    private final int port;
+
+    private LocalRedis(RedisServer server, int port) {
+        this.server = server;
+        this.port = port;
+    }
+
+    /**
+     * @param port port of a running Redis, or 0 to start an embedded one
+     */
+    static LocalRedis start(int port) {
+        if (port > 0) {
+            return new LocalRedis(null, port);
+        }
+        try {
+            int freePort = freePort();
+            RedisServer server = RedisServer.newRedisServer()
+                    .port(freePort)
+                    .setting("save \"\"")
+                    .setting("appendonly no")
+                    .build();
+            server.start();
+            return new LocalRedis(server, freePort);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start embedded Redis", e);
+        }
+    }
+
+    int port() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to stop embedded Redis", e);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
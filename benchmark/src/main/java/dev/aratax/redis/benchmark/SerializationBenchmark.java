@@ -0,0 +1,79 @@
+package dev.aratax.redis.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import dev.aratax.redis.codec.ValueCodec;
+import dev.aratax.redis.codec.VersionedValueSerializer;
+import dev.aratax.redis.config.RedisConfig;
+import dev.aratax.redis.model.User;
+
+/**
+ * Cost of the value serializers configured in {@link RedisConfig}.
+ *
+ * <ul>
+ *   <li>{@code json-typed}: GenericJackson2JsonRedisSerializer with NON_FINAL default typing, the original format</li>
+ *   <li>{@code json-plain}: Jackson without type information, bound to {@link User}</li>
+ *   <li>{@code binary}: {@link VersionedValueSerializer} writing the binary codec</li>
+ * </ul>
+ *
+ * Run with {@code -prof gc} to get the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SerializationBenchmark {
+
+    @Param({"json-typed", "json-plain", "binary"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+    private User user;
+    private byte[] encoded;
+
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setup() {
+        RedisConfig config = new RedisConfig();
+        GenericJackson2JsonRedisSerializer typed = new GenericJackson2JsonRedisSerializer(config.redisObjectMapper());
+        serializer = switch (codec) {
+            case "json-typed" -> typed;
+            case "json-plain" -> (RedisSerializer) new Jackson2JsonRedisSerializer<>(config.objectMapper(), User.class);
+            case "binary" -> new VersionedValueSerializer(ValueCodec.BINARY, typed);
+            default -> throw new IllegalArgumentException("Unknown codec " + codec);
+        };
+        user = new User("123e4567-e89b-12d3-a456-426614174000", "John Doe", "john.doe@example.com", 30);
+        user.setCreatedAt(LocalDateTime.of(2023, 12, 1, 10, 30));
+        user.setUpdatedAt(LocalDateTime.of(2023, 12, 1, 15, 45));
+        encoded = serializer.serialize(user);
+        System.out.printf("%n%s payload: %d bytes%n", codec, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(user);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(encoded);
+    }
+}
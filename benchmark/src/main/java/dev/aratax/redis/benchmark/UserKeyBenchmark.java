@@ -0,0 +1,41 @@
+package dev.aratax.redis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.aratax.redis.service.UserKeys;
+
+/**
+ * Key construction and parsing done on every user operation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UserKeyBenchmark {
+
+    // non-final so the JIT cannot constant-fold the concatenation
+    private String id = "123e4567-e89b-12d3-a456-426614174000";
+    private String key = UserKeys.of(id);
+
+    @Benchmark
+    public String keyOf() {
+        return UserKeys.of(id);
+    }
+
+    @Benchmark
+    public String idOf() {
+        return UserKeys.idOf(key);
+    }
+}
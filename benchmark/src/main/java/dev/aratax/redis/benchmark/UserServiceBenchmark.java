@@ -0,0 +1,135 @@
+package dev.aratax.redis.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.BulkOperationResult;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserRedisService;
+
+/**
+ * End-to-end {@link UserRedisService} operations through the real Spring context (replica
+ * profile, master only) against {@link LocalRedis}.
+ *
+ * <p>Ids are visited in a fixed round-robin order so runs are comparable. Pass
+ * {@code -p redisPort=6379} to target a running Redis instead of the embedded one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param("0")
+    public int redisPort;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    @Param({"value", "hash"})
+    public String storage;
+
+    @Param("1000")
+    public int userCount;
+
+    private LocalRedis redis;
+    private ConfigurableApplicationContext context;
+    private UserRedisService service;
+    private List<User> users;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        User next(List<User> users) {
+            User user = users.get(next);
+            next = (next + 1) % users.size();
+            return user;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redis = LocalRedis.start(redisPort);
+        context = new SpringApplicationBuilder(RedisApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("replica")
+                .run("--spring.data.redis.master.host=localhost",
+                        "--spring.data.redis.master.port=" + redis.port(),
+                        "--spring.data.redis.replicas[0].host=localhost",
+                        "--spring.data.redis.replicas[0].port=" + redis.port(),
+                        "--spring.data.redis.read-from=master",
+                        "--spring.data.redis.codec=" + codec,
+                        "--app.user-store.storage=" + storage,
+                        "--logging.level.root=WARN",
+                        "--logging.level.dev.aratax.redis=WARN",
+                        "--logging.level.org.springframework.data.redis=WARN");
+        service = context.getBean(UserRedisService.class);
+        users = IntStream.range(0, userCount)
+                .mapToObj(UserServiceBenchmark::user)
+                .toList();
+        service.deleteAll().block();
+        service.saveAll(users).blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.deleteAll().block();
+        context.close();
+        redis.close();
+    }
+
+    @Benchmark
+    public User findById(Cursor cursor) {
+        return service.findById(cursor.next(users).getId()).block();
+    }
+
+    @Benchmark
+    public Boolean exists(Cursor cursor) {
+        return service.exists(cursor.next(users).getId()).block();
+    }
+
+    @Benchmark
+    public User save(Cursor cursor) {
+        return service.save(cursor.next(users)).block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BulkOperationResult> saveAll(Cursor cursor) {
+        List<User> batch = IntStream.range(0, BATCH_SIZE).mapToObj(i -> cursor.next(users)).toList();
+        return service.saveAll(batch).collectList().block();
+    }
+
+    private static User user(int i) {
+        User user = new User("bench-" + i, "Benchmark User " + i, "user" + i + "@example.com", 20 + i % 60);
+        user.setCreatedAt(LocalDateTime.of(2023, 12, 1, 10, 30));
+        user.setUpdatedAt(LocalDateTime.of(2023, 12, 1, 15, 45));
+        return user;
+    }
+}
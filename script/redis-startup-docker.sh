@@ -6,13 +6,14 @@ show_menu() {
     echo "1) redis-replica"
     echo "2) redis-replica-chained"
     echo "3) redis-sentinel"
+    echo "4) redis-cluster"
     echo "q) Quit"
 }
 
 # Main script logic
 while true; do
     show_menu
-    read -p "Enter your choice [1-2]: " choice
+    read -p "Enter your choice [1-4]: " choice
 
     case $choice in
         1)
@@ -30,6 +31,11 @@ while true; do
             docker-compose -f "../docker/redis-sentinel/docker-compose.yml" up -d
             break
             ;;
+        4)
+            echo "Starting redis-cluster..."
+            docker-compose -f "../docker/redis-cluster/docker-compose.yml" up -d
+            break
+            ;;
         q)
             echo "Exiting."
             break
@@ -9,5 +9,5 @@ import org.springframework.context.annotation.Profile;
 
 @Target({ElementType.TYPE, ElementType.METHOD})
 @Retention(RetentionPolicy.RUNTIME)
-@Profile("sentinel")
+@Profile("cluster")
 public @interface ClusterProfile {}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package dev.aratax.redis.cache;
+
+import java.net.SocketAddress;
+import java.util.List;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.resource.ClientResources;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dedicated RESP3 connection that subscribes to server-assisted client side caching
+ * invalidations for a key prefix and forwards them to a {@link UserNearCache}.
+ *
+ * <p>Tracking runs in BCAST mode, so Redis reports every write to a matching key no matter
+ * which connection performed the read; data commands can therefore keep using the regular
+ * connection factory. Tracking state is bound to the server connection, so the near cache is
+ * flushed whenever this connection drops and tracking is re-enabled on every reconnect. The
+ * near cache serves nothing from the drop until Redis has confirmed tracking again, so values
+ * read in between cannot outlive a write whose invalidation was never sent.
+ */
+@Slf4j
+public class ClientTrackingConnection implements AutoCloseable {
+
+    private static final String INVALIDATE = "invalidate";
+
+    private final RedisClient client;
+    private final UserNearCache nearCache;
+    private final TrackingArgs trackingArgs;
+    private final String keyPrefix;
+    // null until the first connect, whose tracking is enabled once the push listener is in place
+    private volatile StatefulRedisConnection<String, String> connection;
+
+    public ClientTrackingConnection(ClientResources clientResources, RedisURI redisUri, String keyPrefix,
+                                    UserNearCache nearCache) {
+        this.nearCache = nearCache;
+        this.trackingArgs = TrackingArgs.Builder.enabled().bcast().prefixes(keyPrefix);
+        this.keyPrefix = keyPrefix;
+
+        this.client = RedisClient.create(clientResources, redisUri);
+        this.client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+        this.client.addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress address) {
+                if (handler == connection) {
+                    enableTracking(connection, address);
+                }
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+                if (handler == connection) {
+                    nearCache.trackingLost();
+                }
+            }
+        });
+
+        // nothing is cached until invalidations for it can be received
+        nearCache.trackingLost();
+        StatefulRedisConnection<String, String> connected = client.connect();
+        connected.addListener(message -> onPushMessage(message, nearCache));
+        this.connection = connected;
+        enableTracking(connected, redisUri);
+    }
+
+    private void enableTracking(StatefulRedisConnection<String, String> tracked, Object address) {
+        // anything cached while we were deaf to invalidations is suspect
+        nearCache.trackingLost();
+        tracked.async().clientTracking(trackingArgs)
+                .whenComplete((reply, error) -> {
+                    if (error != null) {
+                        log.error("Failed to enable client tracking on {}", address, error);
+                    } else {
+                        nearCache.trackingRestored();
+                        log.info("Client tracking enabled on {} for prefix '{}'", address, keyPrefix);
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void onPushMessage(PushMessage message, UserNearCache nearCache) {
+        if (!INVALIDATE.equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (keys instanceof List<?> list) {
+            nearCache.invalidate((List<String>) list);
+        } else {
+            // a null key list means the server flushed its tracking table (e.g. FLUSHALL)
+            nearCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+        client.shutdown();
+    }
+}
@@ -0,0 +1,87 @@
+package dev.aratax.redis.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size count-min sketch of string frequencies. Estimates never fall below the true count
+ * and exceed it by at most a few collisions per row. Safe for concurrent use without locking:
+ * every row is incremented atomically, which is what keeps the lower bound under contention
+ * (a conservative update, raising only the minimum counters, would lose concurrent increments).
+ */
+class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth rows, each indexed by its own hash of the key
+     */
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive");
+        }
+        int rowSize = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = rowSize - 1;
+        this.counters = new AtomicIntegerArray(rowSize * depth);
+    }
+
+    /**
+     * Counts one occurrence of {@code key}.
+     *
+     * @return estimated occurrences of {@code key}, this one included
+     */
+    int add(String key) {
+        long hash = hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            // saturates instead of wrapping around
+            int count = counters.getAndUpdate(index(hash, row), value -> value == Integer.MAX_VALUE ? value : value + 1);
+            estimate = Math.min(estimate, count == Integer.MAX_VALUE ? count : count + 1);
+        }
+        return estimate;
+    }
+
+    int estimate(String key) {
+        long hash = hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Resets every counter; counts added meanwhile may partly survive
+     */
+    void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    // double hashing: row i probes h1 + i * h2, both halves of one 64-bit mix
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mix so both 32-bit
+    // halves depend on every byte; String.hashCode has only 32 bits to split between h1 and h2
+    static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,184 @@
+package dev.aratax.redis.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import io.lettuce.core.cluster.SlotHash;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Finds the user keys accessed most often, in fixed memory.
+ *
+ * <p>A sample of the accesses, {@code sample-rate} of them, is counted in a
+ * {@link CountMinSketch}; the keys with the highest estimates are kept as candidates next to it,
+ * trimmed back to the {@code top-k} whenever twice that many gather. Recording takes no lock, so
+ * the request threads sampling accesses do not queue behind each other. Every {@code window}
+ * the candidates are published as a {@link Report}, with their estimated accesses per second,
+ * and counting starts over, so a key that cools down drops out after one window. Keys
+ * reported at {@code pin.min-rate} or more count as hot, see {@link #isHot(String)}, which
+ * {@link UserNearCache} uses to pin them.
+ *
+ * <p>Publishes the {@code hot.keys.max.rate} gauge, the rate of the hottest key of the last
+ * window. When {@code app.user-store.hot-keys.enabled} is false nothing is recorded and the
+ * report stays empty.
+ */
+@Slf4j
+@Component
+public class HotKeyTracker implements AutoCloseable {
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int topK;
+    private final double pinRate;
+    private final CountMinSketch sketch;
+    // latest estimate of each candidate
+    private final Map<String, Integer> candidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    // estimate a key must beat to become a candidate, the coldest kept by the last trim
+    private volatile int admission;
+    private final Disposable schedule;
+    private Instant windowStart = Instant.now();
+    private volatile Report report;
+    private volatile Set<String> hot = Set.of();
+
+    public HotKeyTracker(UserStoreProperties properties, MeterRegistry meterRegistry) {
+        UserStoreProperties.HotKeys config = properties.getHotKeys();
+        if (config.getSampleRate() <= 0 || config.getSampleRate() > 1) {
+            throw new IllegalArgumentException("app.user-store.hot-keys.sample-rate must be in (0, 1]");
+        }
+        this.enabled = config.isEnabled();
+        this.sampleRate = config.getSampleRate();
+        this.topK = config.getTopK();
+        // a near cache already keeps every user read, hot or not
+        boolean pinning = config.getPin().isEnabled() && !properties.getNearCache().isEnabled();
+        this.pinRate = pinning ? config.getPin().getMinRate() : Double.POSITIVE_INFINITY;
+        this.sketch = enabled ? new CountMinSketch(config.getWidth(), config.getDepth()) : null;
+        this.report = new Report(windowStart, windowStart, sampleRate, List.of());
+        Gauge.builder("hot.keys.max.rate", this, tracker -> tracker.report.keys().isEmpty()
+                        ? 0 : tracker.report.keys().get(0).rate())
+                .description("Estimated accesses per second of the hottest user key in the last window")
+                .register(meterRegistry);
+        this.schedule = enabled
+                ? Flux.interval(config.getWindow()).subscribe(tick -> roll())
+                : null;
+    }
+
+    /**
+     * Counts an access to {@code key}, if it is sampled
+     */
+    public void record(String key) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        int count = sketch.add(key);
+        if (count <= admission && !candidates.containsKey(key)) {
+            return;
+        }
+        candidates.merge(key, count, Math::max);
+        if (candidates.size() > 2 * topK && trimming.compareAndSet(false, true)) {
+            try {
+                trim();
+            } finally {
+                trimming.set(false);
+            }
+        }
+    }
+
+    // keeps the top-k candidates and raises the admission to the coldest of them
+    private void trim() {
+        List<Map.Entry<String, Integer>> hottest = hottest();
+        hottest.subList(Math.min(topK, hottest.size()), hottest.size())
+                .forEach(entry -> candidates.remove(entry.getKey(), entry.getValue()));
+        if (topK > 0 && hottest.size() >= topK) {
+            admission = hottest.get(topK - 1).getValue();
+        }
+    }
+
+    private List<Map.Entry<String, Integer>> hottest() {
+        return candidates.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .toList();
+    }
+
+    /**
+     * @return whether {@code key} was accessed at least {@code pin.min-rate} times per second in the
+     * last window, always false unless pinning is enabled and the near cache is not
+     */
+    public boolean isHot(String key) {
+        return hot.contains(key);
+    }
+
+    /**
+     * @return hottest keys of the last complete window
+     */
+    public Report report() {
+        return report;
+    }
+
+    /**
+     * Publishes the candidates of the window that just ended and starts the next one
+     */
+    synchronized void roll() {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        double seconds = Math.max(Duration.between(windowStart, now).toNanos() / 1e9, 1e-3);
+        List<HotKey> keys = hottest().stream()
+                .limit(topK)
+                .map(candidate -> {
+                    double rate = candidate.getValue() / sampleRate / seconds;
+                    return new HotKey(candidate.getKey(), SlotHash.getSlot(candidate.getKey()), rate,
+                            rate >= pinRate);
+                })
+                .toList();
+        report = new Report(windowStart, now, sampleRate, keys);
+        hot = keys.stream().filter(HotKey::pinned).map(HotKey::key).collect(Collectors.toUnmodifiableSet());
+        if (!hot.isEmpty()) {
+            log.debug("Hot user keys pinned: {}", hot);
+        }
+        // accesses recorded while this runs may land in either window
+        sketch.clear();
+        candidates.clear();
+        admission = 0;
+        windowStart = now;
+    }
+
+    @Override
+    public void close() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    /**
+     * Hottest keys of one window, hottest first
+     *
+     * @param sampleRate fraction of accesses counted; rates are scaled up by its inverse
+     */
+    public record Report(Instant from, Instant to, double sampleRate, List<HotKey> keys) {
+    }
+
+    /**
+     * @param slot cluster hash slot of the key, which tells the node serving it
+     * @param rate estimated accesses per second
+     * @param pinned whether reads of the key are served from the local pin cache
+     */
+    public record HotKey(String key, int slot, double rate, boolean pinned) {
+    }
+}
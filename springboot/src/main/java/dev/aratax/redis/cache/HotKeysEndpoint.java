@@ -0,0 +1,25 @@
+package dev.aratax.redis.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/hotkeys}: the user keys accessed most often in the last window, with their
+ * estimated rates and hash slots, as reported by the {@link HotKeyTracker}.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    private final HotKeyTracker hotKeys;
+
+    public HotKeysEndpoint(HotKeyTracker hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    @ReadOperation
+    public HotKeyTracker.Report hotKeys() {
+        return hotKeys.report();
+    }
+}
@@ -0,0 +1,180 @@
+package dev.aratax.redis.cache;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process near cache for users, keyed by Redis key.
+ *
+ * <p>Bounded by size (W-TinyLFU eviction) and time-to-live. Coherence with Redis is kept by
+ * {@link ClientTrackingConnection}, which forwards CLIENT TRACKING invalidation messages to
+ * {@link #invalidate(Collection)}.
+ *
+ * <p>A read that misses takes a {@link #stamp(String)} before it goes to Redis and passes it to
+ * {@link #put(String, User, long)}; the value is dropped when the key was invalidated in the
+ * meantime, since the read may have been answered before the write that invalidated it. Stamps
+ * are kept per stripe of keys, so an unrelated invalidation can occasionally cost a put. While
+ * tracking is being (re-)established, see {@link #trackingLost()}, lookups miss and puts are
+ * dropped.
+ *
+ * <p>When {@code app.user-store.near-cache.enabled} is false, only users whose keys the
+ * {@link HotKeyTracker} reports as hot are kept, for the short {@code hot-keys.pin.time-to-live}.
+ * Without client tracking that time-to-live bounds how long a write made by another instance
+ * goes unseen; writes made by this one invalidate as before. When pinning is off too, every
+ * method is a no-op and lookups always miss.
+ */
+@Slf4j
+@Component
+public class UserNearCache {
+
+    private static final String CACHE_NAME = "user-near-cache";
+    private static final String PIN_CACHE_NAME = "user-hot-key-cache";
+    private static final int STRIPES = 1024;
+
+    private final Cache<String, User> cache;
+    private final Counter invalidations;
+    private final Cache<String, User> pins;
+    private final HotKeyTracker hotKeys;
+    // bumped by every invalidation of a key in the stripe, and by every flush
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile boolean tracking = true;
+
+    public UserNearCache(UserStoreProperties properties, HotKeyTracker hotKeys, MeterRegistry meterRegistry) {
+        UserStoreProperties.NearCache config = properties.getNearCache();
+        this.hotKeys = hotKeys;
+        if (!config.isEnabled()) {
+            this.cache = null;
+            this.invalidations = null;
+            this.pins = pinCache(properties.getHotKeys(), meterRegistry);
+            return;
+        }
+        this.pins = null;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTimeToLive())
+                .recordStats()
+                .build();
+        this.invalidations = Counter.builder("cache.invalidations")
+                .description("Entries dropped because Redis reported the key as modified")
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("User near cache enabled (maximumSize={}, timeToLive={})", config.getMaximumSize(), config.getTimeToLive());
+    }
+
+    private static Cache<String, User> pinCache(UserStoreProperties.HotKeys config, MeterRegistry meterRegistry) {
+        if (!config.isEnabled() || !config.getPin().isEnabled()) {
+            return null;
+        }
+        Cache<String, User> pins = Caffeine.newBuilder()
+                .maximumSize(config.getTopK())
+                .expireAfterWrite(config.getPin().getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pins, PIN_CACHE_NAME);
+        log.info("Hot user keys pinned above {} accesses/s (timeToLive={})", config.getPin().getMinRate(),
+                config.getPin().getTimeToLive());
+        return pins;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return stamp to pass to {@link #put(String, User, long)} for a value read after this call
+     */
+    public long stamp(String key) {
+        return flushes.get() + stripes.get(stripe(key));
+    }
+
+    public User get(String key) {
+        if (!tracking) {
+            return null;
+        }
+        if (cache != null) {
+            return cache.getIfPresent(key);
+        }
+        return pins == null ? null : pins.getIfPresent(key);
+    }
+
+    /**
+     * Caches a value read from Redis, unless the key was invalidated since {@code stamp} was taken.
+     */
+    public void put(String key, User user, long stamp) {
+        Cache<String, User> target = cache != null ? cache : pins != null && hotKeys.isHot(key) ? pins : null;
+        if (target == null || !tracking) {
+            return;
+        }
+        // invalidate(key) bumps the stamp before removing, and removal waits for this compute
+        target.asMap().compute(key, (k, cached) -> tracking && stamp(key) == stamp ? user : cached);
+        // a flush clears entries one by one and may have passed this key already
+        if (!tracking || stamp(key) != stamp) {
+            target.asMap().remove(key, user);
+        }
+    }
+
+    public void invalidate(String key) {
+        stripes.incrementAndGet(stripe(key));
+        if (cache != null) {
+            cache.invalidate(key);
+        } else if (pins != null) {
+            pins.invalidate(key);
+        }
+    }
+
+    public void invalidate(Collection<String> keys) {
+        keys.forEach(key -> stripes.incrementAndGet(stripe(key)));
+        if (cache != null) {
+            cache.invalidateAll(keys);
+            invalidations.increment(keys.size());
+        } else if (pins != null) {
+            pins.invalidateAll(keys);
+        }
+    }
+
+    public void invalidateAll() {
+        flushes.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        } else if (pins != null) {
+            pins.invalidateAll();
+        }
+    }
+
+    /**
+     * Stops serving and accepting entries until {@link #trackingRestored()}, for when
+     * invalidations may be missed.
+     */
+    public void trackingLost() {
+        tracking = false;
+        invalidateAll();
+    }
+
+    /**
+     * Serves entries again. Reads stamped before this call are not cached, as invalidations for
+     * them may have been missed.
+     */
+    public void trackingRestored() {
+        invalidateAll();
+        tracking = true;
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,212 @@
+package dev.aratax.redis.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Value serializer that deflates what another serializer writes once it reaches a size threshold.
+ *
+ * <p>Layout of a compressed value: {@link #MAGIC}, a flags byte, the uncompressed length as a
+ * 4-byte big-endian int and the deflate stream. Values written with {@link #VERSION_TRAILER}
+ * set carry 8 more bytes after the stream, which are skipped; versions are now stored outside
+ * the value. {@link #MAGIC} starts neither JSON nor a {@link UserBinaryCodec} value, so values below the
+ * threshold, values that would not shrink and values written while compression was off are
+ * stored and read as the delegate wrote them.
+ * Compressed values are read whether or not compression is enabled. The length in the header
+ * is checked against what deflate can expand the stream to before a buffer is allocated for it.
+ *
+ * <p>zlib streams hold native memory and are costly to set up, so up to {@code 2 * processors} of each
+ * kind are kept for reuse; any beyond that are ended after use, and {@link #close} ends the kept
+ * ones.
+ *
+ * <p>Publishes {@code redis.codec.compression.ratio} (compressed over original size), the
+ * {@code redis.codec.compress} and {@code redis.codec.decompress} timers in thread CPU time, and
+ * {@code redis.codec.incompressible} counting values stored uncompressed because they did not
+ * shrink.
+ */
+public class CompressingValueSerializer implements RedisSerializer<Object>, AutoCloseable {
+
+    public static final byte MAGIC = (byte) 0xCD;
+    // set by earlier writes that appended the user's version to the value
+    static final int VERSION_TRAILER = 1;
+    private static final int HEADER = 2 + Integer.BYTES;
+    // deflate expands at most about 1032:1, a longer header length is corrupt
+    private static final int MAX_EXPANSION = 1032;
+    private static final int POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final RedisSerializer<Object> delegate;
+    private final boolean enabled;
+    private final int threshold;
+    private final int level;
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOLED);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOLED);
+    private volatile boolean closed;
+
+    private final DistributionSummary ratio;
+    private final Timer compressTime;
+    private final Timer decompressTime;
+    private final Counter incompressible;
+
+    /**
+     * @param threshold size in bytes from which the delegate's output is compressed
+     * @param level deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public CompressingValueSerializer(RedisSerializer<Object> delegate, boolean enabled, int threshold, int level,
+                                      MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.level = level;
+        this.ratio = DistributionSummary.builder("redis.codec.compression.ratio")
+                .description("Compressed size over original size of compressed values")
+                .register(meterRegistry);
+        this.compressTime = Timer.builder("redis.codec.compress")
+                .description("Thread CPU time spent compressing a value")
+                .register(meterRegistry);
+        this.decompressTime = Timer.builder("redis.codec.decompress")
+                .description("Thread CPU time spent inflating a value")
+                .register(meterRegistry);
+        this.incompressible = Counter.builder("redis.codec.incompressible")
+                .description("Values above the threshold stored uncompressed because they did not shrink")
+                .register(meterRegistry);
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (!enabled || bytes == null || bytes.length < threshold) {
+            return bytes;
+        }
+        long start = cpuTime();
+        byte[] compressed = compress(bytes);
+        compressTime.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        if (compressed.length >= bytes.length) {
+            incompressible.increment();
+            return bytes;
+        }
+        ratio.record((double) compressed.length / bytes.length);
+        return compressed;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (!isCompressed(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        long start = cpuTime();
+        byte[] inflated = inflate(bytes);
+        decompressTime.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        return delegate.deserialize(inflated);
+    }
+
+    private byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + HEADER);
+        out.write(MAGIC);
+        out.write(0);
+        out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        Deflater deflater = borrow(deflaters, () -> new Deflater(level));
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(bytes.length, 8192)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.reset();
+            giveBack(deflaters, deflater, deflater::end);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] inflate(byte[] bytes) {
+        if (bytes.length < HEADER) {
+            throw new SerializationException("Truncated compressed value");
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        int flags = header.get(1);
+        int length = header.getInt(2);
+        int end = bytes.length - ((flags & VERSION_TRAILER) != 0 ? Long.BYTES : 0);
+        if (end < HEADER || length < 0 || length > (long) (end - HEADER) * MAX_EXPANSION) {
+            throw new SerializationException("Compressed value of " + bytes.length + " bytes claims to inflate to "
+                    + length + " bytes");
+        }
+        byte[] inflated = new byte[length];
+        Inflater inflater = borrow(inflaters, Inflater::new);
+        try {
+            inflater.setInput(bytes, HEADER, end - HEADER);
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(inflated, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new SerializationException("Compressed value inflated to " + read + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed value", e);
+        } finally {
+            inflater.reset();
+            giveBack(inflaters, inflater, inflater::end);
+        }
+        return inflated;
+    }
+
+    /** Ends the pooled zlib streams; streams in use are ended as they are given back */
+    @Override
+    public void close() {
+        closed = true;
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    private static <T> T borrow(BlockingQueue<T> pool, Supplier<T> create) {
+        T pooled = pool.poll();
+        return pooled != null ? pooled : create.get();
+    }
+
+    private <T> void giveBack(BlockingQueue<T> pool, T stream, Runnable end) {
+        if (closed || !pool.offer(stream)) {
+            end.run();
+        } else if (closed && pool.remove(stream)) {
+            // closed while it was being given back
+            end.run();
+        }
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,160 @@
+package dev.aratax.redis.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import dev.aratax.redis.model.User;
+
+/**
+ * Compact binary encoding of {@link User}.
+ *
+ * <p>Layout: {@code MAGIC, VERSION, presence bitmask} followed by the present fields in
+ * declaration order. Strings are a varint byte length plus UTF-8 bytes, {@code age} is a
+ * zig-zag varint and timestamps are zig-zag varint epoch seconds (UTC) plus varint nanos.
+ * {@code version} comes last as a fixed 8-byte big-endian long; values stored by the user
+ * stores leave it out, they keep the version next to the value.
+ * {@link #MAGIC} can never start a JSON document, which lets readers tell the two formats
+ * apart. New fields must be appended with a new presence bit; a layout change that older
+ * readers cannot skip requires a new {@link #VERSION}.
+ */
+public final class UserBinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xB1;
+    static final byte VERSION = 1;
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int EMAIL = 1 << 2;
+    private static final int AGE = 1 << 3;
+    private static final int CREATED_AT = 1 << 4;
+    private static final int UPDATED_AT = 1 << 5;
+    private static final int ENTITY_VERSION = 1 << 6;
+
+    private UserBinaryCodec() {
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    public static byte[] encode(User user) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(presence(user));
+        writeString(out, user.getId());
+        writeString(out, user.getName());
+        writeString(out, user.getEmail());
+        if (user.getAge() != null) {
+            writeVarint(out, zigZag(user.getAge()));
+        }
+        writeTimestamp(out, user.getCreatedAt());
+        writeTimestamp(out, user.getUpdatedAt());
+        if (user.getVersion() != null) {
+            writeLong(out, user.getVersion());
+        }
+        return out.toByteArray();
+    }
+
+    public static User decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.get() != MAGIC) {
+            throw new SerializationException("Not a binary encoded user");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new SerializationException("Unsupported user encoding version " + version);
+        }
+        int presence = in.get() & 0xFF;
+        User user = new User();
+        user.setId((presence & ID) != 0 ? readString(in) : null);
+        user.setName((presence & NAME) != 0 ? readString(in) : null);
+        user.setEmail((presence & EMAIL) != 0 ? readString(in) : null);
+        user.setAge((presence & AGE) != 0 ? (int) unZigZag(readVarint(in)) : null);
+        user.setCreatedAt((presence & CREATED_AT) != 0 ? readTimestamp(in) : null);
+        user.setUpdatedAt((presence & UPDATED_AT) != 0 ? readTimestamp(in) : null);
+        user.setVersion((presence & ENTITY_VERSION) != 0 ? in.getLong() : null);
+        return user;
+    }
+
+    private static int presence(User user) {
+        int presence = 0;
+        presence |= user.getId() != null ? ID : 0;
+        presence |= user.getName() != null ? NAME : 0;
+        presence |= user.getEmail() != null ? EMAIL : 0;
+        presence |= user.getAge() != null ? AGE : 0;
+        presence |= user.getCreatedAt() != null ? CREATED_AT : 0;
+        presence |= user.getUpdatedAt() != null ? UPDATED_AT : 0;
+        presence |= user.getVersion() != null ? ENTITY_VERSION : 0;
+        return presence;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarint(in);
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeTimestamp(ByteArrayOutputStream out, LocalDateTime value) {
+        if (value == null) {
+            return;
+        }
+        writeVarint(out, zigZag(value.toEpochSecond(ZoneOffset.UTC)));
+        writeVarint(out, value.getNano());
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer in) {
+        long epochSecond = unZigZag(readVarint(in));
+        int nanos = (int) readVarint(in);
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in binary encoded user");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,11 @@
+package dev.aratax.redis.codec;
+
+/**
+ * Wire format used when writing values to Redis
+ */
+public enum ValueCodec {
+    /** Jackson JSON with embedded type information, the original format */
+    JSON,
+    /** Schema-versioned binary encoding, see {@link UserBinaryCodec} */
+    BINARY
+}
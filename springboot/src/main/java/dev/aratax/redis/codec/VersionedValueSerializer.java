@@ -0,0 +1,43 @@
+package dev.aratax.redis.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import dev.aratax.redis.model.User;
+
+/**
+ * Value serializer that writes with the configured {@link ValueCodec} and reads both formats.
+ *
+ * <p>The read path sniffs the first byte, so values written before a codec switch (or by
+ * instances still running the old setting) stay readable while the keyspace migrates.
+ * Only {@link User} has a binary form; any other value falls back to JSON.
+ */
+public class VersionedValueSerializer implements RedisSerializer<Object> {
+
+    private final ValueCodec codec;
+    private final RedisSerializer<Object> jsonSerializer;
+
+    public VersionedValueSerializer(ValueCodec codec, RedisSerializer<Object> jsonSerializer) {
+        this.codec = codec;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (codec == ValueCodec.BINARY && value instanceof User user) {
+            return UserBinaryCodec.encode(user);
+        }
+        return jsonSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (UserBinaryCodec.isBinary(bytes)) {
+            return UserBinaryCodec.decode(bytes);
+        }
+        return jsonSerializer.deserialize(bytes);
+    }
+}
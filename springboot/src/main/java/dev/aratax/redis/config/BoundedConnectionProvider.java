@@ -0,0 +1,197 @@
+package dev.aratax.redis.config;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionProvider;
+
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.support.AsyncConnectionPoolSupport;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.lettuce.core.support.BoundedPoolConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Connection provider backed by a bounded Lettuce {@link BoundedAsyncPool}.
+ *
+ * <p>Lettuce's pool rejects an acquisition as soon as it is exhausted. This provider queues
+ * acquisitions instead, hands connections to waiters in FIFO order as they are released and
+ * fails a waiter that did not get one within {@code maxWait}. Acquisition never blocks a thread.
+ *
+ * <p>Permits bound the connections handed out to {@code maxActive}, and the pool only keeps up
+ * to {@code minIdle} idle ones open beside them. The pool's own total is left unbounded: it
+ * updates its counts of open and opening connections in two steps, so near a bound it would
+ * turn permit holders away while a connection is still being counted twice. A waiter is only
+ * ever woken by a released permit.
+ *
+ * <p>Publishes {@code redis.pool.active}, {@code redis.pool.idle}, {@code redis.pool.max},
+ * {@code redis.pool.pending}, the {@code redis.pool.acquire} wait timer and the
+ * {@code redis.pool.acquire.timeouts} counter, all tagged with the pool name.
+ */
+class BoundedConnectionProvider implements LettuceConnectionProvider, DisposableBean {
+
+    private final LettuceConnectionProvider connectionProvider;
+    @SuppressWarnings("rawtypes")
+    private final BoundedAsyncPool<StatefulConnection> pool;
+    private final Queue<CompletableFuture<StatefulConnection<?, ?>>> waiters = new ConcurrentLinkedQueue<>();
+    private final Set<StatefulConnection<?, ?>> borrowed = ConcurrentHashMap.newKeySet();
+    // borrowed before the last refresh, closed instead of pooled when released
+    private final Set<StatefulConnection<?, ?>> stale = ConcurrentHashMap.newKeySet();
+    // connections that may still be handed out; acquiring one first takes a permit
+    private final AtomicInteger permits;
+    private final Duration maxWait;
+    private final Timer acquireTimer;
+    private final Counter timeoutCounter;
+
+    BoundedConnectionProvider(LettuceConnectionProvider connectionProvider, RedisConfigProperties.Pool poolProperties,
+                              MeterRegistry meterRegistry, String name) {
+        this.connectionProvider = connectionProvider;
+        this.pool = AsyncConnectionPoolSupport.createBoundedObjectPool(
+                () -> connectionProvider.getConnectionAsync(StatefulConnection.class),
+                BoundedPoolConfig.builder()
+                        // permits bound the connections, see the class comment
+                        .maxTotal(Integer.MAX_VALUE)
+                        .maxIdle(poolProperties.getMaxIdle())
+                        .minIdle(poolProperties.getMinIdle())
+                        // lets a closed connection leave the pool instead of being handed out again
+                        .testOnAcquire()
+                        .testOnRelease()
+                        .build(),
+                false);
+        this.permits = new AtomicInteger(poolProperties.getMaxActive());
+        this.maxWait = poolProperties.getMaxWait();
+
+        Tags tags = Tags.of("pool", name);
+        int maxActive = poolProperties.getMaxActive();
+        Gauge.builder("redis.pool.active", permits, available -> maxActive - available.get())
+                .tags(tags).description("Connections handed out or being created").register(meterRegistry);
+        Gauge.builder("redis.pool.idle", pool, BoundedAsyncPool::getIdle)
+                .tags(tags).description("Open connections waiting in the pool").register(meterRegistry);
+        Gauge.builder("redis.pool.max", () -> maxActive)
+                .tags(tags).description("Upper bound on pooled connections").register(meterRegistry);
+        Gauge.builder("redis.pool.pending", waiters, Queue::size)
+                .tags(tags).description("Operations queued for a connection").register(meterRegistry);
+        this.acquireTimer = Timer.builder("redis.pool.acquire")
+                .tags(tags).description("Time spent waiting for a pooled connection")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("redis.pool.acquire.timeouts")
+                .tags(tags).description("Operations that gave up waiting for a pooled connection")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T extends StatefulConnection<?, ?>> CompletionStage<T> getConnectionAsync(Class<T> connectionType) {
+        long start = System.nanoTime();
+        CompletableFuture<StatefulConnection<?, ?>> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        drain();
+        return waiter
+                .orTimeout(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((connection, error) -> {
+                    if (error instanceof TimeoutException) {
+                        waiters.remove(waiter);
+                        timeoutCounter.increment();
+                    } else if (error == null) {
+                        acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .thenApply(connectionType::cast);
+    }
+
+    @Override
+    public void release(StatefulConnection<?, ?> connection) {
+        releaseAsync(connection).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseAsync(StatefulConnection<?, ?> connection) {
+        borrowed.remove(connection);
+        CompletableFuture<Void> closed = stale.remove(connection)
+                ? connection.closeAsync()
+                : CompletableFuture.completedFuture(null);
+        return closed.thenCompose(ignored -> pool.release(connection))
+                .whenComplete((ignored, error) -> returnPermit());
+    }
+
+    /**
+     * Drops every pooled connection: idle ones are closed now, borrowed ones when they are
+     * released. Subsequent acquisitions open new connections, e.g. to a master elected after
+     * a failover.
+     */
+    void refresh() {
+        stale.addAll(borrowed);
+        pool.clearAsync();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        pool.close();
+        CompletableFuture<StatefulConnection<?, ?>> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.completeExceptionally(new IllegalStateException("Connection pool closed"));
+        }
+        if (connectionProvider instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    /**
+     * Pairs queued waiters with free permits. Both a new waiter and a returned permit call this
+     * after publishing themselves, so neither can be stranded by the other.
+     */
+    private void drain() {
+        while (!waiters.isEmpty() && tryTakePermit()) {
+            CompletableFuture<StatefulConnection<?, ?>> waiter = waiters.poll();
+            if (waiter == null || waiter.isDone()) {
+                permits.incrementAndGet();
+                continue;
+            }
+            acquire(waiter);
+        }
+    }
+
+    private void acquire(CompletableFuture<StatefulConnection<?, ?>> waiter) {
+        pool.acquire().whenComplete((connection, error) -> {
+            if (error == null) {
+                borrowed.add(connection);
+                if (!waiter.complete(connection)) {
+                    // the waiter timed out while the connection was being created
+                    releaseAsync(connection);
+                }
+            } else {
+                waiter.completeExceptionally(error);
+                returnPermit();
+            }
+        });
+    }
+
+    private boolean tryTakePermit() {
+        int available;
+        do {
+            available = permits.get();
+            if (available == 0) {
+                return false;
+            }
+        } while (!permits.compareAndSet(available, available - 1));
+        return true;
+    }
+
+    private void returnPermit() {
+        permits.incrementAndGet();
+        drain();
+    }
+}
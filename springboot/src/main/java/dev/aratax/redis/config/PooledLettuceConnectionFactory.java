@@ -0,0 +1,59 @@
+package dev.aratax.redis.config;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.data.redis.connection.RedisConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionProvider;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Lettuce connection factory that gives each reactive operation its own connection, borrowed
+ * from a {@link BoundedConnectionProvider} and returned when the operation completes.
+ *
+ * <p>Used next to the regular shared-connection factory: a large reply read through this
+ * factory no longer sits in front of small commands multiplexed over the shared connection.
+ */
+public class PooledLettuceConnectionFactory extends LettuceConnectionFactory {
+
+    private final RedisConfigProperties.Pool pool;
+    private final MeterRegistry meterRegistry;
+    private final String name;
+    private final List<BoundedConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    public PooledLettuceConnectionFactory(RedisConfiguration configuration, LettuceClientConfiguration clientConfiguration,
+                                          RedisConfigProperties.Pool pool, MeterRegistry meterRegistry, String name) {
+        super(configuration, clientConfiguration);
+        this.pool = pool;
+        this.meterRegistry = meterRegistry;
+        this.name = name;
+        setShareNativeConnection(false);
+    }
+
+    @Override
+    protected LettuceConnectionProvider doCreateConnectionProvider(AbstractRedisClient client, RedisCodec<?, ?> codec) {
+        LettuceConnectionProvider connectionProvider = super.doCreateConnectionProvider(client, codec);
+        // the byte[] provider backs the imperative API, which nothing routes through this factory
+        if (codec instanceof ByteArrayCodec) {
+            return connectionProvider;
+        }
+        BoundedConnectionProvider boundedProvider = new BoundedConnectionProvider(connectionProvider, pool, meterRegistry, name);
+        connectionProviders.add(boundedProvider);
+        return boundedProvider;
+    }
+
+    /**
+     * Also drops the pooled connections, so the next operations connect to the current topology
+     */
+    @Override
+    public void resetConnection() {
+        super.resetConnection();
+        connectionProviders.forEach(BoundedConnectionProvider::refresh);
+    }
+}
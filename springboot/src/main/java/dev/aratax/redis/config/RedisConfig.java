@@ -1,5 +1,8 @@
 package dev.aratax.redis.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -7,11 +10,17 @@ import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import dev.aratax.redis.cache.ClientTrackingConnection;
+import dev.aratax.redis.codec.CompressingValueSerializer;
+import dev.aratax.redis.codec.VersionedValueSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Base Redis Configuration for Reactive Redis Operations
  * This configuration provides common beans for all Redis setups
@@ -49,51 +58,131 @@ public class RedisConfig {
     }
 
     /**
-     * Configure ReactiveRedisTemplate with JSON serialization
+     * Configure the value serializer: writes use the codec selected by
+     * spring.data.redis.codec and are deflated from spring.data.redis.compression.threshold
+     * when compression is enabled, reads accept JSON, binary and compressed values
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(RedisConfigProperties properties, MeterRegistry meterRegistry) {
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(redisObjectMapper());
+        RedisConfigProperties.Compression compression = properties.getCompression();
+        return new CompressingValueSerializer(new VersionedValueSerializer(properties.getCodec(), jsonSerializer),
+                compression.isEnabled(), (int) compression.getThreshold().toBytes(), compression.getLevel(),
+                meterRegistry);
+    }
+
+    /**
+     * Configure ReactiveRedisTemplate with the configured value serialization
      * This template will be used for all reactive Redis operations
      */
     @Bean
     public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            RedisSerializer<Object> redisValueSerializer) {
+        return new ReactiveRedisTemplate<>(connectionFactory, valueSerializationContext(redisValueSerializer));
+    }
+
+    /**
+     * Configure ReactiveRedisTemplate for String operations
+     * Optimized for simple string key-value operations
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate(
             ReactiveRedisConnectionFactory connectionFactory) {
-        
-        ObjectMapper redisObjectMapper = redisObjectMapper();
-        
+        return new ReactiveRedisTemplate<>(connectionFactory, stringSerializationContext());
+    }
+
+    /**
+     * Configure ReactiveRedisTemplate for index scans and multi-key reads
+     * Runs on the pooled bulk connection factory in hybrid connection mode,
+     * on the shared connection otherwise
+     */
+    @Bean(defaultCandidate = false)
+    public ReactiveRedisTemplate<String, Object> bulkReactiveRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            @Qualifier("bulkRedisConnectionFactory") ObjectProvider<ReactiveRedisConnectionFactory> bulkConnectionFactory,
+            RedisSerializer<Object> redisValueSerializer) {
+        return new ReactiveRedisTemplate<>(bulkConnectionFactory.getIfAvailable(() -> connectionFactory),
+                valueSerializationContext(redisValueSerializer));
+    }
+
+    /**
+     * Configure String ReactiveRedisTemplate for index scans and multi-key reads
+     */
+    @Bean(defaultCandidate = false)
+    public ReactiveRedisTemplate<String, String> bulkReactiveStringRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            @Qualifier("bulkRedisConnectionFactory") ObjectProvider<ReactiveRedisConnectionFactory> bulkConnectionFactory) {
+        return new ReactiveRedisTemplate<>(bulkConnectionFactory.getIfAvailable(() -> connectionFactory),
+                stringSerializationContext());
+    }
+
+    /**
+     * Configure ReactiveRedisTemplate for reads that must see the caller's own writes
+     * Runs on the master-only connection factory when read-your-writes, hedging or the near cache is enabled,
+     * on the default factory otherwise
+     */
+    @Bean(defaultCandidate = false)
+    public ReactiveRedisTemplate<String, Object> masterReactiveRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            @Qualifier("masterRedisConnectionFactory") ObjectProvider<ReactiveRedisConnectionFactory> masterConnectionFactory,
+            RedisSerializer<Object> redisValueSerializer) {
+        return new ReactiveRedisTemplate<>(masterConnectionFactory.getIfAvailable(() -> connectionFactory),
+                valueSerializationContext(redisValueSerializer));
+    }
+
+    /**
+     * Configure String ReactiveRedisTemplate for reads that must see the caller's own writes
+     */
+    @Bean(defaultCandidate = false)
+    public ReactiveRedisTemplate<String, String> masterReactiveStringRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            @Qualifier("masterRedisConnectionFactory") ObjectProvider<ReactiveRedisConnectionFactory> masterConnectionFactory) {
+        return new ReactiveRedisTemplate<>(masterConnectionFactory.getIfAvailable(() -> connectionFactory),
+                stringSerializationContext());
+    }
+
+    /**
+     * Refuses to start with the near cache enabled in a profile that defines no client tracking
+     * connection (cluster, or no profile): nothing would drop the entries other instances
+     * overwrite until their time-to-live ran out
+     */
+    @Bean
+    public SmartInitializingSingleton nearCacheTrackingCheck(UserStoreProperties properties,
+                                                            ObjectProvider<ClientTrackingConnection> trackingConnection) {
+        return () -> {
+            if (properties.getNearCache().isEnabled() && trackingConnection.getIfAvailable() == null) {
+                throw new IllegalStateException(
+                        "app.user-store.near-cache.enabled=true needs client tracking, which the active profile does not set up");
+            }
+        };
+    }
+
+    private static RedisSerializationContext<String, Object> valueSerializationContext(RedisSerializer<Object> valueSerializer) {
         StringRedisSerializer keySerializer = new StringRedisSerializer();
-        GenericJackson2JsonRedisSerializer valueSerializer = new GenericJackson2JsonRedisSerializer(redisObjectMapper);
         
         RedisSerializationContext.RedisSerializationContextBuilder<String, Object> builder =
                 RedisSerializationContext.newSerializationContext(keySerializer);
         
-        RedisSerializationContext<String, Object> context = builder
+        return builder
                 .key(keySerializer)
                 .hashKey(keySerializer)
                 .value(valueSerializer)
                 .hashValue(valueSerializer)
                 .build();
-        
-        return new ReactiveRedisTemplate<>(connectionFactory, context);
     }
 
-    /**
-     * Configure ReactiveRedisTemplate for String operations
-     * Optimized for simple string key-value operations
-     */
-    @Bean
-    public ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate(
-            ReactiveRedisConnectionFactory connectionFactory) {
-        
+    private static RedisSerializationContext<String, String> stringSerializationContext() {
         StringRedisSerializer serializer = new StringRedisSerializer();
         
         RedisSerializationContext.RedisSerializationContextBuilder<String, String> builder =
                 RedisSerializationContext.newSerializationContext(serializer);
         
-        RedisSerializationContext<String, String> context = builder
+        return builder
                 .key(serializer)
                 .hashKey(serializer)
                 .value(serializer)
                 .hashValue(serializer)
                 .build();
-        
-        return new ReactiveRedisTemplate<>(connectionFactory, context);
     }
 }
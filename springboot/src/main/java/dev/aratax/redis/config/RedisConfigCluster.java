@@ -0,0 +1,107 @@
+package dev.aratax.redis.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import dev.aratax.redis.annotation.ClusterProfile;
+import dev.aratax.redis.diagnostics.TopologyProbe;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration for Redis Cluster setup
+ *
+ * <p>Users are sharded across the cluster by the hash slot of their key. The client watches the
+ * topology: MOVED/ASK redirects, reconnect attempts and unknown nodes trigger an adaptive refresh
+ * of the slot map, and it is also refreshed periodically.
+ */
+@ClusterProfile
+@Configuration
+public class RedisConfigCluster {
+
+    private final RedisProperties redisProperties;
+    private final RedisConfigProperties properties;
+
+    public RedisConfigCluster(RedisProperties redisProperties, RedisConfigProperties properties) {
+        this.redisProperties = redisProperties;
+        this.properties = properties;
+    }
+
+    @Bean
+    public LettuceConnectionFactory redisConnectionFactory(ClientResources clientResources) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(clusterConfiguration(), clientConfiguration(clientResources));
+        // connect at startup: connected lazily, the first command issued from an event loop
+        // thread would block that thread on a connect it has to complete itself
+        factory.setEagerInitialization(true);
+        return factory;
+    }
+
+    /**
+     * Probes every cluster node for the diagnostics endpoint and the health check
+     */
+    @Bean(destroyMethod = "close")
+    public TopologyProbe topologyProbe(ClientResources clientResources) {
+        List<RedisURI> seeds = clusterConfiguration().getClusterNodes().stream()
+                .map(node -> RedisURI.create(node.getHost(), node.getPort()))
+                .toList();
+        return TopologyProbe.cluster(clientResources, seeds, redisProperties.getPassword(), properties.getDiagnostics());
+    }
+
+    /**
+     * Pooled connections for index scans and multi-key reads in hybrid connection mode
+     */
+    @Bean(defaultCandidate = false)
+    @ConditionalOnProperty(prefix = "spring.data.redis.lettuce", name = "mode", havingValue = "hybrid", matchIfMissing = true)
+    public LettuceConnectionFactory bulkRedisConnectionFactory(ClientResources clientResources, MeterRegistry meterRegistry) {
+        return new PooledLettuceConnectionFactory(clusterConfiguration(), clientConfiguration(clientResources),
+                properties.getLettuce().getPool(), meterRegistry, "bulk");
+    }
+
+    private RedisClusterConfiguration clusterConfiguration() {
+        RedisProperties.Cluster cluster = redisProperties.getCluster();
+        if (cluster == null || cluster.getNodes() == null || cluster.getNodes().isEmpty()) {
+            throw new IllegalStateException("No cluster nodes configured in spring.data.redis.cluster.nodes");
+        }
+        RedisClusterConfiguration clusterConfig = new RedisClusterConfiguration(cluster.getNodes());
+        if (cluster.getMaxRedirects() != null) {
+            clusterConfig.setMaxRedirects(cluster.getMaxRedirects());
+        }
+        clusterConfig.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return clusterConfig;
+    }
+
+    private LettuceClientConfiguration clientConfiguration(ClientResources clientResources) {
+        RedisProperties.Lettuce.Cluster.Refresh refresh = redisProperties.getLettuce().getCluster().getRefresh();
+        ClusterTopologyRefreshOptions.Builder topologyRefresh = ClusterTopologyRefreshOptions.builder()
+                .dynamicRefreshSources(refresh.isDynamicRefreshSources());
+        if (refresh.isAdaptive()) {
+            topologyRefresh.enableAllAdaptiveRefreshTriggers();
+        }
+        Duration period = refresh.getPeriod();
+        if (period != null) {
+            topologyRefresh.enablePeriodicRefresh(period);
+        }
+        // Shared resources carry the command latency recorder, see RedisMetricsConfig
+        return LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
+                .clientOptions(ClusterClientOptions.builder()
+                        .topologyRefreshOptions(topologyRefresh.build())
+                        .build())
+                .readFrom(properties.getReadFrom() == null ? ReadFrom.UPSTREAM : ReadFrom.valueOf(properties.getReadFrom()))
+                .build();
+    }
+
+}
@@ -1,10 +1,13 @@
 package dev.aratax.redis.config;
 
+import java.time.Duration;
 import java.util.List;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
+import dev.aratax.redis.codec.ValueCodec;
 import lombok.Data;
 
 /**
@@ -18,7 +21,14 @@ public class RedisConfigProperties {
     private Node master;
     private List<Node> replicas;
     private String readFrom; 
-    private LettucePool lettuce = new LettucePool();
+    private Lettuce lettuce = new Lettuce();
+    // Format for newly written values; reads understand every codec
+    private ValueCodec codec = ValueCodec.JSON;
+    private Compression compression = new Compression();
+    private CommandLatency commandLatency = new CommandLatency();
+    private ReadRouting readRouting = new ReadRouting();
+    private Failover failover = new Failover();
+    private Diagnostics diagnostics = new Diagnostics();
 
     @Data
     public static class Node {
@@ -28,10 +38,83 @@ public class RedisConfigProperties {
     }
 
     @Data
-    public static class LettucePool {
-        private int maxActive;
-        private int maxIdle;
-        private int minIdle;
+    public static class Lettuce {
+        private ConnectionMode mode = ConnectionMode.HYBRID;
+        private Pool pool = new Pool();
+    }
+
+    public enum ConnectionMode {
+        // every command is multiplexed over the one shared connection
+        SHARED,
+        // point commands stay on the shared connection, index scans and multi-key reads borrow from the pool
+        HYBRID
+    }
+
+    @Data
+    public static class Pool {
+        private int maxActive = 8;
+        private int maxIdle = 8;
+        private int minIdle = 0;
+        // How long an operation queues for a free pooled connection before failing
+        private Duration maxWait = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class ReadRouting {
+        // Steer replica reads away from lagging or slow replicas (replica profile only)
+        private boolean enabled;
+        private Duration sampleInterval = Duration.ofSeconds(1);
+        // Replication stream bytes a replica may trail the master by and still serve reads
+        private long maxLagBytes = 1024 * 1024;
+        // Smoothed probe round trip above which a replica stops serving reads
+        private Duration maxLatency = Duration.ofMillis(50);
+        private Duration probeTimeout = Duration.ofMillis(500);
+        private ReadYourWrites readYourWrites = new ReadYourWrites();
+    }
+
+    @Data
+    public static class ReadYourWrites {
+        // Hand out consistency tokens on writes and honor them on reads (needs read routing)
+        private boolean enabled;
+        // How long a read waits for replicas to reach its token before it is sent to the master
+        private Duration maxWait = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class Failover {
+        // Every sentinel publishes the same event; repeats within this window are dropped
+        private Duration dedupeWindow = Duration.ofSeconds(10);
+        // How long to wait for the new master to answer after a switch before giving up
+        private Duration recoveryTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Diagnostics {
+        // A probe of every node is reused this long, however often diagnostics and health are polled
+        private Duration timeToLive = Duration.ofSeconds(2);
+        // Longest one node may take to connect and answer before it is reported unreachable
+        private Duration probeTimeout = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Compression {
+        // Deflate values written from the threshold on; compressed values are read either way
+        private boolean enabled;
+        // Smaller values are not worth the CPU and are stored as the codec wrote them
+        private DataSize threshold = DataSize.ofKilobytes(1);
+        // Deflate level, 1 (fastest) to 9 (smallest)
+        private int level = 1;
+    }
+
+    @Data
+    public static class CommandLatency {
+        // Publish histogram buckets so percentiles can be aggregated across instances
+        private boolean histogram = true;
+        // Client-side percentiles computed per command and node
+        private double[] percentiles = {0.5, 0.95, 0.99};
+        // Bucket range; most round trips to a healthy node sit well below a millisecond
+        private Duration minLatency = Duration.ofNanos(100_000);
+        private Duration maxLatency = Duration.ofSeconds(5);
     }
 
 }
@@ -1,6 +1,12 @@
 package dev.aratax.redis.config;
 
 import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisPassword;
@@ -9,6 +15,13 @@ import org.springframework.data.redis.connection.lettuce.LettuceClientConfigurat
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 
 import dev.aratax.redis.annotation.ReplicaProfile;
+import dev.aratax.redis.cache.ClientTrackingConnection;
+import dev.aratax.redis.cache.UserNearCache;
+import dev.aratax.redis.diagnostics.TopologyProbe;
+import dev.aratax.redis.routing.LagAwareReadFrom;
+import dev.aratax.redis.routing.ReadYourWritesFilter;
+import dev.aratax.redis.routing.ReplicaHealthMonitor;
+import dev.aratax.redis.service.UserKeys;
 
 /**
  * Configuration for Master-replica Redis setup
@@ -24,7 +37,76 @@ public class RedisConfigReplica {
     }
 
     @Bean
-    public LettuceConnectionFactory redisConnectionFactory() {
+    public LettuceConnectionFactory redisConnectionFactory(ClientResources clientResources, ReadFrom replicaReadFrom) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(masterReplicaConfiguration(),
+                clientConfiguration(clientResources, replicaReadFrom));
+        // connect at startup: connected lazily, the first command issued from an event loop
+        // thread would block that thread on a connect it has to complete itself
+        factory.setEagerInitialization(true);
+        return factory;
+    }
+
+    /**
+     * Read preference from spring.data.redis.read-from, made lag aware when read routing is enabled
+     */
+    @Bean
+    public ReadFrom replicaReadFrom(ObjectProvider<ReplicaHealthMonitor> replicaHealthMonitor, MeterRegistry meterRegistry) {
+        ReadFrom readFrom = ReadFrom.valueOf(properties.getReadFrom());
+        ReplicaHealthMonitor monitor = replicaHealthMonitor.getIfAvailable();
+        return monitor == null ? readFrom : new LagAwareReadFrom(readFrom, monitor, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.data.redis.read-routing", name = "enabled", havingValue = "true")
+    public ReplicaHealthMonitor replicaHealthMonitor(ClientResources clientResources, MeterRegistry meterRegistry) {
+        return new ReplicaHealthMonitor(clientResources, redisUri(properties.getMaster()),
+                properties.getReplicas().stream().map(RedisConfigReplica::redisUri).toList(),
+                properties.getReadRouting(), meterRegistry);
+    }
+
+    /**
+     * Probes the master and the replicas for the diagnostics endpoint and the health check
+     */
+    @Bean(destroyMethod = "close")
+    public TopologyProbe topologyProbe(ClientResources clientResources) {
+        return TopologyProbe.replica(clientResources, redisUri(properties.getMaster()),
+                properties.getReplicas().stream().map(RedisConfigReplica::redisUri).toList(),
+                properties.getDiagnostics());
+    }
+
+    /**
+     * Pooled connections for index scans and multi-key reads in hybrid connection mode
+     */
+    @Bean(defaultCandidate = false)
+    @ConditionalOnProperty(prefix = "spring.data.redis.lettuce", name = "mode", havingValue = "hybrid", matchIfMissing = true)
+    public LettuceConnectionFactory bulkRedisConnectionFactory(ClientResources clientResources, ReadFrom replicaReadFrom,
+                                                               MeterRegistry meterRegistry) {
+        return new PooledLettuceConnectionFactory(masterReplicaConfiguration(), clientConfiguration(clientResources, replicaReadFrom),
+                properties.getLettuce().getPool(), meterRegistry, "bulk");
+    }
+
+    /**
+     * Master-only connections for reads whose consistency token the replicas did not reach in time,
+     * for hedged reads and for reads filling the near cache
+     */
+    @Bean(defaultCandidate = false)
+    @ConditionalOnExpression("(${spring.data.redis.read-routing.enabled:false} and ${spring.data.redis.read-routing.read-your-writes.enabled:false})"
+            + " or ${app.user-store.hedging.enabled:false} or ${app.user-store.near-cache.enabled:false}")
+    public LettuceConnectionFactory masterRedisConnectionFactory(ClientResources clientResources) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(masterReplicaConfiguration(),
+                clientConfiguration(clientResources, ReadFrom.UPSTREAM));
+        factory.setEagerInitialization(true);
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.data.redis.read-routing", name = {"enabled", "read-your-writes.enabled"}, havingValue = "true")
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaHealthMonitor replicaHealthMonitor, MeterRegistry meterRegistry) {
+        return new ReadYourWritesFilter(replicaHealthMonitor, properties.getReadRouting().getReadYourWrites().getMaxWait(),
+                meterRegistry);
+    }
+
+    private RedisStaticMasterReplicaConfiguration masterReplicaConfiguration() {
         // Master + replicas
         RedisStaticMasterReplicaConfiguration masterConfig = new RedisStaticMasterReplicaConfiguration(
                 properties.getMaster().getHost(),
@@ -35,15 +117,35 @@ public class RedisConfigReplica {
                 masterConfig.node(replica.getHost(), replica.getPort())
                             .setPassword(RedisPassword.of(replica.getPassword()))
             );
+        return masterConfig;
+    }
 
-        // Read preference
-        ReadFrom readFrom = ReadFrom.valueOf(properties.getReadFrom());
-
-        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+    private LettuceClientConfiguration clientConfiguration(ClientResources clientResources, ReadFrom readFrom) {
+        // Shared resources carry the command latency recorder, see RedisMetricsConfig
+        return LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
                 .readFrom(readFrom)
                 .build();
+    }
+
+    /**
+     * Invalidation channel for the user near cache. Tracking is enabled on the master because
+     * that is where every write lands.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "app.user-store.near-cache", name = "enabled", havingValue = "true")
+    public ClientTrackingConnection nearCacheTrackingConnection(ClientResources clientResources, UserNearCache nearCache) {
+        return new ClientTrackingConnection(clientResources, redisUri(properties.getMaster()), UserKeys.PREFIX, nearCache);
+    }
 
-        return new LettuceConnectionFactory(masterConfig, clientConfig);
+    private static RedisURI redisUri(RedisConfigProperties.Node node) {
+        RedisURI.Builder uri = RedisURI.builder()
+                .withHost(node.getHost())
+                .withPort(node.getPort());
+        if (node.getPassword() != null) {
+            uri.withPassword(node.getPassword().toCharArray());
+        }
+        return uri.build();
     }
     
 }
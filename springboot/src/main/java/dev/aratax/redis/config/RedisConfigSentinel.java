@@ -1,52 +1,145 @@
 package dev.aratax.redis.config;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 
 import dev.aratax.redis.annotation.SentinelProfile;
-import io.lettuce.core.RedisClient;
-import io.lettuce.core.pubsub.RedisPubSubAdapter;
-import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
-import lombok.extern.slf4j.Slf4j;
+import dev.aratax.redis.cache.ClientTrackingConnection;
+import dev.aratax.redis.cache.UserNearCache;
+import dev.aratax.redis.diagnostics.TopologyProbe;
+import dev.aratax.redis.failover.SentinelFailoverHandler;
+import dev.aratax.redis.service.UserKeys;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
 
 
-@Slf4j
 @SentinelProfile
 @Configuration
 public class RedisConfigSentinel {
 
-  @Bean(destroyMethod = "shutdown")
-  public RedisClient sentinelClient(RedisProperties redisProperties) {
-    List<String> sentinelNodes = redisProperties.getSentinel().getNodes();
-    if (sentinelNodes.isEmpty()) {
+  /**
+   * Connects the shared connection factory, the one auto-configured by Spring Boot, on startup.
+   * Connected lazily, the first command issued from an event loop thread would block that
+   * thread on a connect it has to complete itself.
+   */
+  @Bean
+  public static BeanPostProcessor eagerRedisConnectionFactory() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if ("redisConnectionFactory".equals(beanName) && bean instanceof LettuceConnectionFactory connectionFactory) {
+          connectionFactory.setEagerInitialization(true);
+        }
+        return bean;
+      }
+    };
+  }
+
+  /**
+   * Pooled connections for index scans and multi-key reads in hybrid connection mode. The
+   * shared connection factory itself is auto-configured by Spring Boot.
+   */
+  @Bean(defaultCandidate = false)
+  @ConditionalOnProperty(prefix = "spring.data.redis.lettuce", name = "mode", havingValue = "hybrid", matchIfMissing = true)
+  public LettuceConnectionFactory bulkRedisConnectionFactory(RedisProperties redisProperties, RedisConfigProperties properties,
+                                                             ClientResources clientResources, MeterRegistry meterRegistry) {
+    return new PooledLettuceConnectionFactory(sentinelConfiguration(redisProperties), clientConfiguration(clientResources),
+        properties.getLettuce().getPool(), meterRegistry, "bulk");
+  }
+
+  /**
+   * Listens to every configured sentinel and resets the data connection factories as soon as a
+   * failover is announced, so recovery is bounded by event delivery rather than command timeouts.
+   */
+  @Bean(destroyMethod = "close")
+  public SentinelFailoverHandler sentinelFailoverHandler(RedisProperties redisProperties, RedisConfigProperties properties,
+                                                         ClientResources clientResources,
+                                                         LettuceConnectionFactory redisConnectionFactory,
+                                                         @Qualifier("bulkRedisConnectionFactory") ObjectProvider<LettuceConnectionFactory> bulkRedisConnectionFactory,
+                                                         MeterRegistry meterRegistry) {
+    RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+    if (sentinel.getNodes().isEmpty()) {
       throw new IllegalStateException("No sentinel nodes configured in spring.data.redis.sentinel.nodes");
     }
-    // point at one of your Sentinel nodes (port 26379)
-    return RedisClient.create(String.format("redis://%s", sentinelNodes.get(0)));
+    List<RedisURI> sentinels = sentinelUris(sentinel);
+    // the shared factory goes first, it is the one checked for recovery
+    List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+    connectionFactories.add(redisConnectionFactory);
+    bulkRedisConnectionFactory.ifAvailable(connectionFactories::add);
+    return new SentinelFailoverHandler(clientResources, sentinel.getMaster(), sentinels, connectionFactories,
+        properties.getFailover(), meterRegistry);
   }
 
+  /**
+   * Probes the sentinels and the master and replicas they report for the diagnostics endpoint
+   * and the health check
+   */
   @Bean(destroyMethod = "close")
-  public StatefulRedisPubSubConnection<String, String> sentinelPubSub(RedisClient client) {
-    var conn = client.connectPubSub();                 // connect to Sentinel (Redis protocol)
-    conn.addListener(new RedisPubSubAdapter<>() {
-      @Override public void message(String channel, String message) {
-        log.info("Sentinel event [{}] {}", channel, message);
-        // TODO: react to events: refresh caches, notify ops, export metrics, etc.
-      }
+  public TopologyProbe topologyProbe(RedisProperties redisProperties, RedisConfigProperties properties,
+                                     ClientResources clientResources) {
+    RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+    return TopologyProbe.sentinel(clientResources, sentinel.getMaster(), sentinelUris(sentinel), redisProperties.getPassword(),
+        properties.getDiagnostics());
+  }
+
+  /**
+   * Invalidation channel for the user near cache. The sentinel URI makes Lettuce resolve the
+   * current master, also when it reconnects after a failover.
+   */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(prefix = "app.user-store.near-cache", name = "enabled", havingValue = "true")
+  public ClientTrackingConnection nearCacheTrackingConnection(RedisProperties redisProperties, ClientResources clientResources,
+                                                              UserNearCache nearCache) {
+    RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+    RedisURI.Builder masterUri = RedisURI.builder().withSentinelMasterId(sentinel.getMaster());
+    sentinel.getNodes().forEach(node -> {
+      RedisURI sentinelUri = RedisURI.create("redis://" + node);
+      masterUri.withSentinel(sentinelUri.getHost(), sentinelUri.getPort());
     });
+    if (redisProperties.getPassword() != null) {
+      masterUri.withPassword(redisProperties.getPassword().toCharArray());
+    }
+    return new ClientTrackingConnection(clientResources, masterUri.build(), UserKeys.PREFIX, nearCache);
+  }
+
+  private static List<RedisURI> sentinelUris(RedisProperties.Sentinel sentinel) {
+    return sentinel.getNodes().stream()
+        .map(node -> {
+          RedisURI.Builder uri = RedisURI.builder(RedisURI.create("redis://" + node));
+          if (sentinel.getPassword() != null) {
+            uri.withPassword(sentinel.getPassword().toCharArray());
+          }
+          return uri.build();
+        })
+        .toList();
+  }
+
+  private static RedisSentinelConfiguration sentinelConfiguration(RedisProperties redisProperties) {
+    RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+    RedisSentinelConfiguration sentinelConfig = new RedisSentinelConfiguration(sentinel.getMaster(), new HashSet<>(sentinel.getNodes()));
+    sentinelConfig.setPassword(RedisPassword.of(redisProperties.getPassword()));
+    sentinelConfig.setSentinelPassword(RedisPassword.of(sentinel.getPassword()));
+    return sentinelConfig;
+  }
 
-    // subscribe to key Sentinel events (or use psubscribe("*") to get all)
-    conn.sync().subscribe(
-        "+switch-master",        // master changed
-        "+sdown", "-sdown",      // subjective down / cleared
-        "+odown", "-odown",      // objective down / cleared (masters only)
-        "+try-failover",
-        "+failover-state-*"
-    );
-    return conn;
+  private static LettuceClientConfiguration clientConfiguration(ClientResources clientResources) {
+    return LettuceClientConfiguration.builder()
+        .clientResources(clientResources)
+        .build();
   }
 
 }
@@ -0,0 +1,33 @@
+package dev.aratax.redis.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.lettuce.core.metrics.MicrometerOptions;
+
+/**
+ * Command latency metrics for every Lettuce client in the application.
+ *
+ * <p>Spring Boot registers a Micrometer latency recorder on the shared {@code ClientResources}
+ * bean; this options bean replaces its defaults so that {@code lettuce.command.completion} and
+ * {@code lettuce.command.firstresponse} carry histograms. Timers are tagged with {@code command}
+ * and {@code remote} (the node address), which tells a slow master apart from a slow replica.
+ * Clients only report into these timers when they are built on the shared resources.
+ */
+@Configuration
+public class RedisMetricsConfig {
+
+    @Bean
+    public MicrometerOptions micrometerOptions(RedisConfigProperties properties) {
+        RedisConfigProperties.CommandLatency latency = properties.getCommandLatency();
+        return MicrometerOptions.builder()
+                .histogram(latency.isHistogram())
+                .targetPercentiles(latency.getPercentiles())
+                .minLatency(latency.getMinLatency())
+                .maxLatency(latency.getMaxLatency())
+                // one timer per command and node, not per local ephemeral port
+                .localDistinction(false)
+                .build();
+    }
+
+}
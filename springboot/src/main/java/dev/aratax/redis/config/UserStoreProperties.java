@@ -0,0 +1,132 @@
+package dev.aratax.redis.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Tuning properties for the user store
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.user-store")
+public class UserStoreProperties {
+
+    // COUNT hint for each ZSCAN/SCAN step over the user index
+    private int scanCount = 500;
+    // Number of keys read or deleted per MGET/DEL round trip
+    private int fetchChunkSize = 100;
+    // Commands kept in flight on the shared connection per bulk chunk
+    private int bulkChunkSize = 500;
+    // Largest page of users returned by one paginated listing request
+    private int maxPageSize = 1000;
+    // Layout of each user under its key: VALUE (one serialized blob) or HASH (one field per property)
+    private Storage storage = Storage.VALUE;
+    // Service implementation: REACTIVE (non-blocking commands) or VIRTUAL_THREADS (synchronous commands
+    // on virtual threads over pooled connections)
+    private Execution execution = Execution.REACTIVE;
+    private NearCache nearCache = new NearCache();
+    private WriteBehind writeBehind = new WriteBehind();
+    private SingleFlight singleFlight = new SingleFlight();
+    private Hedging hedging = new Hedging();
+    private IndexRepair indexRepair = new IndexRepair();
+    private HotKeys hotKeys = new HotKeys();
+    private Expiration expiration = new Expiration();
+
+    public enum Storage {
+        VALUE,
+        HASH
+    }
+
+    public enum Execution {
+        REACTIVE,
+        VIRTUAL_THREADS
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled;
+        private long maximumSize = 10_000;
+        // Upper bound on staleness should an invalidation message be missed
+        private Duration timeToLive = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class WriteBehind {
+        // Buffer saves and write the latest value per user in batches
+        private boolean enabled;
+        // Distinct users buffered at once; further saves wait for a flush
+        private int maxPending = 10_000;
+        // Buffered users that trigger a flush, also the most written per flush
+        private int batchSize = 500;
+        // Longest a save stays buffered before it is flushed
+        private Duration flushInterval = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class SingleFlight {
+        // Concurrent findById/exists calls for one user share a single Redis command
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Hedging {
+        // Resend findById/exists to the master when the first read is slow; the first answer wins
+        private boolean enabled;
+        // Reads still unanswered after this percentile of recent read latency are hedged
+        private double percentile = 0.95;
+        // Bounds of the hedge delay; the upper one applies until enough reads have been timed
+        private Duration minDelay = Duration.ofMillis(1);
+        private Duration maxDelay = Duration.ofMillis(50);
+        // Hedges sent may not exceed this fraction of reads
+        private double maxExtraLoad = 0.1;
+        // How far back the latency percentile looks
+        private Duration window = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class IndexRepair {
+        // Periodically remove ids of expired users from the index, keeping the count exact
+        private boolean enabled = false;
+        // Pause between two walks over the index, by whichever instance takes the turn
+        private Duration interval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Expiration {
+        // Each TTL is stretched by a random fraction of itself up to this, so users saved together expire apart
+        private double jitter = 0.1;
+        // XFetch beta of getOrLoad: above 1 refreshes further ahead of expiry, 0 only once expired
+        private double earlyRefreshBeta = 1.0;
+    }
+
+    @Data
+    public static class HotKeys {
+        // Count a sample of user key accesses in a fixed-size sketch and report the most frequent keys
+        private boolean enabled = true;
+        // Fraction of accesses counted
+        private double sampleRate = 0.1;
+        // Keys reported per window
+        private int topK = 20;
+        // Sketch counters per row, rounded up to a power of two, and rows; memory is 4 bytes per counter
+        private int width = 4096;
+        private int depth = 4;
+        // Rates are measured over, and the report replaced, every window
+        private Duration window = Duration.ofSeconds(10);
+        private Pin pin = new Pin();
+    }
+
+    @Data
+    public static class Pin {
+        // Keep hot users in a small local cache while the near cache is disabled
+        private boolean enabled;
+        // Accesses per second from which a reported key is pinned
+        private double minRate = 1000;
+        // Upper bound on staleness for writes made by other instances
+        private Duration timeToLive = Duration.ofSeconds(1);
+    }
+
+}
@@ -4,6 +4,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import dev.aratax.redis.model.RedisDiagnostics;
 import dev.aratax.redis.service.RedisInfoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -38,4 +39,16 @@ public class RedisInfoController {
         return redisInfoService.ping();
     }
 
+    @GetMapping("/diagnostics")
+    @Operation(summary = "Probe every Redis node",
+            description = "Reports round trip, role, replication offset and lag, memory and clients of every master, replica "
+                    + "and sentinel, probed in parallel. Results are reused for spring.data.redis.diagnostics.time-to-live.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "State of every node, unreachable ones included",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = RedisDiagnostics.class)))
+    })
+    public Mono<RedisDiagnostics> diagnostics() {
+        return redisInfoService.diagnostics();
+    }
+
 }
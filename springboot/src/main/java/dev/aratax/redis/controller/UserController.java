@@ -7,16 +7,25 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import dev.aratax.redis.model.BulkOperationResult;
 import dev.aratax.redis.model.User;
-
+import dev.aratax.redis.model.UserPage;
 import dev.aratax.redis.service.UserRedisService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -38,14 +47,19 @@ public class UserController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "User created successfully",
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
-        @ApiResponse(responseCode = "400", description = "Invalid user data provided")
+        @ApiResponse(responseCode = "400", description = "Invalid user data provided"),
+        @ApiResponse(responseCode = "412", description = "If-None-Match: * was sent and the id is taken")
     })
-    public Mono<User> createUser(@RequestBody @Parameter(description = "User data to create") User user) {
+    public Mono<User> createUser(@RequestBody @Parameter(description = "User data to create") User user,
+                                 @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) @Parameter(description = "* to create the user only if the id is not taken yet (412 otherwise)") String ifNoneMatch) {
         if (user.getId() == null) {
             user.setId(UUID.randomUUID().toString());
         }
-        return userRedisService.save(user)
-                .thenReturn(user);
+        if ("*".equals(ifNoneMatch)) {
+            return userRedisService.create(user)
+                    .onErrorMap(DuplicateKeyException.class, e -> new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage()));
+        }
+        return userRedisService.save(user);
     }
 
     @GetMapping("/{id}")
@@ -55,9 +69,13 @@ public class UserController {
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
         @ApiResponse(responseCode = "404", description = "User not found")
     })
-    public Mono<User> getUser(@PathVariable("id") @Parameter(description = "User ID") String id) {
-        return userRedisService.findById(id)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+    public Mono<User> getUser(@PathVariable("id") @Parameter(description = "User ID") String id,
+                              @RequestParam(name = "fields", required = false) @Parameter(description = "Optional comma-separated fields to return, e.g. name,email") List<String> fields) {
+        Mono<User> user = fields == null || fields.isEmpty()
+                ? userRedisService.findById(id)
+                : userRedisService.findById(id, fields)
+                        .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        return user.switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
     }
 
 
@@ -67,14 +85,45 @@ public class UserController {
         @ApiResponse(responseCode = "200", description = "User updated successfully",
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
         @ApiResponse(responseCode = "404", description = "User not found"),
-        @ApiResponse(responseCode = "400", description = "Invalid user data provided")
+        @ApiResponse(responseCode = "400", description = "Invalid user data provided"),
+        @ApiResponse(responseCode = "412", description = "The user is no longer at the version given in If-Match")
     })
     public Mono<User> updateUser(@PathVariable("id") @Parameter(description = "User ID") String id, 
-                                @RequestBody @Parameter(description = "Updated user data") User user) {
+                                @RequestBody @Parameter(description = "Updated user data") User user,
+                                @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) @Parameter(description = "Version the user must still be at, as returned in its version field") String ifMatch,
+                                @RequestParam(name = "keep-ttl", defaultValue = "false") @Parameter(description = "Only update an existing user and keep its expiration") boolean keepTtl) {
         user.setId(id);
         user.updateTimestamp();
-        return userRedisService.save(user)
-                .thenReturn(user);
+        if (ifMatch != null) {
+            return userRedisService.compareAndSet(user, parseVersion(ifMatch))
+                    .onErrorMap(OptimisticLockingFailureException.class, e -> new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage()))
+                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+        }
+        if (keepTtl) {
+            return userRedisService.replace(user)
+                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+        }
+        return userRedisService.save(user);
+    }
+
+    @PatchMapping("/{id}")
+    @Operation(summary = "Partially update user", description = "Updates only the provided fields of an existing user and refreshes updatedAt. Null values and the id cannot be patched.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "User updated successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+        @ApiResponse(responseCode = "404", description = "User not found"),
+        @ApiResponse(responseCode = "400", description = "Unknown field or invalid value provided"),
+        @ApiResponse(responseCode = "409", description = "The user kept being changed by concurrent writes")
+    })
+    public Mono<User> patchUser(@PathVariable("id") @Parameter(description = "User ID") String id,
+                                @RequestBody @Parameter(description = "Changed user fields, e.g. {\"age\": 31}") Map<String, Object> changes) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        changes.forEach((field, value) -> fields.put(field, value == null ? null : value.toString()));
+        fields.put("updatedAt", LocalDateTime.now().toString());
+        return userRedisService.patch(id, fields)
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(OptimisticLockingFailureException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
     }
 
     @DeleteMapping("/{id}")
@@ -122,11 +171,10 @@ public class UserController {
         if (user.getId() == null) {
             user.setId(UUID.randomUUID().toString());
         }
-        return userRedisService.saveWithExpiration(user, seconds)
-                .thenReturn(user);
+        return userRedisService.saveWithExpiration(user, seconds);
     }
 
-    @GetMapping
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Get all users", description = "Retrieves all users from Redis")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "List of all users",
@@ -136,6 +184,59 @@ public class UserController {
         return userRedisService.findAll();
     }
 
+    @GetMapping(params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get a page of users", description = "Retrieves up to limit users ordered by id, starting after the cursor of the previous page")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Page of users with the cursor of the next page",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserPage.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid limit or cursor provided")
+    })
+    public Mono<UserPage> getUserPage(@RequestParam("limit") @Parameter(description = "Maximum number of users in the page") int limit,
+                                      @RequestParam(name = "cursor", required = false) @Parameter(description = "The next cursor of the previous page; omit for the first page") String cursor) {
+        return userRedisService.findPage(cursor, limit)
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    @Operation(summary = "Stream all users", description = "Streams all users as newline-delimited JSON or server-sent events. Users are read from Redis as the client consumes them.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream of all users",
+                content = {
+                    @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = User.class)),
+                    @Content(mediaType = "text/event-stream", schema = @Schema(implementation = User.class))
+                })
+    })
+    public Flux<User> streamAllUsers() {
+        return userRedisService.findAll();
+    }
+
+    @GetMapping("/by-email")
+    @Operation(summary = "Find user by email", description = "Looks a user up by email address, ignoring case, through the email index")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "User found",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+        @ApiResponse(responseCode = "404", description = "No user has that email")
+    })
+    public Mono<User> getUserByEmail(@RequestParam("email") @Parameter(description = "Email address") String email) {
+        return userRedisService.findByEmail(email)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+    }
+
+    @GetMapping("/by-age")
+    @Operation(summary = "Find users by age range", description = "Retrieves users whose age lies in [min, max] through the age index, ordered by age")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Users in the age range",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid range, offset or limit provided")
+    })
+    public Flux<User> getUsersByAge(@RequestParam("min") @Parameter(description = "Lowest age, inclusive") int min,
+                                    @RequestParam("max") @Parameter(description = "Highest age, inclusive") int max,
+                                    @RequestParam(name = "offset", defaultValue = "0") @Parameter(description = "Number of matching users to skip") int offset,
+                                    @RequestParam(name = "limit", defaultValue = "100") @Parameter(description = "Maximum number of users to return") int limit) {
+        return userRedisService.findByAgeRange(min, max, offset, limit)
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
     @GetMapping("/count")
     @Operation(summary = "Get user count", description = "Returns the total number of users in Redis")
     @ApiResponses(value = {
@@ -156,4 +257,53 @@ public class UserController {
         return userRedisService.deleteAll();
     }
 
+    @PostMapping("/bulk")
+    @Operation(summary = "Create users in bulk", description = "Saves many users through pipelined chunks, optionally with an expiration time. Users without an ID get a generated UUID.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Per-user results in request order",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkOperationResult.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid user data or expiration time provided")
+    })
+    public Flux<BulkOperationResult> createUsers(@RequestBody @Parameter(description = "Users to create") List<User> users,
+                                                 @RequestParam(name = "seconds", required = false) @Parameter(description = "Optional expiration time in seconds") Long seconds) {
+        users.stream()
+                .filter(user -> user.getId() == null)
+                .forEach(user -> user.setId(UUID.randomUUID().toString()));
+        return seconds == null
+                ? userRedisService.saveAll(users)
+                : userRedisService.saveAllWithExpiration(users, seconds);
+    }
+
+    @PostMapping("/bulk/delete")
+    @Operation(summary = "Delete users in bulk", description = "Deletes many users by ID through pipelined chunks")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Per-id results in request order",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkOperationResult.class)))
+    })
+    public Flux<BulkOperationResult> deleteUsers(@RequestBody @Parameter(description = "IDs of the users to delete") List<String> ids) {
+        return userRedisService.deleteAllById(ids);
+    }
+
+    @PostMapping("/index/rebuild")
+    @Operation(summary = "Rebuild user index", description = "Re-populates the user index by incrementally scanning existing user keys")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Number of ids added to the index",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = Long.class)))
+    })
+    public Mono<Long> rebuildIndex() {
+        return userRedisService.rebuildIndex();
+    }
+
+    /** Accepts a bare version or an entity tag such as {@code "3"} or {@code W/"3"} */
+    private static long parseVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "If-Match must hold a user version: " + ifMatch);
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package dev.aratax.redis.diagnostics;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.model.NodeDiagnostics;
+import dev.aratax.redis.model.RedisDiagnostics;
+import dev.aratax.redis.service.RedisInfoService;
+import reactor.core.publisher.Mono;
+
+/**
+ * The {@code redis} health component, answered from the cached diagnostics rather than a command
+ * per poll. Takes the place of Spring Boot's Redis health indicator by bean name.
+ *
+ * <p>DOWN when the diagnostics are DOWN; a DEGRADED deployment still serves reads and writes, so
+ * it is UP, with the status in the details.
+ */
+@Component("redisHealthIndicator")
+public class RedisTopologyHealthIndicator implements ReactiveHealthIndicator {
+
+    private final RedisInfoService redisInfoService;
+
+    public RedisTopologyHealthIndicator(RedisInfoService redisInfoService) {
+        this.redisInfoService = redisInfoService;
+    }
+
+    @Override
+    public Mono<Health> health() {
+        return redisInfoService.diagnostics()
+                .map(diagnostics -> (diagnostics.getStatus() == RedisDiagnostics.Status.DOWN ? Health.down() : Health.up())
+                        .withDetail("mode", diagnostics.getMode())
+                        .withDetail("status", diagnostics.getStatus())
+                        .withDetail("reachable", diagnostics.getNodes().stream().filter(NodeDiagnostics::isReachable).count()
+                                + "/" + diagnostics.getNodes().size())
+                        .withDetail("probedAt", diagnostics.getProbedAt())
+                        .build());
+    }
+}
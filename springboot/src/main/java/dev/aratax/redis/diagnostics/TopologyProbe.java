@@ -0,0 +1,307 @@
+package dev.aratax.redis.diagnostics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.aratax.redis.config.RedisConfigProperties;
+import dev.aratax.redis.model.NodeDiagnostics;
+import dev.aratax.redis.model.RedisDiagnostics;
+import dev.aratax.redis.routing.ReplicaHealthMonitor;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.models.partitions.ClusterPartitionParser;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.sentinel.api.StatefulRedisSentinelConnection;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Probes every node of the Redis deployment in parallel, over connections of its own.
+ *
+ * <p>Nodes are discovered anew on every probe: the configured master and replicas, the master
+ * and replicas the first answering sentinel reports plus the sentinels themselves, or the nodes
+ * listed by {@code CLUSTER NODES} on the first answering seed. Each node gets a timed PING and
+ * an INFO, which together with connecting must finish within {@code probe-timeout}. A replica's
+ * lag is the offset of the probed master sharing its replication id minus its own; both are read
+ * in the same probe, so the lag is accurate to the time between their INFO replies.
+ *
+ * <p>Connections are kept between probes and closed once their node leaves the topology.
+ */
+@Slf4j
+public class TopologyProbe implements AutoCloseable {
+
+    private static final String MASTER = "master";
+    private static final String REPLICA = "replica";
+    private static final String SENTINEL = "sentinel";
+
+    private enum Mode {
+        REPLICA,
+        SENTINEL,
+        CLUSTER
+    }
+
+    private final Mode mode;
+    // the static nodes, the sentinels or the cluster seeds
+    private final List<Target> seeds;
+    private final String masterId;
+    private final String password;
+    private final Duration timeout;
+    private final RedisClient client;
+    private final Map<String, StatefulConnection<String, String>> connections = new ConcurrentHashMap<>();
+
+    private TopologyProbe(ClientResources clientResources, Mode mode, List<Target> seeds, String masterId, String password,
+                          RedisConfigProperties.Diagnostics settings) {
+        this.mode = mode;
+        this.seeds = List.copyOf(seeds);
+        this.masterId = masterId;
+        this.password = password;
+        this.timeout = settings.getProbeTimeout();
+        this.client = RedisClient.create(clientResources);
+        // an unreachable node must not hold the probe for the default 10s connect timeout
+        this.client.setOptions(ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(timeout).build())
+                .build());
+    }
+
+    /**
+     * Probes a master and its replicas at fixed addresses
+     */
+    public static TopologyProbe replica(ClientResources clientResources, RedisURI master, List<RedisURI> replicas,
+                                        RedisConfigProperties.Diagnostics settings) {
+        List<Target> nodes = Stream.concat(Stream.of(new Target(master, MASTER, true)),
+                replicas.stream().map(replica -> new Target(replica, REPLICA, false))).toList();
+        return new TopologyProbe(clientResources, Mode.REPLICA, nodes, null, null, settings);
+    }
+
+    /**
+     * Probes the sentinels and the master and replicas they currently monitor under {@code masterId}
+     *
+     * @param password password of the data nodes, null if they have none
+     */
+    public static TopologyProbe sentinel(ClientResources clientResources, String masterId, List<RedisURI> sentinels,
+                                         String password, RedisConfigProperties.Diagnostics settings) {
+        return new TopologyProbe(clientResources, Mode.SENTINEL,
+                sentinels.stream().map(sentinel -> new Target(sentinel, SENTINEL, false)).toList(), masterId, password, settings);
+    }
+
+    /**
+     * Probes every node of the cluster the seeds belong to
+     *
+     * @param password password of the cluster nodes, null if they have none
+     */
+    public static TopologyProbe cluster(ClientResources clientResources, List<RedisURI> seeds, String password,
+                                        RedisConfigProperties.Diagnostics settings) {
+        return new TopologyProbe(clientResources, Mode.CLUSTER,
+                seeds.stream().map(seed -> new Target(seed, null, false)).toList(), null, password, settings);
+    }
+
+    /**
+     * @return Mono of the state of every node discovered; never fails, unreachable nodes are reported as such
+     */
+    public Mono<RedisDiagnostics> probe() {
+        return Mono.defer(() -> {
+            Instant probedAt = Instant.now();
+            return discover()
+                    .doOnNext(this::closeDeparted)
+                    .flatMapMany(targets -> Flux.fromIterable(targets).flatMapSequential(this::probe))
+                    .collectList()
+                    .map(probed -> summarize(probedAt, probed));
+        });
+    }
+
+    @Override
+    public void close() {
+        client.shutdown();
+    }
+
+    private Mono<List<Target>> discover() {
+        return switch (mode) {
+            case REPLICA -> Mono.just(seeds);
+            case SENTINEL -> discoverFromSentinels();
+            case CLUSTER -> discoverFromCluster();
+        };
+    }
+
+    private Mono<List<Target>> discoverFromSentinels() {
+        return Flux.fromIterable(seeds)
+                .concatMap(sentinel -> connect(sentinel)
+                        .map(connection -> ((StatefulRedisSentinelConnection<String, String>) connection).reactive())
+                        .flatMap(commands -> commands.master(masterId)
+                                .map(master -> dataNode(master, MASTER, true))
+                                .concatWith(commands.replicas(masterId).map(replica -> dataNode(replica, REPLICA, false)))
+                                .collectList())
+                        .timeout(timeout)
+                        .onErrorResume(e -> {
+                            log.debug("Sentinel {} could not list the nodes of {}: {}", sentinel.address(), masterId, e.toString());
+                            return Mono.empty();
+                        }), 1)
+                .next()
+                .defaultIfEmpty(List.of())
+                .map(nodes -> Stream.concat(nodes.stream(), seeds.stream()).toList());
+    }
+
+    private Mono<List<Target>> discoverFromCluster() {
+        return Flux.fromIterable(seeds)
+                .concatMap(seed -> connect(seed)
+                        .flatMap(connection -> ((StatefulRedisConnection<String, String>) connection).reactive().clusterNodes())
+                        .timeout(timeout)
+                        .onErrorResume(e -> {
+                            log.debug("Seed {} could not list the cluster nodes: {}", seed.address(), e.toString());
+                            return Mono.empty();
+                        }), 1)
+                .next()
+                .map(nodes -> ClusterPartitionParser.parse(nodes).getPartitions().stream()
+                        .filter(node -> !node.is(RedisClusterNode.NodeFlag.NOADDR))
+                        // a master left without slots after a failover is not needed to serve data
+                        .map(node -> new Target(withPassword(node.getUri()), node.getRole().isUpstream() ? MASTER : REPLICA,
+                                node.getRole().isUpstream() && !node.getSlots().isEmpty()))
+                        .toList())
+                .defaultIfEmpty(seeds);
+    }
+
+    private Target dataNode(Map<String, String> reply, String role, boolean required) {
+        return new Target(withPassword(RedisURI.create(reply.get("ip"), Integer.parseInt(reply.get("port")))), role, required);
+    }
+
+    // a copy, so the URI from a cluster topology snapshot is left as it was
+    private RedisURI withPassword(RedisURI uri) {
+        return password == null ? uri : RedisURI.builder(uri).withPassword(password.toCharArray()).build();
+    }
+
+    private Mono<Probed> probe(Target target) {
+        NodeDiagnostics node = new NodeDiagnostics(target.address(), target.role());
+        return connect(target)
+                .flatMap(connection -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return ping(connection)
+                            .then(Mono.fromSupplier(() -> System.nanoTime() - start))
+                            .zipWhen(rtt -> info(connection));
+                }))
+                .timeout(timeout)
+                .map(reply -> describe(target, node, reply.getT1(), ReplicaHealthMonitor.parseInfo(reply.getT2())))
+                .onErrorResume(e -> {
+                    node.setError(e instanceof TimeoutException ? "No answer within " + timeout : e.getMessage());
+                    return Mono.just(new Probed(target, node, null));
+                });
+    }
+
+    private static Probed describe(Target target, NodeDiagnostics node, long rttNanos, Map<String, String> info) {
+        node.setReachable(true);
+        node.setRttMillis(rttNanos / 1e6);
+        node.setConnectedClients(longValue(info, "connected_clients"));
+        node.setUsedMemoryBytes(longValue(info, "used_memory"));
+        if (SENTINEL.equals(info.get("redis_mode"))) {
+            node.setRole(SENTINEL);
+        } else if ("slave".equals(info.get("role"))) {
+            node.setRole(REPLICA);
+            node.setReplicationOffset(longValue(info, "slave_repl_offset"));
+            node.setMasterLinkUp("up".equals(info.get("master_link_status")));
+        } else {
+            node.setRole(MASTER);
+            node.setReplicationOffset(longValue(info, "master_repl_offset"));
+        }
+        return new Probed(target, node, info.get("master_replid"));
+    }
+
+    private RedisDiagnostics summarize(Instant probedAt, List<Probed> probed) {
+        Map<String, Long> masterOffsets = probed.stream()
+                .filter(p -> MASTER.equals(p.node().getRole()) && p.replicationId() != null)
+                .collect(Collectors.toMap(Probed::replicationId, p -> p.node().getReplicationOffset(), (first, second) -> first));
+        probed.stream()
+                .filter(p -> REPLICA.equals(p.node().getRole()) && p.replicationId() != null)
+                .forEach(p -> {
+                    Long masterOffset = masterOffsets.get(p.replicationId());
+                    if (masterOffset != null) {
+                        // the master may have been probed first, a fast replica can already be past it
+                        p.node().setLagBytes(Math.max(0, masterOffset - p.node().getReplicationOffset()));
+                    }
+                });
+        RedisDiagnostics.Status status;
+        if (probed.stream().noneMatch(p -> MASTER.equals(p.node().getRole()) && p.node().isReachable())
+                || probed.stream().anyMatch(p -> p.target().required() && !p.node().isReachable())) {
+            status = RedisDiagnostics.Status.DOWN;
+        } else if (probed.stream().anyMatch(p -> !p.node().isReachable() || Boolean.FALSE.equals(p.node().getMasterLinkUp()))) {
+            status = RedisDiagnostics.Status.DEGRADED;
+        } else {
+            status = RedisDiagnostics.Status.UP;
+        }
+        return new RedisDiagnostics(mode.name().toLowerCase(Locale.ROOT), status, probedAt,
+                probed.stream().map(Probed::node).toList());
+    }
+
+    private Mono<StatefulConnection<String, String>> connect(Target target) {
+        StatefulConnection<String, String> current = connections.get(target.address());
+        if (current != null) {
+            return Mono.just(current);
+        }
+        return Mono.<StatefulConnection<String, String>>fromCompletionStage(() -> SENTINEL.equals(target.role())
+                        ? client.connectSentinelAsync(StringCodec.UTF8, target.uri())
+                        : client.connectAsync(StringCodec.UTF8, target.uri()))
+                .map(connected -> {
+                    StatefulConnection<String, String> raced = connections.putIfAbsent(target.address(), connected);
+                    if (raced == null) {
+                        return connected;
+                    }
+                    connected.closeAsync();
+                    return raced;
+                });
+    }
+
+    private void closeDeparted(List<Target> targets) {
+        Set<String> current = Stream.concat(targets.stream(), seeds.stream()).map(Target::address).collect(Collectors.toSet());
+        connections.entrySet().removeIf(entry -> {
+            if (current.contains(entry.getKey())) {
+                return false;
+            }
+            log.debug("Node {} left the topology, closing its probe connection", entry.getKey());
+            entry.getValue().closeAsync();
+            return true;
+        });
+    }
+
+    private static Mono<String> ping(StatefulConnection<String, String> connection) {
+        return connection instanceof StatefulRedisSentinelConnection<String, String> sentinel
+                ? sentinel.reactive().ping()
+                : ((StatefulRedisConnection<String, String>) connection).reactive().ping();
+    }
+
+    private static Mono<String> info(StatefulConnection<String, String> connection) {
+        return connection instanceof StatefulRedisSentinelConnection<String, String> sentinel
+                ? sentinel.reactive().info()
+                : ((StatefulRedisConnection<String, String>) connection).reactive().info();
+    }
+
+    private static Long longValue(Map<String, String> info, String field) {
+        String value = info.get(field);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    /**
+     * @param role     expected role, null for a cluster seed
+     * @param required whether the deployment is down without this node
+     */
+    private record Target(RedisURI uri, String role, boolean required) {
+
+        String address() {
+            return uri.getHost() + ":" + uri.getPort();
+        }
+    }
+
+    private record Probed(Target target, NodeDiagnostics node, String replicationId) {
+    }
+}
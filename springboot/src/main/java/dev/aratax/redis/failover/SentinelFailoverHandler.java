@@ -0,0 +1,210 @@
+package dev.aratax.redis.failover;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import dev.aratax.redis.config.RedisConfigProperties;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Reacts to failovers announced by Redis Sentinel instead of waiting for commands against
+ * the old master to time out.
+ *
+ * <p>Subscribes to the event channels of every configured sentinel, so events keep arriving
+ * while some sentinels are down. Each sentinel publishes its own copy of an event; copies
+ * seen again within {@code dedupe-window} are dropped. On {@code +switch-master} for the
+ * monitored master all given connection factories are reset, which makes them resolve the
+ * new master through the sentinels on their next command.
+ *
+ * <p>{@code redis.failover.recovery} times a failover from its detection ({@code +odown} or
+ * {@code +try-failover}, or the switch itself if neither was seen) until the new master
+ * answers as master, tagged {@code outcome=recovered|timeout}. {@code redis.sentinel.events}
+ * counts the de-duplicated events per channel.
+ */
+@Slf4j
+public class SentinelFailoverHandler implements AutoCloseable {
+
+    private static final String SWITCH_MASTER = "+switch-master";
+    private static final String ODOWN = "+odown";
+    private static final String ODOWN_CLEARED = "-odown";
+    private static final String TRY_FAILOVER = "+try-failover";
+    private static final String[] CHANNELS = {
+        SWITCH_MASTER,
+        "+sdown", "-sdown",
+        ODOWN, ODOWN_CLEARED,
+        TRY_FAILOVER
+    };
+    private static final String FAILOVER_STATE_PATTERN = "+failover-state-*";
+    private static final Duration RECOVERY_POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final String masterName;
+    private final List<LettuceConnectionFactory> connectionFactories;
+    private final RedisConfigProperties.Failover settings;
+    private final RedisClient client;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+    private final Map<String, Long> recentEvents = new ConcurrentHashMap<>();
+    // nanoTime of the detection of the failover in progress, 0 if none
+    private final AtomicLong detectedAt = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Timer recovered;
+    private final Timer timedOut;
+
+    public SentinelFailoverHandler(ClientResources clientResources, String masterName, List<RedisURI> sentinels,
+                                   List<LettuceConnectionFactory> connectionFactories,
+                                   RedisConfigProperties.Failover settings, MeterRegistry meterRegistry) {
+        this.masterName = masterName;
+        this.connectionFactories = List.copyOf(connectionFactories);
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.recovered = recoveryTimer(meterRegistry, masterName, "recovered");
+        this.timedOut = recoveryTimer(meterRegistry, masterName, "timeout");
+        this.client = RedisClient.create(clientResources);
+        sentinels.forEach(this::subscribe);
+    }
+
+    @Override
+    public void close() {
+        subscriptions.dispose();
+        client.shutdown();
+    }
+
+    /**
+     * Keeps trying a sentinel that is down at startup; once connected, Lettuce reconnects and
+     * resubscribes on its own.
+     */
+    private void subscribe(RedisURI sentinel) {
+        String node = sentinel.getHost() + ":" + sentinel.getPort();
+        subscriptions.add(Mono.fromCompletionStage(() -> client.connectPubSubAsync(StringCodec.UTF8, sentinel))
+                .flatMap(connection -> {
+                    connection.addListener(new Listener());
+                    subscriptions.add(connection::closeAsync);
+                    return Mono.fromCompletionStage(connection.async().subscribe(CHANNELS))
+                            .then(Mono.fromCompletionStage(connection.async().psubscribe(FAILOVER_STATE_PATTERN)))
+                            .thenReturn(connection);
+                })
+                .doOnError(e -> log.warn("Sentinel {} unavailable for events: {}", node, e.toString()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(connection -> log.info("Subscribed to sentinel events on {}", node)));
+    }
+
+    void onEvent(String channel, String message) {
+        if (!concernsMaster(channel, message) || !firstSighting(channel + " " + message)) {
+            return;
+        }
+        Counter.builder("redis.sentinel.events")
+                .tag("event", channel)
+                .description("Sentinel events for the monitored master, de-duplicated across sentinels")
+                .register(meterRegistry)
+                .increment();
+        log.info("Sentinel event [{}] {}", channel, message);
+
+        long now = System.nanoTime();
+        if (TRY_FAILOVER.equals(channel) || (ODOWN.equals(channel) && message.startsWith("master "))) {
+            detectedAt.compareAndSet(0, now);
+        } else if (ODOWN_CLEARED.equals(channel) && message.startsWith("master ")) {
+            // the master came back before it was replaced
+            detectedAt.set(0);
+        } else if (SWITCH_MASTER.equals(channel)) {
+            long detected = detectedAt.getAndSet(0);
+            recover(detected == 0 ? now : detected, message);
+        }
+    }
+
+    private void recover(long detected, String switchMessage) {
+        Mono.fromRunnable(() -> connectionFactories.forEach(LettuceConnectionFactory::resetConnection))
+                .then(Mono.defer(this::answersAsMaster))
+                .filter(Boolean::booleanValue)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(RECOVERY_POLL_INTERVAL))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, RECOVERY_POLL_INTERVAL))
+                .timeout(settings.getRecoveryTimeout())
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        ok -> {
+                            Duration elapsed = Duration.ofNanos(System.nanoTime() - detected);
+                            recovered.record(elapsed);
+                            log.info("Recovered from failover ({}) in {} ms", switchMessage, elapsed.toMillis());
+                        },
+                        e -> {
+                            timedOut.record(Duration.ofNanos(System.nanoTime() - detected));
+                            log.error("New master did not answer within {} after failover ({})",
+                                    settings.getRecoveryTimeout(), switchMessage, e);
+                        });
+    }
+
+    private Mono<Boolean> answersAsMaster() {
+        ReactiveRedisConnectionFactory connectionFactory = connectionFactories.get(0);
+        return Mono.usingWhen(Mono.<ReactiveRedisConnection>fromSupplier(connectionFactory::getReactiveConnection),
+                connection -> connection.serverCommands().info("replication")
+                        .map(info -> "master".equals(info.getProperty("role"))),
+                ReactiveRedisConnection::closeLater);
+    }
+
+    /**
+     * Instance events read {@code <type> <name> <ip> <port> @ <master> <ip> <port>}, or
+     * {@code master <name> <ip> <port>} for the master itself; {@code +switch-master} reads
+     * {@code <master> <old ip> <old port> <new ip> <new port>}.
+     */
+    private boolean concernsMaster(String channel, String message) {
+        String[] parts = message.split(" ");
+        if (SWITCH_MASTER.equals(channel)) {
+            return parts[0].equals(masterName);
+        }
+        if (parts[0].equals("master")) {
+            return parts.length > 1 && parts[1].equals(masterName);
+        }
+        for (int i = 0; i + 1 < parts.length; i++) {
+            if (parts[i].equals("@")) {
+                return parts[i + 1].equals(masterName);
+            }
+        }
+        return false;
+    }
+
+    private boolean firstSighting(String event) {
+        long now = System.nanoTime();
+        long window = settings.getDedupeWindow().toNanos();
+        recentEvents.values().removeIf(seen -> now - seen > window);
+        return recentEvents.putIfAbsent(event, now) == null;
+    }
+
+    private static Timer recoveryTimer(MeterRegistry meterRegistry, String masterName, String outcome) {
+        return Timer.builder("redis.failover.recovery")
+                .tag("master", masterName)
+                .tag("outcome", outcome)
+                .description("Time from failover detection until the new master answers")
+                .register(meterRegistry);
+    }
+
+    private final class Listener extends RedisPubSubAdapter<String, String> {
+
+        @Override
+        public void message(String channel, String message) {
+            onEvent(channel, message);
+        }
+
+        @Override
+        public void message(String pattern, String channel, String message) {
+            onEvent(channel, message);
+        }
+    }
+}
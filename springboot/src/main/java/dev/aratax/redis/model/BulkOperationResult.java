@@ -0,0 +1,33 @@
+package dev.aratax.redis.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-item outcome of a bulk user operation
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of a single item in a bulk operation")
+public class BulkOperationResult {
+
+    @Schema(description = "Identifier of the user the result refers to", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String id;
+
+    @Schema(description = "Whether the operation succeeded for this user", example = "true")
+    private boolean success;
+
+    @Schema(description = "Error message when the operation failed", example = "OOM command not allowed")
+    private String error;
+
+    public static BulkOperationResult succeeded(String id, boolean success) {
+        return new BulkOperationResult(id, success, null);
+    }
+
+    public static BulkOperationResult failed(String id, Throwable error) {
+        return new BulkOperationResult(id, false, error.getMessage());
+    }
+}
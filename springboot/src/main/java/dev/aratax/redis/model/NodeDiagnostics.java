@@ -0,0 +1,51 @@
+package dev.aratax.redis.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Probe outcome of one Redis node
+ */
+@Data
+@NoArgsConstructor
+@Schema(description = "State of one master, replica or sentinel as probed by the diagnostics endpoint")
+public class NodeDiagnostics {
+
+    @Schema(description = "Address the node was probed at", example = "localhost:6380")
+    private String address;
+
+    @Schema(description = "Role reported by the node, or the expected one if it could not be probed",
+            allowableValues = {"master", "replica", "sentinel"}, example = "replica")
+    private String role;
+
+    @Schema(description = "Whether the node answered within the probe timeout", example = "true")
+    private boolean reachable;
+
+    @Schema(description = "Round trip of a PING in milliseconds", example = "0.21")
+    private Double rttMillis;
+
+    @Schema(description = "Replication offset of a master, or the offset a replica has processed", example = "84582611")
+    private Long replicationOffset;
+
+    @Schema(description = "Replication stream bytes a replica trails its master by, absent if its master was not probed",
+            example = "0")
+    private Long lagBytes;
+
+    @Schema(description = "Whether a replica's link to its master is up", example = "true")
+    private Boolean masterLinkUp;
+
+    @Schema(description = "Memory allocated by the node, absent for sentinels", example = "1048576")
+    private Long usedMemoryBytes;
+
+    @Schema(description = "Client connections open on the node", example = "12")
+    private Long connectedClients;
+
+    @Schema(description = "Why the node could not be probed", example = "No answer within PT0.5S")
+    private String error;
+
+    public NodeDiagnostics(String address, String role) {
+        this.address = address;
+        this.role = role;
+    }
+}
@@ -0,0 +1,39 @@
+package dev.aratax.redis.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Probe outcome of every node of the Redis deployment
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "State of every node of the Redis deployment, probed in parallel")
+public class RedisDiagnostics {
+
+    @Schema(description = "Deployment the application is configured for", allowableValues = {"replica", "sentinel", "cluster"},
+            example = "replica")
+    private String mode;
+
+    @Schema(description = "DOWN if a master serving data is unreachable, DEGRADED if another node is unreachable "
+            + "or a replica lost its master link, UP otherwise", example = "UP")
+    private Status status;
+
+    @Schema(description = "When the probe started; results are reused for a short while after it")
+    private Instant probedAt;
+
+    @Schema(description = "Nodes in the order they were discovered")
+    private List<NodeDiagnostics> nodes;
+
+    public enum Status {
+        UP,
+        DEGRADED,
+        DOWN
+    }
+}
@@ -6,6 +6,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 
 /**
  * User model for Redis operations
@@ -34,6 +35,10 @@ public class User {
     @Schema(description = "Timestamp when the user was last updated", example = "2023-12-01T15:45:00")
     private LocalDateTime updatedAt;
 
+    @With
+    @Schema(description = "Optimistic locking version, advanced by the server on every write", example = "3")
+    private Long version;
+
     public User(String id, String name, String email, Integer age) {
         this.id = id;
         this.name = name;
@@ -0,0 +1,24 @@
+package dev.aratax.redis.model;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of the user listing
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A page of users ordered by id")
+public class UserPage {
+
+    @Schema(description = "Users of this page; may hold fewer than the limit where listed users have expired")
+    private List<User> users;
+
+    @Schema(description = "Opaque cursor of the next page, absent on the last page", example = "MTIz")
+    private String next;
+}
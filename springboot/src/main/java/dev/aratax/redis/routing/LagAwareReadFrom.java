@@ -0,0 +1,83 @@
+package dev.aratax.redis.routing;
+
+import java.util.Iterator;
+import java.util.List;
+
+import io.lettuce.core.OrderingReadFromAccessor;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.models.role.RedisNodeDescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * {@link ReadFrom} that hides replicas excluded by the {@link ReplicaHealthMonitor} from the
+ * configured read preference. Should the preference leave no node to read from, reads fall
+ * back to the master instead of failing.
+ *
+ * <p>Lettuce calls {@link #select} for every read, so it only consults the latest sample.
+ * Each decision is counted in {@code redis.read.routing}: {@code decision=direct} when no replica
+ * was excluded, {@code rerouted} when the preference chose among the remaining nodes and
+ * {@code fallback} when the master took over.
+ */
+public class LagAwareReadFrom extends ReadFrom {
+
+    private final ReadFrom preference;
+    private final ReplicaHealthMonitor monitor;
+    private final Counter direct;
+    private final Counter rerouted;
+    private final Counter fallback;
+
+    public LagAwareReadFrom(ReadFrom preference, ReplicaHealthMonitor monitor, MeterRegistry meterRegistry) {
+        this.preference = preference;
+        this.monitor = monitor;
+        this.direct = decisionCounter(meterRegistry, "direct");
+        this.rerouted = decisionCounter(meterRegistry, "rerouted");
+        this.fallback = decisionCounter(meterRegistry, "fallback");
+    }
+
+    @Override
+    public List<RedisNodeDescription> select(Nodes nodes) {
+        List<RedisNodeDescription> all = nodes.getNodes();
+        List<RedisNodeDescription> eligible = all.stream()
+                .filter(node -> node.getRole().isUpstream() || monitor.isEligible(node.getUri()))
+                .toList();
+
+        List<RedisNodeDescription> selection = preference.select(new EligibleNodes(eligible));
+        if (!selection.isEmpty()) {
+            (eligible.size() == all.size() ? direct : rerouted).increment();
+            return selection;
+        }
+        fallback.increment();
+        return all.stream().filter(node -> node.getRole().isUpstream()).toList();
+    }
+
+    @Override
+    protected boolean isOrderSensitive() {
+        return OrderingReadFromAccessor.isOrderSensitive(preference);
+    }
+
+    @Override
+    public String toString() {
+        return "LagAware[" + preference + "]";
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("redis.read.routing")
+                .tag("decision", decision)
+                .description("Replica read routing decisions")
+                .register(meterRegistry);
+    }
+
+    private record EligibleNodes(List<RedisNodeDescription> nodes) implements Nodes {
+
+        @Override
+        public List<RedisNodeDescription> getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public Iterator<RedisNodeDescription> iterator() {
+            return nodes.iterator();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package dev.aratax.redis.routing;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Per-request read routing carried in the Reactor context by {@link ReadYourWritesFilter}.
+ * Without an entry reads follow the configured read preference and may be served from the
+ * near cache.
+ */
+public final class ReadConsistency {
+
+    private static final String KEY = ReadConsistency.class.getName();
+
+    public enum Route {
+        // no consistency requirement
+        ANY,
+        // the replicas serving reads have caught up with the caller's writes
+        REPLICA,
+        // the replicas did not catch up in time, read from the master
+        MASTER
+    }
+
+    private ReadConsistency() {
+    }
+
+    public static Context with(Context context, Route route) {
+        return context.put(KEY, route);
+    }
+
+    public static Route route(ContextView context) {
+        return context.getOrDefault(KEY, Route.ANY);
+    }
+
+    /**
+     * @return the master variant if the current read must be served by the master, the regular one otherwise
+     */
+    public static <T> Mono<T> select(T regular, T master) {
+        return Mono.deferContextual(context -> Mono.just(route(context) == Route.MASTER ? master : regular));
+    }
+}
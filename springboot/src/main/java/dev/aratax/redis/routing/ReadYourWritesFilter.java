@@ -0,0 +1,92 @@
+package dev.aratax.redis.routing;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-your-writes consistency for the user API on top of replica reads.
+ *
+ * <p>Successful writes answer with the master's replication offset in the
+ * {@value #TOKEN_HEADER} header, taken once the write has been applied. A read that sends the
+ * token back waits up to {@code max-wait} for the replicas serving reads to process that
+ * offset and is sent to the master if they do not. Reads without a token are not affected.
+ * Single-user reads honour the route; listings and counts keep reading from the replicas.
+ *
+ * <p>The wait is recorded in {@code redis.read.consistency.wait}, tagged with the route
+ * the read took.
+ */
+@Slf4j
+public class ReadYourWritesFilter implements WebFilter {
+
+    public static final String TOKEN_HEADER = "X-Consistency-Token";
+
+    private static final String USER_API = "/api/users";
+
+    private final ReplicaHealthMonitor monitor;
+    private final Duration maxWait;
+    private final Timer replicaWait;
+    private final Timer masterWait;
+
+    public ReadYourWritesFilter(ReplicaHealthMonitor monitor, Duration maxWait, MeterRegistry meterRegistry) {
+        this.monitor = monitor;
+        this.maxWait = maxWait;
+        this.replicaWait = waitTimer(meterRegistry, ReadConsistency.Route.REPLICA);
+        this.masterWait = waitTimer(meterRegistry, ReadConsistency.Route.MASTER);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!request.getPath().value().startsWith(USER_API)) {
+            return chain.filter(exchange);
+        }
+        if (HttpMethod.GET.equals(request.getMethod())) {
+            String token = request.getHeaders().getFirst(TOKEN_HEADER);
+            return token == null ? chain.filter(exchange) : readAfter(token, exchange, chain);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> response.getStatusCode() != null && !response.getStatusCode().is2xxSuccessful()
+                ? Mono.empty()
+                : monitor.masterOffset()
+                        .doOnNext(offset -> response.getHeaders().set(TOKEN_HEADER, Long.toString(offset)))
+                        .doOnError(e -> log.warn("No consistency token issued: {}", e.toString()))
+                        .onErrorComplete()
+                        .then());
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> readAfter(String token, ServerWebExchange exchange, WebFilterChain chain) {
+        long offset;
+        try {
+            offset = Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            // not one of ours, the master is always consistent
+            return chain.filter(exchange).contextWrite(context -> ReadConsistency.with(context, ReadConsistency.Route.MASTER));
+        }
+        long start = System.nanoTime();
+        return monitor.awaitReplicas(offset, maxWait)
+                .flatMap(caughtUp -> {
+                    ReadConsistency.Route route = caughtUp ? ReadConsistency.Route.REPLICA : ReadConsistency.Route.MASTER;
+                    (caughtUp ? replicaWait : masterWait).record(Duration.ofNanos(System.nanoTime() - start));
+                    return chain.filter(exchange).contextWrite(context -> ReadConsistency.with(context, route));
+                });
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, ReadConsistency.Route route) {
+        return Timer.builder("redis.read.consistency.wait")
+                .tag("route", route.name().toLowerCase())
+                .description("Time reads with a consistency token waited for replicas to catch up")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,297 @@
+package dev.aratax.redis.routing;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+
+import dev.aratax.redis.config.RedisConfigProperties;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Periodically samples the replication offset of the master and of every replica over
+ * dedicated connections, and times each replica probe.
+ *
+ * <p>A replica is excluded from reads while its link to the master is down, while it trails
+ * the master by more than {@code max-lag-bytes}, while its smoothed probe latency exceeds
+ * {@code max-latency}, or while it cannot be probed at all. Replicas that were never sampled
+ * yet count as eligible, so reads are not pinned to the master during startup.
+ *
+ * <p>Publishes {@code redis.replica.lag}, {@code redis.replica.probe.latency} and
+ * {@code redis.replica.eligible}, tagged with the replica address.
+ */
+@Slf4j
+public class ReplicaHealthMonitor implements AutoCloseable {
+
+    // weight of the newest probe in the smoothed latency
+    private static final double LATENCY_SMOOTHING = 0.5;
+
+    private final RedisClient client;
+    private final Probe master;
+    private final List<Probe> replicas;
+    private final Map<String, ReplicaStatus> statuses = new ConcurrentHashMap<>();
+    private final RedisConfigProperties.ReadRouting settings;
+    private final Disposable sampling;
+
+    public ReplicaHealthMonitor(ClientResources clientResources, RedisURI masterUri, List<RedisURI> replicaUris,
+                                RedisConfigProperties.ReadRouting settings, MeterRegistry meterRegistry) {
+        this.client = RedisClient.create(clientResources);
+        // an unreachable node must not stall the sampling loop for the default 10s
+        this.client.setOptions(ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(settings.getProbeTimeout()).build())
+                .build());
+        this.settings = settings;
+        this.master = new Probe(masterUri);
+        this.replicas = replicaUris.stream().map(Probe::new).toList();
+
+        replicas.forEach(replica -> {
+            Gauge.builder("redis.replica.lag", statuses, map -> statusValue(map.get(replica.node), ReplicaStatus::lagBytes))
+                    .tag("node", replica.node).baseUnit("bytes")
+                    .description("Replication stream bytes the replica trails the master by")
+                    .register(meterRegistry);
+            TimeGauge.builder("redis.replica.probe.latency", statuses, TimeUnit.NANOSECONDS,
+                            map -> statusValue(map.get(replica.node), status -> status.latency() == null ? Double.NaN : status.latency().toNanos()))
+                    .tag("node", replica.node)
+                    .description("Smoothed round trip of the replication probe")
+                    .register(meterRegistry);
+            Gauge.builder("redis.replica.eligible", statuses, map -> isEligible(replica.node) ? 1 : 0)
+                    .tag("node", replica.node)
+                    .description("Whether the replica currently serves reads")
+                    .register(meterRegistry);
+        });
+
+        this.sampling = Flux.interval(Duration.ZERO, settings.getSampleInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sample(), 1)
+                .subscribe();
+    }
+
+    /**
+     * @return true unless the latest sample excluded the replica at the given address
+     */
+    public boolean isEligible(RedisURI uri) {
+        return isEligible(nodeOf(uri));
+    }
+
+    /**
+     * @return the latest sample of every replica that has been sampled, keyed by address
+     */
+    public Map<String, ReplicaStatus> getStatuses() {
+        return Map.copyOf(statuses);
+    }
+
+    /**
+     * @return the master's current replication offset, which covers every write it has acknowledged
+     */
+    public Mono<Long> masterOffset() {
+        return master.connection()
+                .flatMap(connection -> connection.reactive().role().collectList())
+                .map(role -> (Long) role.get(1));
+    }
+
+    /**
+     * Waits until every replica that currently serves reads has processed the given replication
+     * offset, polling the ones that have not; concurrent waiters share one poll loop per replica.
+     *
+     * @return true if they caught up within maxWait, false otherwise
+     */
+    public Mono<Boolean> awaitReplicas(long offset, Duration maxWait) {
+        return Flux.fromIterable(replicas)
+                .filter(replica -> isEligible(replica.node))
+                .flatMap(replica -> replica.awaitOffset(offset))
+                .then(Mono.just(true))
+                .timeout(maxWait, Mono.just(false))
+                .onErrorReturn(false);
+    }
+
+    @Override
+    public void close() {
+        sampling.dispose();
+        client.shutdown();
+    }
+
+    static String nodeOf(RedisURI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    private boolean isEligible(String node) {
+        ReplicaStatus status = statuses.get(node);
+        return status == null || status.isEligible();
+    }
+
+    private Mono<Void> sample() {
+        return master.replicationInfo()
+                .map(info -> Long.parseLong(info.getOrDefault("master_repl_offset", "0")))
+                .flatMapMany(masterOffset -> Flux.fromIterable(replicas)
+                        .flatMap(replica -> replica.sample(masterOffset)))
+                .doOnError(e -> log.warn("Replication sample skipped, master unavailable: {}", e.toString()))
+                .onErrorComplete()
+                .then();
+    }
+
+    private void update(String node, ReplicaStatus status) {
+        ReplicaStatus previous = statuses.put(node, status);
+        boolean wasEligible = previous == null || previous.isEligible();
+        if (wasEligible && !status.isEligible()) {
+            log.warn("Replica {} excluded from reads: {} (lag={} bytes, latency={})",
+                    node, status.exclusion(), status.lagBytes(), status.latency());
+        } else if (!wasEligible && status.isEligible()) {
+            log.info("Replica {} back in read rotation", node);
+        }
+    }
+
+    private ReplicaStatus evaluate(Map<String, String> info, long masterOffset, Duration latency) {
+        long offset = Long.parseLong(info.getOrDefault("slave_repl_offset", "0"));
+        // the master offset is sampled first, a fast replica may already be past it
+        long lag = Math.max(0, masterOffset - offset);
+        ReplicaStatus.Exclusion exclusion = null;
+        if (!"up".equals(info.get("master_link_status"))) {
+            exclusion = ReplicaStatus.Exclusion.LINK_DOWN;
+        } else if (lag > settings.getMaxLagBytes()) {
+            exclusion = ReplicaStatus.Exclusion.LAG;
+        } else if (latency.compareTo(settings.getMaxLatency()) > 0) {
+            exclusion = ReplicaStatus.Exclusion.LATENCY;
+        }
+        return new ReplicaStatus(lag, latency, offset, exclusion);
+    }
+
+    private static double statusValue(ReplicaStatus status, ToDoubleFunction<ReplicaStatus> value) {
+        return status == null ? Double.NaN : value.applyAsDouble(status);
+    }
+
+    /**
+     * @return the fields of an INFO reply, section headers skipped
+     */
+    public static Map<String, String> parseInfo(String info) {
+        Map<String, String> values = new LinkedHashMap<>();
+        info.lines()
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .forEach(line -> {
+                    int separator = line.indexOf(':');
+                    if (separator > 0) {
+                        values.put(line.substring(0, separator), line.substring(separator + 1).trim());
+                    }
+                });
+        return values;
+    }
+
+    private record Timed(Map<String, String> info, Duration latency) {
+    }
+
+    /**
+     * Lazily connected probe of one node; Lettuce reconnects it once it has connected. Callers
+     * racing for the first connection keep the one that got there first.
+     */
+    private final class Probe {
+
+        // polling interval while a read waits for this replica to reach its token
+        private static final Duration OFFSET_POLL_INTERVAL = Duration.ofMillis(2);
+
+        private final RedisURI uri;
+        private final String node;
+        private final AtomicReference<StatefulRedisConnection<String, String>> connection = new AtomicReference<>();
+        // latest replication offset observed on this replica, replayed to every waiter
+        private volatile long offset = -1;
+        private final Sinks.Many<Long> offsets = Sinks.many().replay().latest();
+        // one INFO loop shared by every read waiting on this replica, running while any waits
+        private final Flux<Long> poller;
+
+        Probe(RedisURI uri) {
+            this.uri = uri;
+            this.node = nodeOf(uri);
+            this.poller = replicationInfo()
+                    .map(info -> Long.parseLong(info.getOrDefault("slave_repl_offset", "-1")))
+                    .repeatWhen(polls -> polls.delayElements(OFFSET_POLL_INTERVAL))
+                    .doOnNext(this::observe)
+                    .share();
+        }
+
+        Mono<Map<String, String>> replicationInfo() {
+            return timedReplicationInfo().map(Timed::info);
+        }
+
+        Mono<Long> awaitOffset(long target) {
+            if (offset >= target) {
+                return Mono.just(offset);
+            }
+            // joining the poller keeps it running; offsets seen by the sampling loop count too
+            return Flux.merge(offsets.asFlux(), poller)
+                    .filter(reached -> reached >= target)
+                    .next();
+        }
+
+        private void observe(long reached) {
+            offset = reached;
+            offsets.emitNext(reached, Sinks.EmitFailureHandler.busyLooping(OFFSET_POLL_INTERVAL));
+        }
+
+        Mono<ReplicaStatus> sample(long masterOffset) {
+            return timedReplicationInfo()
+                    .map(timed -> evaluate(timed.info(), masterOffset, smoothLatency(timed.latency())))
+                    .doOnNext(status -> observe(status.offset()))
+                    .onErrorResume(TimeoutException.class, e -> Mono.just(
+                            new ReplicaStatus(0, settings.getProbeTimeout(), 0, ReplicaStatus.Exclusion.LATENCY)))
+                    .onErrorResume(e -> {
+                        log.debug("Replica {} could not be probed: {}", node, e.toString());
+                        return Mono.just(new ReplicaStatus(0, null, 0, ReplicaStatus.Exclusion.UNREACHABLE));
+                    })
+                    .doOnNext(status -> update(node, status));
+        }
+
+        // only the INFO round trip is timed, not establishing the connection
+        private Mono<Timed> timedReplicationInfo() {
+            return connection().flatMap(connection -> Mono.defer(() -> {
+                long start = System.nanoTime();
+                return connection.reactive().info("replication")
+                        .timeout(settings.getProbeTimeout())
+                        .map(info -> new Timed(parseInfo(info), Duration.ofNanos(System.nanoTime() - start)));
+            }));
+        }
+
+        private Duration smoothLatency(Duration latest) {
+            ReplicaStatus previous = statuses.get(node);
+            if (previous == null || previous.latency() == null) {
+                return latest;
+            }
+            long smoothed = (long) (LATENCY_SMOOTHING * latest.toNanos()
+                    + (1 - LATENCY_SMOOTHING) * previous.latency().toNanos());
+            return Duration.ofNanos(smoothed);
+        }
+
+        private Mono<StatefulRedisConnection<String, String>> connection() {
+            return Mono.defer(() -> {
+                StatefulRedisConnection<String, String> current = connection.get();
+                if (current != null) {
+                    return Mono.just(current);
+                }
+                return Mono.fromCompletionStage(() -> client.connectAsync(StringCodec.UTF8, uri))
+                        .flatMap(connected -> {
+                            if (connection.compareAndSet(null, connected)) {
+                                return Mono.just(connected);
+                            }
+                            // a concurrent caller connected first
+                            return Mono.fromCompletionStage(connected.closeAsync()).then(Mono.fromSupplier(connection::get));
+                        });
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package dev.aratax.redis.routing;
+
+import java.time.Duration;
+
+/**
+ * Outcome of the latest replication sample of one replica.
+ *
+ * @param lagBytes  replication stream bytes the replica trails the master by
+ * @param latency   smoothed probe round trip, or null if the replica could not be probed
+ * @param offset    replication offset the replica has processed
+ * @param exclusion why the replica does not serve reads, or null if it does
+ */
+public record ReplicaStatus(long lagBytes, Duration latency, long offset, Exclusion exclusion) {
+
+    public enum Exclusion {
+        LINK_DOWN,
+        LAG,
+        LATENCY,
+        UNREACHABLE
+    }
+
+    public boolean isEligible() {
+        return exclusion == null;
+    }
+}
@@ -1,5 +1,6 @@
 package dev.aratax.redis.service;
 
+import dev.aratax.redis.model.RedisDiagnostics;
 import reactor.core.publisher.Mono;
 
 /**
@@ -13,4 +14,10 @@ public interface RedisInfoService {
      */
     Mono<String> ping();
 
+    /**
+     * Probe every master, replica and sentinel in parallel
+     * @return Mono containing the state of each node, reused for spring.data.redis.diagnostics.time-to-live
+     */
+    Mono<RedisDiagnostics> diagnostics();
+
 }
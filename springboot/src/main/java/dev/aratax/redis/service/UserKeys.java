@@ -0,0 +1,73 @@
+package dev.aratax.redis.service;
+
+/**
+ * Redis key layout for stored users
+ *
+ * <p>The layout is the same in every profile, so data written before the cluster profile existed
+ * stays readable. A user is stored under one key; with value storage its version is kept next
+ * to it under {@link #versionOf}, which hashes to the same slot, so in Redis Cluster one
+ * command or script can still cover both. Users stored by getOrLoad also have their load time
+ * beside them, under {@link #loadTimeOf}. Multi-key commands over many users are split by slot,
+ * see SlotBatcher.
+ */
+public final class UserKeys {
+
+    public static final String PREFIX = "user::";
+    public static final String INDEX = "users::index";
+    // secondary indexes share the {index} hash tag, so one script can update them together
+    public static final String EMAIL_INDEX = "users::{index}:email";
+    public static final String EMAIL_OF = "users::{index}:email-of";
+    public static final String AGE_INDEX = "users::{index}:age";
+    public static final String INDEXED_VERSION = "users::{index}:version";
+    // held by the instance walking the index in the current repair interval
+    public static final String INDEX_REPAIR = "users::{index}:repair";
+    private static final String VERSION_SUFFIX = ":v";
+    private static final String LOAD_TIME_SUFFIX = ":load";
+
+    private UserKeys() {
+    }
+
+    public static String of(String id) {
+        return PREFIX + id;
+    }
+
+    public static String idOf(String key) {
+        return key.substring(PREFIX.length());
+    }
+
+    /**
+     * The key holding the version of the user stored as a value under {@link #of}: that key
+     * as the hash tag, or, if it has a hash tag of its own, that key with a suffix
+     */
+    public static String versionOf(String id) {
+        return companionOf(id, VERSION_SUFFIX);
+    }
+
+    /** The key holding how long loading the user took, tagged like {@link #versionOf} */
+    public static String loadTimeOf(String id) {
+        return companionOf(id, LOAD_TIME_SUFFIX);
+    }
+
+    /**
+     * Whether a key matching {@code user::*} is the version or load time key of a user whose id
+     * has a hash tag; other such keys start with the tag and never match
+     */
+    public static boolean isCompanionKey(String key) {
+        return isCompanionKey(key, VERSION_SUFFIX) || isCompanionKey(key, LOAD_TIME_SUFFIX);
+    }
+
+    private static String companionOf(String id, String suffix) {
+        String key = of(id);
+        int open = key.indexOf('{');
+        boolean tagged = open >= 0 && key.indexOf('}', open) > open + 1;
+        return tagged ? key + suffix : "{" + key + "}" + suffix;
+    }
+
+    private static boolean isCompanionKey(String key, String suffix) {
+        if (!key.endsWith(suffix)) {
+            return false;
+        }
+        String userKey = key.substring(0, key.length() - suffix.length());
+        return userKey.startsWith(PREFIX) && key.equals(companionOf(idOf(userKey), suffix));
+    }
+}
@@ -1,29 +1,159 @@
 package dev.aratax.redis.service;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import dev.aratax.redis.model.BulkOperationResult;
 import dev.aratax.redis.model.User;
+import dev.aratax.redis.model.UserPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
  * Service interface for User Redis operations
+ *
+ * <p>Every write stores the user at the stored version plus one, or at version 1 if it is new,
+ * whatever version the given user carries; the bump happens on the server in the same step as
+ * the write. The user passed in is left as it is, writes answer a copy at the stored version.
  */
 public interface UserRedisService {
     
-    Mono<Boolean> save(User user);
+    /**
+     * @return Mono containing a copy of the user at the version stored
+     */
+    Mono<User> save(User user);
     
     Mono<User> findById(String id);
+
+    /**
+     * Save a user only if no user with its id exists, starting its version at 1
+     * @return Mono containing the stored user; errors with DuplicateKeyException if the id is taken
+     */
+    Mono<User> create(User user);
+
+    /**
+     * Replace a user, keeping its expiration, if its stored version still equals
+     * {@code expectedVersion}; the check and the write are one atomic step
+     * @return Mono containing the stored user at version {@code expectedVersion + 1}, or empty
+     *     if not found; errors with OptimisticLockingFailureException if the version has moved on
+     */
+    Mono<User> compareAndSet(User user, long expectedVersion);
+
+    /**
+     * Replace an existing user, keeping its expiration
+     * @return Mono containing the stored user, or empty if not found
+     */
+    Mono<User> replace(User user);
+
+    /**
+     * Read only the requested fields of a user
+     * @param fields names of {@link User} properties to fetch
+     * @return Mono containing a user with only those fields set, or empty if not found
+     */
+    Mono<User> findById(String id, Collection<String> fields);
+
+    /**
+     * Overwrite individual fields of an existing user, keeping its expiration; concurrent
+     * patches are applied one after the other and never recreate a deleted user
+     * @param fields changed {@link User} properties in their string form; the id cannot be changed
+     * @return Mono containing the updated user, or empty if not found; errors with
+     *     IllegalArgumentException for unknown fields or invalid values, and with
+     *     OptimisticLockingFailureException if concurrent writes kept overtaking the patch
+     */
+    Mono<User> patch(String id, Map<String, String> fields);
     
+    /**
+     * Stream all users; the index is read one chunk ahead of demand, so a slow subscriber
+     * slows down the reads instead of having them buffered
+     */
     Flux<User> findAll();
+
+    /**
+     * Look a user up by email, ignoring case, through the email index
+     * @return Mono containing the user, or empty if no user has that email
+     */
+    Mono<User> findByEmail(String email);
+
+    /**
+     * Read users whose age lies in [minAge, maxAge] through the age index, ordered by age
+     * @param offset number of indexed users in the range to skip
+     * @param limit number of indexed users to read, at most {@code app.user-store.max-page-size};
+     *     users changed or expired since they were indexed are left out, so fewer may be returned
+     * @return Flux of the users; errors with IllegalArgumentException for an empty range or an
+     *     invalid offset or limit
+     */
+    Flux<User> findByAgeRange(int minAge, int maxAge, int offset, int limit);
+
+    /**
+     * Read one page of users ordered by id
+     * @param cursor {@link UserPage#getNext()} of the previous page, or null for the first page
+     * @param limit number of ids to read, at most {@code app.user-store.max-page-size}
+     * @return Mono containing the page; errors with IllegalArgumentException for an invalid
+     *     cursor or limit
+     */
+    Mono<UserPage> findPage(String cursor, int limit);
     
     Mono<Boolean> deleteById(String id);
     
     Mono<Boolean> exists(String id);
     
+    /**
+     * Count users with a single ZCARD of the user index
+     * @return Mono containing the count; users that expired since the index was last repaired
+     *     are still included
+     */
     Mono<Long> count();
     
-    Mono<Boolean> saveWithExpiration(User user, long timeoutInSeconds);
-    
+    /**
+     * Save a user that expires after the timeout, stretched by up to
+     * {@code app.user-store.expiration.jitter} so users saved together expire apart
+     * @return Mono containing a copy of the user at the version stored
+     */
+    Mono<User> saveWithExpiration(User user, long timeoutInSeconds);
+
+    /**
+     * Let a user expire after the timeout, stretched like {@link #saveWithExpiration(User, long)}
+     */
     Mono<Boolean> setExpiration(String id, long timeoutInSeconds);
 
+    /**
+     * Cache-aside read: the stored user, or else the one {@code loader} produces for the id,
+     * stored to expire after the jittered {@code ttl}. A read shortly before the stored user
+     * expires may reload it early, with a chance that grows as expiry nears and with the time
+     * loads take, so one reader refreshes it instead of every reader missing at once.
+     * @param loader source of the user with the given id, e.g. the system of record
+     * @return Mono containing the user, or empty if none is stored and the loader completes empty;
+     *     a failed early reload falls back to the stored user
+     */
+    Mono<User> getOrLoad(String id, Duration ttl, Function<String, Mono<User>> loader);
+
     Mono<Boolean> deleteAll();
+
+    /**
+     * Save users in pipelined chunks
+     * @return Flux of per-user results in input order
+     */
+    Flux<BulkOperationResult> saveAll(List<User> users);
+
+    /**
+     * Save users in pipelined chunks, each expiring after the given timeout
+     * @return Flux of per-user results in input order
+     */
+    Flux<BulkOperationResult> saveAllWithExpiration(List<User> users, long timeoutInSeconds);
+
+    /**
+     * Delete users in pipelined chunks
+     * @return Flux of per-id results in input order; success is false for unknown ids
+     */
+    Flux<BulkOperationResult> deleteAllById(List<String> ids);
+
+    /**
+     * Re-populate the user index from the keyspace using incremental SCAN,
+     * e.g. for users written before the index existed
+     * @return Mono containing the number of ids newly added to the index
+     */
+    Mono<Long> rebuildIndex();
 }
@@ -0,0 +1,139 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.model.User;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Blocking view of the {@link UserStore}, the {@link UserSecondaryIndex} and the index rebuild,
+ * for callers running on virtual threads: each method subscribes to the reactive operation and
+ * parks the calling thread until it answers, which frees its carrier. Layout, scripts and index
+ * upkeep stay those of the store and the index, so blocking and reactive callers read and write
+ * the same data the same way. Null stands for an empty answer.
+ */
+@Component
+@RequiredArgsConstructor
+class BlockingUserStore {
+
+    private final UserStore userStore;
+    private final UserSecondaryIndex secondaryIndex;
+    private final UserIndexRepair indexRepair;
+
+    /** @see UserStore#write */
+    long write(User user, Duration ttl) {
+        return version(userStore.write(user, ttl).block());
+    }
+
+    /** @see UserStore#create */
+    long create(User user, Duration ttl) {
+        return version(userStore.create(user, ttl).block());
+    }
+
+    /** @see UserStore#replace */
+    long replace(User user) {
+        return version(userStore.replace(user).block());
+    }
+
+    /** @see UserStore#compareAndSet */
+    Long compareAndSet(User user, long expectedVersion) {
+        return userStore.compareAndSet(user, expectedVersion).block();
+    }
+
+    /** @see UserStore#patch */
+    User patch(String id, Map<String, String> fields) {
+        return userStore.patch(id, fields).block();
+    }
+
+    /** @see UserStore#delete */
+    List<Boolean> delete(List<String> ids) {
+        return userStore.delete(ids).block();
+    }
+
+    /** @see UserStore#read */
+    User read(String id) {
+        return userStore.read(id).block();
+    }
+
+    /** @see UserStore#readAll */
+    List<User> readAll(List<String> ids) {
+        // MGET takes at least one key
+        return ids.isEmpty() ? List.of() : userStore.readAll(ids).collectList().block();
+    }
+
+    /** @see UserStore#readFields */
+    User readFields(String id, Collection<String> fields) {
+        return userStore.readFields(id, fields).block();
+    }
+
+    /** @see UserStore#exists */
+    boolean exists(String id) {
+        return Boolean.TRUE.equals(userStore.exists(id).block());
+    }
+
+    /** @see UserStore#expire */
+    boolean expire(String id, Duration ttl) {
+        return Boolean.TRUE.equals(userStore.expire(id, ttl).block());
+    }
+
+    /** @see UserStore#timeToLive */
+    Duration timeToLive(String id) {
+        return userStore.timeToLive(id).block();
+    }
+
+    /** @see UserStore#writeLoadTime */
+    void writeLoadTime(String id, Duration loadTime, Duration ttl) {
+        userStore.writeLoadTime(id, loadTime, ttl).block();
+    }
+
+    /** @see UserStore#loadTime */
+    Duration loadTime(String id) {
+        return userStore.loadTime(id).block();
+    }
+
+    /** @see UserSecondaryIndex#indexWritten */
+    void indexWritten(Collection<User> users) {
+        secondaryIndex.indexWritten(users).block();
+    }
+
+    /** @see UserSecondaryIndex#idByEmail */
+    String idByEmail(String email) {
+        return secondaryIndex.idByEmail(email).block();
+    }
+
+    /** @see UserSecondaryIndex#idsByAge */
+    List<String> idsByAge(int minAge, int maxAge, int offset, int limit) {
+        return secondaryIndex.idsByAge(minAge, maxAge, offset, limit).collectList().block();
+    }
+
+    /** @see UserSecondaryIndex#ids */
+    Iterable<List<String>> ids(int scanCount, int chunkSize) {
+        return secondaryIndex.ids(scanCount).buffer(chunkSize).toIterable(1);
+    }
+
+    /** @see UserSecondaryIndex#page */
+    List<String> page(String after, int limit) {
+        return secondaryIndex.page(after, limit).block();
+    }
+
+    /** @see UserSecondaryIndex#count */
+    long count() {
+        Long count = secondaryIndex.count().block();
+        return count == null ? 0 : count;
+    }
+
+    /** @see UserIndexRepair#rebuild */
+    long rebuildIndex() {
+        Long added = indexRepair.rebuild().block();
+        return added == null ? 0 : added;
+    }
+
+    private static long version(Long version) {
+        return version == null ? 0 : version;
+    }
+}
@@ -0,0 +1,107 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Timed;
+
+/**
+ * Keeps users that were stored together from expiring, and being reloaded, together.
+ *
+ * <p>Every TTL is stretched by a random share of itself, up to {@code expiration.jitter}, so a
+ * batch saved with one timeout expires over a spread of time rather than in one instant.
+ *
+ * <p>{@code getOrLoad} reloads a user ahead of its expiry with the XFetch rule of Vattani et
+ * al., "Optimal Probabilistic Cache Stampede Prevention": a read refreshes when
+ * {@code -delta * beta * ln(random) >= remaining TTL}, where {@code delta} is how long the
+ * user's last load took, stored beside it, or for a user stored without one how long loads
+ * take, smoothed over the loads of this instance. Early refreshes grow likelier as expiry
+ * nears and the slower loads are, and each instance draws its own random number, so usually
+ * one reader, on one instance, refreshes a user shortly before it would have expired.
+ *
+ * <p>Publishes the {@code user.load} timer and the {@code user.load.early} counter of loads
+ * started ahead of expiry.
+ */
+@Component
+class ExpirationPolicy {
+
+    // weight of the latest load in the smoothed load time
+    private static final double SMOOTHING = 0.2;
+
+    private final double jitter;
+    private final double beta;
+    private final Timer loads;
+    private final Counter earlyLoads;
+    private double loadNanos;
+
+    ExpirationPolicy(UserStoreProperties properties, MeterRegistry meterRegistry) {
+        UserStoreProperties.Expiration config = properties.getExpiration();
+        if (config.getJitter() < 0 || config.getEarlyRefreshBeta() < 0) {
+            throw new IllegalArgumentException("app.user-store.expiration.jitter and early-refresh-beta must not be negative");
+        }
+        this.jitter = config.getJitter();
+        this.beta = config.getEarlyRefreshBeta();
+        this.loads = Timer.builder("user.load")
+                .description("Time getOrLoad spent in the loader").register(meterRegistry);
+        this.earlyLoads = Counter.builder("user.load.early")
+                .description("Loads started by getOrLoad ahead of the stored user's expiry").register(meterRegistry);
+    }
+
+    /**
+     * @return {@code ttl} stretched by a random share of itself, in whole milliseconds
+     */
+    Duration jittered(Duration ttl) {
+        long millis = ttl.toMillis();
+        if (jitter == 0 || millis <= 0) {
+            return ttl;
+        }
+        return Duration.ofMillis(millis + (long) (ThreadLocalRandom.current().nextDouble() * jitter * millis));
+    }
+
+    /**
+     * @param remaining time the stored user has left; zero or negative for a user that does not expire
+     * @param loadTime how long the stored user took to load; zero if unknown, then the loads of
+     *     this instance stand in
+     * @return whether this read should reload the user now
+     */
+    boolean refreshEarly(Duration remaining, Duration loadTime) {
+        double delta = loadTime.isZero() ? loadNanos() : loadTime.toNanos();
+        if (remaining.isNegative() || remaining.isZero() || delta == 0 || beta == 0) {
+            return false;
+        }
+        double draw = 1 - ThreadLocalRandom.current().nextDouble();
+        if (-delta * beta * Math.log(draw) < remaining.toNanos()) {
+            return false;
+        }
+        earlyLoads.increment();
+        return true;
+    }
+
+    /**
+     * @return Mono of the load with the time it took, also timed into the smoothed load time
+     *     when it completes with a value
+     */
+    <T> Mono<Timed<T>> measured(Supplier<Mono<T>> load) {
+        return Mono.defer(load)
+                .timed()
+                .doOnNext(timed -> record(timed.elapsed().toNanos()));
+    }
+
+    synchronized double loadNanos() {
+        return loadNanos;
+    }
+
+    private synchronized void record(long nanos) {
+        loads.record(nanos, TimeUnit.NANOSECONDS);
+        loadNanos = loadNanos == 0 ? nanos : loadNanos + SMOOTHING * (nanos - loadNanos);
+    }
+}
@@ -0,0 +1,355 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.routing.ReadConsistency;
+import dev.aratax.redis.service.UserKeys;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stores each user as a Redis hash with one string field per {@link User} property, so
+ * partial updates only send and replicate the changed fields and projections only fetch the
+ * requested ones. Selected with {@code app.user-store.storage=hash}; the layout applies to the
+ * whole keyspace, existing string values are not converted.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.user-store", name = "storage", havingValue = "hash")
+class HashUserStore implements UserStore {
+
+    // every script sets the version field to the stored one plus one, whatever version the
+    // arguments carry, so versions only move forward whichever path wrote last. Each comes as a
+    // function, run alone or, outside a cluster, followed by index_written in the same script
+
+    // write(key, ttl, fields) replaces the whole hash (and its expiration), ttl in millis or 0
+    // for none; answers the new version
+    private static final String WRITE_FUNCTION = """
+            local function write(key, ttl, fields)
+              local version = (tonumber(redis.call('HGET', key, 'version')) or 0) + 1
+              redis.call('DEL', key)
+              redis.call('HSET', key, unpack(fields))
+              redis.call('HSET', key, 'version', version)
+              if tonumber(ttl) > 0 then
+                redis.call('PEXPIRE', key, ttl)
+              end
+              return version
+            end
+            """;
+
+    // create(key, ttl, fields) creates the hash at version 1 only if the key is free; answers 0
+    // if it is taken
+    private static final String CREATE_FUNCTION = """
+            local function create(key, ttl, fields)
+              if redis.call('EXISTS', key) == 1 then
+                return 0
+              end
+              redis.call('HSET', key, unpack(fields))
+              redis.call('HSET', key, 'version', 1)
+              if tonumber(ttl) > 0 then
+                redis.call('PEXPIRE', key, ttl)
+              end
+              return 1
+            end
+            """;
+
+    // replace(key, expected, fields) replaces an existing hash keeping its expiration, if
+    // expected is not '' only at that version; answers the new version, 0 on a version
+    // mismatch, -1 if the hash does not exist
+    private static final String REPLACE_FUNCTION = """
+            local function replace(key, expected, fields)
+              local ttl = redis.call('PTTL', key)
+              if ttl == -2 then
+                return -1
+              end
+              local version = tonumber(redis.call('HGET', key, 'version')) or 0
+              if expected ~= '' and version ~= tonumber(expected) then
+                return 0
+              end
+              redis.call('DEL', key)
+              redis.call('HSET', key, unpack(fields))
+              redis.call('HSET', key, 'version', version + 1)
+              if ttl > 0 then
+                redis.call('PEXPIRE', key, ttl)
+              end
+              return version + 1
+            end
+            """;
+
+    // patch(key, fields) updates fields of an existing user only; answers the new version and
+    // the resulting hash, or nothing if the user does not exist
+    private static final String PATCH_FUNCTION = """
+            local function patch(key, fields)
+              if redis.call('EXISTS', key) == 0 then
+                return nil
+              end
+              local version = (tonumber(redis.call('HGET', key, 'version')) or 0) + 1
+              redis.call('HSET', key, unpack(fields))
+              redis.call('HSET', key, 'version', version)
+              return version, redis.call('HGETALL', key)
+            end
+            """;
+
+    // KEYS: the hash; ARGV: ttl, then the fields
+    private static final RedisScript<Long> WRITE = RedisScript.of(WRITE_FUNCTION + """
+            local ttl = ARGV[1]
+            return write(KEYS[1], ttl, {unpack(ARGV, 2)})
+            """, Long.class);
+
+    // KEYS: the hash; ARGV: ttl, then the fields
+    private static final RedisScript<Long> CREATE = RedisScript.of(CREATE_FUNCTION + """
+            local ttl = ARGV[1]
+            return create(KEYS[1], ttl, {unpack(ARGV, 2)})
+            """, Long.class);
+
+    // KEYS: the hash; ARGV: expected version, then the fields
+    private static final RedisScript<Long> REPLACE = RedisScript.of(REPLACE_FUNCTION + """
+            local expected = ARGV[1]
+            return replace(KEYS[1], expected, {unpack(ARGV, 2)})
+            """, Long.class);
+
+    // KEYS: the hash; ARGV: the fields. Answers the hash, empty if the user does not exist
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> PATCH = RedisScript.of(PATCH_FUNCTION + """
+            local _, hash = patch(KEYS[1], ARGV)
+            return hash or {}
+            """, List.class);
+
+    // the indexed variants, outside a cluster. KEYS: the hash, then the index keys (see
+    // UserSecondaryIndex.writeKeys); ARGV: ttl or expected version (none for a patch), id,
+    // email and age, then the fields
+
+    private static final RedisScript<Long> WRITE_INDEXED = RedisScript.of(
+            WRITE_FUNCTION + UserSecondaryIndex.INDEX_WRITTEN_FUNCTION + """
+            local ttl, id, email, age = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+            local version = write(KEYS[1], ttl, {unpack(ARGV, 5)})
+            index_written({unpack(KEYS, 2)}, id, email, age, version)
+            return version
+            """, Long.class);
+
+    private static final RedisScript<Long> CREATE_INDEXED = RedisScript.of(
+            CREATE_FUNCTION + UserSecondaryIndex.INDEX_WRITTEN_FUNCTION + """
+            local ttl, id, email, age = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+            local version = create(KEYS[1], ttl, {unpack(ARGV, 5)})
+            if version > 0 then
+              index_written({unpack(KEYS, 2)}, id, email, age, version)
+            end
+            return version
+            """, Long.class);
+
+    private static final RedisScript<Long> REPLACE_INDEXED = RedisScript.of(
+            REPLACE_FUNCTION + UserSecondaryIndex.INDEX_WRITTEN_FUNCTION + """
+            local expected, id, email, age = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+            local version = replace(KEYS[1], expected, {unpack(ARGV, 5)})
+            if version > 0 then
+              index_written({unpack(KEYS, 2)}, id, email, age, version)
+            end
+            return version
+            """, Long.class);
+
+    // an email or age left out of the patch is passed as UserSecondaryIndex.UNCHANGED
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> PATCH_INDEXED = RedisScript.of(
+            PATCH_FUNCTION + UserSecondaryIndex.INDEX_WRITTEN_FUNCTION + """
+            local id, email, age = ARGV[1], ARGV[2], ARGV[3]
+            local version, hash = patch(KEYS[1], {unpack(ARGV, 4)})
+            if version then
+              index_written({unpack(KEYS, 2)}, id, email, age, version)
+            end
+            return hash or {}
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate;
+    private final ReactiveRedisTemplate<String, String> bulkStringRedisTemplate;
+    private final ReactiveRedisTemplate<String, String> masterStringRedisTemplate;
+    private final ReactiveHashOperations<String, String, String> hashOperations;
+    private final ReactiveHashOperations<String, String, String> masterHashOperations;
+    private final UserSecondaryIndex secondaryIndex;
+    private final int fetchConcurrency;
+
+    HashUserStore(ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate,
+                  @Qualifier("bulkReactiveStringRedisTemplate") ReactiveRedisTemplate<String, String> bulkStringRedisTemplate,
+                  @Qualifier("masterReactiveStringRedisTemplate") ReactiveRedisTemplate<String, String> masterStringRedisTemplate,
+                  UserSecondaryIndex secondaryIndex, UserStoreProperties properties) {
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.bulkStringRedisTemplate = bulkStringRedisTemplate;
+        this.masterStringRedisTemplate = masterStringRedisTemplate;
+        this.hashOperations = reactiveStringRedisTemplate.opsForHash();
+        this.masterHashOperations = masterStringRedisTemplate.opsForHash();
+        this.secondaryIndex = secondaryIndex;
+        this.fetchConcurrency = properties.getFetchChunkSize();
+    }
+
+    @Override
+    public Mono<Long> write(User user, Duration ttl) {
+        return execute(WRITE, WRITE_INDEXED, user.getId(), String.valueOf(ttl == null ? 0 : ttl.toMillis()),
+                UserSecondaryIndex.writeArgs(user), fieldArgs(user));
+    }
+
+    @Override
+    public Mono<Long> create(User user, Duration ttl) {
+        return execute(CREATE, CREATE_INDEXED, user.getId(), String.valueOf(ttl == null ? 0 : ttl.toMillis()),
+                UserSecondaryIndex.writeArgs(user), fieldArgs(user));
+    }
+
+    @Override
+    public Mono<Long> replace(User user) {
+        return replace(user, "").map(result -> Math.max(result, 0));
+    }
+
+    @Override
+    public Mono<Long> compareAndSet(User user, long expectedVersion) {
+        return replace(user, Long.toString(expectedVersion)).filter(result -> result >= 0);
+    }
+
+    private Mono<Long> replace(User user, String expectedVersion) {
+        return execute(REPLACE, REPLACE_INDEXED, user.getId(), expectedVersion, UserSecondaryIndex.writeArgs(user),
+                fieldArgs(user));
+    }
+
+    @Override
+    public Mono<List<Boolean>> delete(List<String> ids) {
+        return secondaryIndex.delete(ids, id -> List.of(UserKeys.of(id)));
+    }
+
+    @Override
+    public Mono<User> read(String id) {
+        return ReadConsistency.select(hashOperations, masterHashOperations)
+                .flatMap(hashes -> hashes.entries(UserKeys.of(id))
+                        .collectMap(Map.Entry::getKey, Map.Entry::getValue))
+                .filter(hash -> !hash.isEmpty())
+                .map(UserHashMapper::fromHash);
+    }
+
+    @Override
+    public Mono<Boolean> exists(String id) {
+        return ReadConsistency.select(reactiveStringRedisTemplate, masterStringRedisTemplate)
+                .flatMap(template -> template.hasKey(UserKeys.of(id)));
+    }
+
+    @Override
+    public Mono<Boolean> expire(String id, Duration ttl) {
+        return reactiveStringRedisTemplate.expire(UserKeys.of(id), ttl);
+    }
+
+    @Override
+    public Mono<Duration> timeToLive(String id) {
+        return reactiveStringRedisTemplate.getExpire(UserKeys.of(id));
+    }
+
+    @Override
+    public Mono<Boolean> writeLoadTime(String id, Duration loadTime, Duration ttl) {
+        return reactiveStringRedisTemplate.opsForValue().set(UserKeys.loadTimeOf(id), Long.toString(loadTime.toNanos()), ttl);
+    }
+
+    @Override
+    public Mono<Duration> loadTime(String id) {
+        return reactiveStringRedisTemplate.opsForValue().get(UserKeys.loadTimeOf(id))
+                .map(nanos -> Duration.ofNanos(Long.parseLong(nanos)));
+    }
+
+    @Override
+    public Flux<User> readAll(List<String> ids) {
+        RedisSerializationContext.SerializationPair<String> strings =
+                bulkStringRedisTemplate.getSerializationContext().getStringSerializationPair();
+        // issued together on one connection so Lettuce pipelines the HGETALLs
+        return bulkStringRedisTemplate
+                .execute(connection -> Flux.fromIterable(ids)
+                        .flatMapSequential(id -> connection.hashCommands()
+                                .hGetAll(strings.write(UserKeys.of(id)))
+                                .collectMap(entry -> strings.read(entry.getKey()), entry -> strings.read(entry.getValue())),
+                                fetchConcurrency))
+                .filter(hash -> !hash.isEmpty())
+                .map(UserHashMapper::fromHash);
+    }
+
+    @Override
+    public Mono<User> readFields(String id, Collection<String> fields) {
+        List<String> requested = List.copyOf(fields);
+        requested.forEach(UserHashMapper::requireKnown);
+        return ReadConsistency.select(hashOperations, masterHashOperations)
+                .flatMap(hashes -> hashes.multiGet(UserKeys.of(id), requested))
+                .filter(values -> values.stream().anyMatch(value -> value != null))
+                .map(values -> {
+                    Map<String, String> hash = new LinkedHashMap<>();
+                    for (int i = 0; i < requested.size(); i++) {
+                        if (values.get(i) != null) {
+                            hash.put(requested.get(i), values.get(i));
+                        }
+                    }
+                    return UserHashMapper.fromHash(hash);
+                });
+    }
+
+    @Override
+    public Mono<User> patch(String id, Map<String, String> fields) {
+        // validates names and values before anything is sent
+        UserHashMapper.apply(new User(), fields);
+        List<String> args = new ArrayList<>();
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        // fields left out of the patch keep their indexed value
+        List<String> indexArgs = List.of(id,
+                fields.containsKey(UserHashMapper.EMAIL)
+                        ? UserSecondaryIndex.normalize(fields.get(UserHashMapper.EMAIL)) : UserSecondaryIndex.UNCHANGED,
+                fields.getOrDefault(UserHashMapper.AGE, UserSecondaryIndex.UNCHANGED));
+        return execute(PATCH, PATCH_INDEXED, id, null, indexArgs, args)
+                .filter(reply -> !reply.isEmpty())
+                .map(HashUserStore::toUser);
+    }
+
+    /**
+     * Runs the write script with the leading argument, if any, and the fields, or outside a
+     * cluster its indexed variant with the index arguments in between, answering its single reply
+     */
+    private <T> Mono<T> execute(RedisScript<T> script, RedisScript<T> indexed, String id, String first,
+                                List<String> indexArgs, List<String> fields) {
+        List<String> keys = List.of(UserKeys.of(id));
+        boolean indexing = secondaryIndex.indexesOnWrite();
+        List<String> args = new ArrayList<>();
+        if (first != null) {
+            args.add(first);
+        }
+        if (indexing) {
+            args.addAll(indexArgs);
+        }
+        args.addAll(fields);
+        return reactiveStringRedisTemplate
+                .execute(indexing ? indexed : script, indexing ? UserSecondaryIndex.writeKeys(keys) : keys, args)
+                .next();
+    }
+
+    /** The field/value pairs of the user's hash, without the version the script sets */
+    private static List<String> fieldArgs(User user) {
+        List<String> args = new ArrayList<>();
+        UserHashMapper.toHash(user.withVersion(null)).forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        return args;
+    }
+
+    private static User toUser(List<?> flattened) {
+        Map<String, String> hash = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < flattened.size(); i += 2) {
+            hash.put((String) flattened.get(i), (String) flattened.get(i + 1));
+        }
+        return UserHashMapper.fromHash(hash);
+    }
+}
@@ -0,0 +1,190 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.routing.ReadConsistency;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends a second copy of a slow read to the master and takes whichever answers first.
+ *
+ * <p>A read still unanswered after the hedge delay, the {@code percentile} of recent read
+ * latency bounded by {@code min-delay} and {@code max-delay}, is issued again on the master
+ * route of {@link ReadConsistency}, which is served by the master connection in the replica
+ * profile: a replica stalled by a fork or a noisy neighbour then costs one delay rather than
+ * the command timeout. The first answer, value or empty, wins and the other read is cancelled;
+ * a failed hedge leaves the first read to answer. The delay is recomputed every second.
+ *
+ * <p>Every read earns {@code max-extra-load} of a hedge and every hedge spends a whole one, at
+ * most {@value #BURST} saved up, so hedges add at most that fraction of reads even when all
+ * reads turn slow at once.
+ *
+ * <p>Publishes the {@code user.read} timer, which times answered reads until their first answer
+ * (a read that fails or is cancelled is not timed), the {@code user.read.hedge.delay} gauge and the
+ * {@code user.read.hedges} counter tagged {@code outcome=won|lost|throttled}. When
+ * {@code app.user-store.hedging.enabled} is false every read is sent once, and so it is in
+ * profiles without a {@code masterRedisConnectionFactory} of their own (sentinel, cluster),
+ * where a hedge would only go to the node the read went to.
+ */
+@Slf4j
+@Component
+class HedgedReads implements AutoCloseable {
+
+    // hedges that may be saved up by reads
+    private static final int BURST = 10;
+    // budget is kept in thousandths of a hedge
+    private static final long HEDGE = 1_000;
+    private static final Duration DELAY_REFRESH = Duration.ofSeconds(1);
+
+    private final boolean enabled;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final long earnedPerRead;
+    private final AtomicLong budget = new AtomicLong();
+    private final Timer reads;
+    private final Counter won;
+    private final Counter lost;
+    private final Counter throttled;
+    private final Disposable refresh;
+    private volatile Duration delay;
+
+    @Autowired
+    HedgedReads(UserStoreProperties properties,
+                @Qualifier("masterRedisConnectionFactory") ObjectProvider<ReactiveRedisConnectionFactory> masterConnectionFactory,
+                MeterRegistry meterRegistry) {
+        this(properties, masterConnectionFactory.getIfAvailable() != null, meterRegistry);
+    }
+
+    /**
+     * @param masterConnection whether reads on the master route have connections of their own
+     */
+    HedgedReads(UserStoreProperties properties, boolean masterConnection, MeterRegistry meterRegistry) {
+        UserStoreProperties.Hedging config = properties.getHedging();
+        if (config.getMaxExtraLoad() < 0 || config.getMaxExtraLoad() > 1) {
+            throw new IllegalArgumentException("app.user-store.hedging.max-extra-load must be in [0, 1]");
+        }
+        if (config.isEnabled() && !masterConnection) {
+            log.warn("Hedged reads disabled: the active profile has no separate master connection to send hedges to");
+        }
+        this.enabled = config.isEnabled() && masterConnection;
+        this.minDelay = config.getMinDelay();
+        this.maxDelay = config.getMaxDelay();
+        this.earnedPerRead = Math.round(config.getMaxExtraLoad() * HEDGE);
+        this.delay = maxDelay;
+        this.reads = Timer.builder("user.read")
+                .description("Single-user reads, until answered by the read or its hedge")
+                .publishPercentiles(config.getPercentile())
+                .distributionStatisticExpiry(config.getWindow())
+                .register(meterRegistry);
+        TimeGauge.builder("user.read.hedge.delay", this, TimeUnit.NANOSECONDS, hedged -> hedged.delay.toNanos())
+                .description("How long a read may take before it is hedged")
+                .register(meterRegistry);
+        this.won = hedgeCounter(meterRegistry, "won");
+        this.lost = hedgeCounter(meterRegistry, "lost");
+        this.throttled = hedgeCounter(meterRegistry, "throttled");
+        this.refresh = enabled
+                ? Flux.interval(DELAY_REFRESH).subscribe(tick -> refreshDelay())
+                : null;
+    }
+
+    /**
+     * @param read issues the read; called once more, on the master route, for a hedge
+     * @return Mono of the first answer
+     */
+    <T> Mono<T> read(Supplier<Mono<T>> read) {
+        if (!enabled) {
+            return Mono.defer(read);
+        }
+        return Mono.defer(() -> {
+            earn();
+            long start = System.nanoTime();
+            AtomicBoolean hedged = new AtomicBoolean();
+            Mono<T> first = Mono.defer(read)
+                    .doOnSuccess(answer -> {
+                        if (hedged.get()) {
+                            lost.increment();
+                        }
+                    });
+            Mono<T> hedge = Mono.delay(delay)
+                    .flatMap(tick -> {
+                        if (!spend()) {
+                            throttled.increment();
+                            return Mono.never();
+                        }
+                        hedged.set(true);
+                        return Mono.defer(read)
+                                .contextWrite(context -> ReadConsistency.with(context, ReadConsistency.Route.MASTER))
+                                .doOnSuccess(answer -> won.increment())
+                                .onErrorResume(e -> Mono.never());
+                    });
+            // timed once answered, whichever copy won; the copy overtaken is cancelled untimed
+            return Mono.firstWithSignal(first, hedge)
+                    .doOnSuccess(answer -> reads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    Duration delay() {
+        return delay;
+    }
+
+    void refreshDelay() {
+        double nanos = 0;
+        for (ValueAtPercentile percentile : reads.takeSnapshot().percentileValues()) {
+            nanos = percentile.value(TimeUnit.NANOSECONDS);
+        }
+        if (nanos <= 0 || Double.isNaN(nanos)) {
+            delay = maxDelay;
+            return;
+        }
+        Duration measured = Duration.ofNanos((long) nanos);
+        delay = measured.compareTo(minDelay) < 0 ? minDelay : measured.compareTo(maxDelay) > 0 ? maxDelay : measured;
+    }
+
+    @Override
+    public void close() {
+        if (refresh != null) {
+            refresh.dispose();
+        }
+    }
+
+    private void earn() {
+        budget.accumulateAndGet(earnedPerRead, (saved, earned) -> Math.min(saved + earned, BURST * HEDGE));
+    }
+
+    private boolean spend() {
+        long saved;
+        do {
+            saved = budget.get();
+            if (saved < HEDGE) {
+                return false;
+            }
+        } while (!budget.compareAndSet(saved, saved - HEDGE));
+        return true;
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("user.read.hedges")
+                .tag("outcome", outcome)
+                .description("Reads resent to the master after the hedge delay, by which copy answered first")
+                .register(meterRegistry);
+    }
+}
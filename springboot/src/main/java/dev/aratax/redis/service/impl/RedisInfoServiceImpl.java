@@ -1,21 +1,34 @@
 package dev.aratax.redis.service.impl;
 
+import java.time.Duration;
+
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import dev.aratax.redis.config.RedisConfigProperties;
+import dev.aratax.redis.diagnostics.TopologyProbe;
+import dev.aratax.redis.model.RedisDiagnostics;
 import dev.aratax.redis.service.RedisInfoService;
 import reactor.core.publisher.Mono;
 
 /**
  * Implementation of RedisInfoService for Redis information operations
+ *
+ * <p>Diagnostics are probed at most once per {@code time-to-live}: callers within that window,
+ * including those arriving while a probe is running, share its result.
  */
 @Service
 public class RedisInfoServiceImpl implements RedisInfoService {
 
     private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final Mono<RedisDiagnostics> diagnostics;
 
-    public RedisInfoServiceImpl(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+    public RedisInfoServiceImpl(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate, TopologyProbe topologyProbe,
+                                RedisConfigProperties properties) {
         this.reactiveRedisTemplate = reactiveRedisTemplate;
+        Duration timeToLive = properties.getDiagnostics().getTimeToLive();
+        this.diagnostics = Mono.defer(topologyProbe::probe)
+                .cache(result -> timeToLive, error -> Duration.ZERO, () -> Duration.ZERO);
     }
 
     @Override
@@ -25,4 +38,9 @@ public class RedisInfoServiceImpl implements RedisInfoService {
                 .ping();
     }
 
+    @Override
+    public Mono<RedisDiagnostics> diagnostics() {
+        return diagnostics;
+    }
+
 }
@@ -0,0 +1,98 @@
+package dev.aratax.redis.service.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Deduplicates concurrent reads of the same key.
+ *
+ * <p>The first caller for an operation and key starts the read; callers arriving while it is
+ * in flight join it and receive the same result, value, empty or error, instead of issuing an
+ * identical command and deserializing the same reply again. The entry is dropped once the read
+ * completes, so the next caller starts a fresh one. A write made through this instance drops
+ * the reads in flight for its key once it lands, see {@link #forget}, so callers arriving after
+ * it start a read of their own instead of joining one issued before it.
+ *
+ * <p>Publishes the {@code single.flight.coalesced} counter, tagged by {@code operation}, and
+ * the {@code single.flight.in.flight} gauge. When {@code app.user-store.single-flight.enabled}
+ * is false every call runs its own read.
+ */
+@Component
+class SingleFlight {
+
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+    private final Map<Flight, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalesced = new ConcurrentHashMap<>();
+    private final Set<String> operations = ConcurrentHashMap.newKeySet();
+
+    SingleFlight(UserStoreProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.getSingleFlight().isEnabled();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("single.flight.in.flight", inFlight, Map::size)
+                .description("Reads currently shared by concurrent callers").register(meterRegistry);
+    }
+
+    /**
+     * @param operation name of the read, keeps different reads of one key apart and tags the counter
+     * @return Mono of the read in flight for the operation and key, started from {@code read} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    <T> Mono<T> share(String operation, String key, Supplier<Mono<T>> read) {
+        if (!enabled) {
+            return Mono.defer(read);
+        }
+        operations.add(operation);
+        return Mono.defer(() -> {
+            Flight flight = new Flight(operation, key);
+            Mono<T> started = start(flight, read);
+            Mono<?> joined = inFlight.putIfAbsent(flight, started);
+            if (joined == null) {
+                return started;
+            }
+            counter(operation).increment();
+            return (Mono<T>) joined;
+        });
+    }
+
+    /**
+     * Stops callers from joining the reads of {@code key} now in flight, which may answer with
+     * what it held before a write; those already joined still get their result.
+     */
+    void forget(String key) {
+        for (String operation : operations) {
+            inFlight.remove(new Flight(operation, key));
+        }
+    }
+
+    private <T> Mono<T> start(Flight flight, Supplier<Mono<T>> read) {
+        AtomicReference<Mono<T>> self = new AtomicReference<>();
+        // cache() keeps the read going should its first subscriber cancel while others wait on it
+        Mono<T> shared = Mono.defer(read)
+                .doFinally(signal -> inFlight.remove(flight, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    private Counter counter(String operation) {
+        return coalesced.computeIfAbsent(operation, name -> Counter.builder("single.flight.coalesced")
+                .description("Reads that joined an identical read already in flight")
+                .tag("operation", name)
+                .register(meterRegistry));
+    }
+
+    private record Flight(String operation, String key) {
+    }
+}
@@ -0,0 +1,48 @@
+package dev.aratax.redis.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import io.lettuce.core.cluster.SlotHash;
+
+/**
+ * Splits the keys of a multi-key operation by hash slot when running against Redis Cluster.
+ * Each group is legal as a single multi-key command, and callers issue the groups together, so
+ * every shard works on its share in parallel instead of the batch failing with CROSSSLOT or
+ * being split up key by key behind one node. Outside a cluster a batch stays one group.
+ */
+@Component
+class SlotBatcher {
+
+    private final boolean clustered;
+
+    SlotBatcher(RedisConnectionFactory connectionFactory) {
+        this.clustered = connectionFactory instanceof LettuceConnectionFactory lettuce && lettuce.isClusterAware();
+    }
+
+    boolean isClustered() {
+        return clustered;
+    }
+
+    /**
+     * @return the items grouped by the slot of their key, groups in order of first appearance
+     */
+    <T> Collection<List<T>> bySlot(List<T> items, Function<T, String> keyOf) {
+        if (!clustered || items.size() < 2) {
+            return List.of(items);
+        }
+        Map<Integer, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(SlotHash.getSlot(keyOf.apply(item)), slot -> new ArrayList<>()).add(item);
+        }
+        return groups.values();
+    }
+}
@@ -0,0 +1,95 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dev.aratax.redis.model.User;
+
+/**
+ * Field-level mapping between {@link User} and the string fields of its Redis hash
+ */
+final class UserHashMapper {
+
+    static final String ID = "id";
+    static final String NAME = "name";
+    static final String EMAIL = "email";
+    static final String AGE = "age";
+    static final String CREATED_AT = "createdAt";
+    static final String UPDATED_AT = "updatedAt";
+    static final String VERSION = "version";
+
+    static final List<String> FIELDS = List.of(ID, NAME, EMAIL, AGE, CREATED_AT, UPDATED_AT, VERSION);
+
+    private UserHashMapper() {
+    }
+
+    /** Hash fields of the user, omitting null properties */
+    static Map<String, String> toHash(User user) {
+        Map<String, String> hash = new LinkedHashMap<>();
+        putIfNotNull(hash, ID, user.getId());
+        putIfNotNull(hash, NAME, user.getName());
+        putIfNotNull(hash, EMAIL, user.getEmail());
+        putIfNotNull(hash, AGE, user.getAge());
+        putIfNotNull(hash, CREATED_AT, user.getCreatedAt());
+        putIfNotNull(hash, UPDATED_AT, user.getUpdatedAt());
+        putIfNotNull(hash, VERSION, user.getVersion());
+        return hash;
+    }
+
+    static User fromHash(Map<String, String> hash) {
+        User user = new User();
+        apply(user, hash);
+        return user;
+    }
+
+    /**
+     * Copy the given fields onto the user
+     * @throws IllegalArgumentException for unknown fields or unparsable values
+     */
+    static User apply(User user, Map<String, String> fields) {
+        fields.forEach((field, value) -> {
+            try {
+                switch (field) {
+                    case ID -> user.setId(value);
+                    case NAME -> user.setName(value);
+                    case EMAIL -> user.setEmail(value);
+                    case AGE -> user.setAge(value == null ? null : Integer.valueOf(value));
+                    case CREATED_AT -> user.setCreatedAt(value == null ? null : LocalDateTime.parse(value));
+                    case UPDATED_AT -> user.setUpdatedAt(value == null ? null : LocalDateTime.parse(value));
+                    case VERSION -> user.setVersion(value == null ? null : Long.valueOf(value));
+                    default -> throw new IllegalArgumentException("Unknown user field: " + field);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value for user field " + field + ": " + value, e);
+            }
+        });
+        return user;
+    }
+
+    /** A copy of the user carrying only the requested fields */
+    static User project(User user, Collection<String> fields) {
+        Map<String, String> hash = toHash(user);
+        Map<String, String> projected = new LinkedHashMap<>();
+        fields.forEach(field -> {
+            requireKnown(field);
+            putIfNotNull(projected, field, hash.get(field));
+        });
+        return fromHash(projected);
+    }
+
+    static void requireKnown(String field) {
+        if (!FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Unknown user field: " + field);
+        }
+    }
+
+    private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field, value.toString());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.service.UserKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the {@value UserKeys#INDEX} sorted set, whose ZCARD answers the user count, free of
+ * users that expired, dropping their entries from the {@link UserSecondaryIndex} too. In a
+ * cluster, where the secondary indexes are updated after the write rather than in the same
+ * script, it also indexes again users whose indexed version is behind the stored one.
+ *
+ * <p>Saves and deletes keep the index in step themselves; ZADD and ZREM are idempotent, so
+ * overwriting a user never counts it twice. Expirations happen behind the application's back.
+ * Rather than relying on keyspace notifications, which are published per node and lost while
+ * nobody is subscribed, the index is walked every {@code interval}. Only the index is walked,
+ * never the keyspace: users stored without an index entry are found by
+ * {@link dev.aratax.redis.service.UserRedisService#rebuildIndex()} instead.
+ *
+ * <p>Every instance schedules the walk, but each interval only the one that takes the
+ * {@value UserKeys#INDEX_REPAIR} lock, held for the interval, runs it.
+ *
+ * <p>Existence is checked with a script, so it is answered by the master even where plain reads
+ * go to a lagging replica, and per hash slot in a cluster. A pruned id whose user was saved
+ * while the chunk was being checked is indexed again.
+ *
+ * <p>Publishes the {@code user.index.pruned} and {@code user.index.reindexed} counters and the
+ * {@code user.index.repair} timer. The walk is off unless
+ * {@code app.user-store.index-repair.enabled} is true.
+ */
+@Slf4j
+@Component
+class UserIndexRepair implements AutoCloseable {
+
+    // ids (ARGV) of the user keys (KEYS) that do not exist
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MISSING = RedisScript.of("""
+            local missing = {}
+            for i, key in ipairs(KEYS) do
+              if redis.call('EXISTS', key) == 0 then
+                missing[#missing + 1] = ARGV[i]
+              end
+            end
+            return missing
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, String> bulkStringRedisTemplate;
+    private final SlotBatcher slotBatcher;
+    private final UserSecondaryIndex secondaryIndex;
+    private final UserStore userStore;
+    private final int scanCount;
+    private final int chunkSize;
+    private final Duration interval;
+    private final String instance = UUID.randomUUID().toString();
+    private final Counter pruned;
+    private final Counter reindexed;
+    private final Timer repairs;
+    private final Disposable schedule;
+
+    UserIndexRepair(@Qualifier("bulkReactiveStringRedisTemplate") ReactiveRedisTemplate<String, String> bulkStringRedisTemplate,
+                    SlotBatcher slotBatcher, UserSecondaryIndex secondaryIndex, UserStore userStore,
+                    UserStoreProperties properties, MeterRegistry meterRegistry) {
+        UserStoreProperties.IndexRepair config = properties.getIndexRepair();
+        this.bulkStringRedisTemplate = bulkStringRedisTemplate;
+        this.slotBatcher = slotBatcher;
+        this.secondaryIndex = secondaryIndex;
+        this.userStore = userStore;
+        this.scanCount = properties.getScanCount();
+        this.chunkSize = properties.getFetchChunkSize();
+        this.interval = config.getInterval();
+        this.pruned = Counter.builder("user.index.pruned")
+                .description("Ids of expired users removed from the user index").register(meterRegistry);
+        this.reindexed = Counter.builder("user.index.reindexed")
+                .description("Users whose secondary index entries were behind their stored version").register(meterRegistry);
+        this.repairs = Timer.builder("user.index.repair")
+                .description("Duration of one walk over the user index").register(meterRegistry);
+
+        this.schedule = config.isEnabled()
+                ? Flux.interval(config.getInterval())
+                        .onBackpressureDrop()
+                        .concatMap(tick -> takeTurn()
+                                .filter(Boolean::booleanValue)
+                                .flatMap(turn -> repair())
+                                .onErrorResume(e -> {
+                                    log.warn("User index repair failed: {}", e.toString());
+                                    return Mono.empty();
+                                }), 1)
+                        .subscribe()
+                : null;
+    }
+
+    /**
+     * Walks the whole index once
+     * @return Mono containing the number of ids removed
+     */
+    Mono<Long> repair() {
+        Timer.Sample sample = Timer.start();
+        ScanOptions options = ScanOptions.scanOptions().count(scanCount).build();
+        return bulkStringRedisTemplate.opsForZSet()
+                .scan(UserKeys.INDEX, options)
+                .map(TypedTuple::getValue)
+                .buffer(chunkSize)
+                .concatMap(ids -> prune(ids).flatMap(removed -> refresh(ids).thenReturn(removed)))
+                .reduce(0L, Long::sum)
+                .doOnNext(removed -> {
+                    pruned.increment(removed);
+                    if (removed > 0) {
+                        log.debug("Removed {} expired users from the user index", removed);
+                    }
+                    sample.stop(repairs);
+                });
+    }
+
+    /**
+     * Walks every user key and adds the users to the index and the secondary indexes. Unlike
+     * the periodic walk this scans the keyspace, so it only runs when asked to, see
+     * {@link dev.aratax.redis.service.UserRedisService#rebuildIndex()}.
+     * @return Mono containing the number of ids added to {@value UserKeys#INDEX}
+     */
+    Mono<Long> rebuild() {
+        ScanOptions options = ScanOptions.scanOptions().match(UserKeys.of("*")).count(scanCount).build();
+        return bulkStringRedisTemplate
+                .scan(options)
+                .filter(key -> !UserKeys.isCompanionKey(key))
+                .map(UserKeys::idOf)
+                .buffer(chunkSize)
+                .concatMap(ids -> bulkStringRedisTemplate.opsForZSet().addAll(UserKeys.INDEX, toTuples(ids))
+                        .flatMap(added -> userStore.readAll(ids).collectList()
+                                .flatMap(users -> secondaryIndex.index(users).thenReturn(added))))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * @return Mono containing true if this instance took the lock for the current interval
+     */
+    Mono<Boolean> takeTurn() {
+        return bulkStringRedisTemplate.opsForValue().setIfAbsent(UserKeys.INDEX_REPAIR, instance, interval);
+    }
+
+    @Override
+    public void close() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    private Mono<Long> prune(List<String> ids) {
+        return missing(ids).flatMap(missing -> missing.isEmpty()
+                ? Mono.just(0L)
+                : bulkStringRedisTemplate.opsForZSet().remove(UserKeys.INDEX, missing.toArray())
+                        // a save that landed since the check has indexed its id before or after the ZREM
+                        .then(missing(missing))
+                        .flatMap(gone -> reindex(missing, gone)
+                                .then(secondaryIndex.remove(gone))
+                                .thenReturn((long) gone.size())));
+    }
+
+    // users stored at a later version than the one their secondary index entries were made from,
+    // left behind by an index update that failed after its write; a replica still behind answers
+    // an older version, which the index script skips
+    private Mono<Long> refresh(List<String> ids) {
+        if (secondaryIndex.indexesOnWrite()) {
+            return Mono.just(0L);
+        }
+        return bulkStringRedisTemplate.<String, String>opsForHash().multiGet(UserKeys.INDEXED_VERSION, ids)
+                .flatMap(versions -> {
+                    Map<String, Long> indexed = new HashMap<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (versions.get(i) != null) {
+                            indexed.put(ids.get(i), Long.valueOf(versions.get(i)));
+                        }
+                    }
+                    return userStore.readAll(ids)
+                            .filter(user -> user.getVersion() != null
+                                    && indexed.getOrDefault(user.getId(), 0L) < user.getVersion())
+                            .collectList();
+                })
+                .flatMap(stale -> secondaryIndex.index(stale).thenReturn((long) stale.size()))
+                .doOnNext(count -> {
+                    reindexed.increment(count);
+                    if (count > 0) {
+                        log.info("Indexed {} users again whose index entries were behind", count);
+                    }
+                });
+    }
+
+    private Mono<List<String>> missing(List<String> ids) {
+        return Flux.fromIterable(slotBatcher.bySlot(ids, UserKeys::of))
+                .flatMap(group -> bulkStringRedisTemplate
+                        .execute(MISSING, group.stream().map(UserKeys::of).toList(), group)
+                        .next())
+                .flatMapIterable(missing -> (List<?>) missing)
+                .map(String::valueOf)
+                .collectList();
+    }
+
+    private Mono<Long> reindex(List<String> removed, List<String> gone) {
+        List<String> revived = removed.stream().filter(id -> !gone.contains(id)).toList();
+        return revived.isEmpty()
+                ? Mono.just(0L)
+                : bulkStringRedisTemplate.opsForZSet().addAll(UserKeys.INDEX, toTuples(revived));
+    }
+
+    private static List<TypedTuple<String>> toTuples(List<String> ids) {
+        return ids.stream().map(id -> TypedTuple.of(id, 0d)).toList();
+    }
+}
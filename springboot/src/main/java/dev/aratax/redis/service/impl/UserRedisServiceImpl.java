@@ -1,79 +1,447 @@
 package dev.aratax.redis.service.impl;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import dev.aratax.redis.cache.HotKeyTracker;
+import dev.aratax.redis.cache.UserNearCache;
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.BulkOperationResult;
 import dev.aratax.redis.model.User;
+import dev.aratax.redis.model.UserPage;
+import dev.aratax.redis.routing.ReadConsistency;
+import dev.aratax.redis.service.UserKeys;
 import dev.aratax.redis.service.UserRedisService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-/** Implementation of UserRedisService */
+/**
+ * Implementation of UserRedisService.
+ *
+ * <p>Every stored user id is also kept in the {@value UserKeys#INDEX} sorted set so that
+ * listing, counting and bulk deletion walk the index with ZSCAN instead of issuing a blocking
+ * {@code KEYS} over the whole keyspace.
+ *
+ * <p>How a single user is laid out under its key is delegated to the configured
+ * {@link UserStore}. Single-user reads consult the {@link UserNearCache} first. Writes from this instance
+ * invalidate it directly; writes from elsewhere reach it through client tracking. On a miss,
+ * concurrent reads of the same user share one command through {@link SingleFlight}.
+ *
+ * <p>Saves, patches and deletes also maintain the {@link UserSecondaryIndex} by email and age,
+ * in the same script as the write or delete outside a cluster,
+ * which {@link #findByEmail(String)} and {@link #findByAgeRange(int, int, int, int)} read
+ * instead of walking all users.
+ *
+ * <p>Pages of the listing are cut with ZRANGEBYLEX over the index; the cursor handed out is
+ * the last id of a page, so pages stay stable while users are added or removed elsewhere.
+ *
+ * <p>Index scans and the multi-key reads and deletes driven by them run on the bulk
+ * templates, so their large replies do not queue up in front of point commands on the
+ * shared connection. Against Redis Cluster they are split by hash slot first, see
+ * {@link SlotBatcher}.
+ *
+ * <p>With write-behind enabled, single saves go through the {@link WriteBehindBuffer}. Other
+ * writes settle the buffered saves they could race with first, and single-user reads see
+ * buffered values; listings and counts catch up with the next flush.
+ *
+ * <p>Create-if-absent, compare-and-set on {@link User#getVersion()} and replace-keeping-TTL are
+ * single atomic commands or scripts, so callers need no read-before-write round trip. The
+ * store runs its scripts by SHA; Spring re-sends the script body on NOSCRIPT.
+ *
+ * <p>Every single-user read and write is offered to the {@link HotKeyTracker}, which samples
+ * them to report the hottest keys; while the near cache is off, it pins those keys in a short-lived
+ * local cache.
+ *
+ * <p>TTLs are jittered and {@link #getOrLoad(String, Duration, Function)} reloads users ahead
+ * of expiry as decided by the {@link ExpirationPolicy}.
+ *
+ * <p>Reads routed by a consistency token (see {@link ReadConsistency}) skip the near cache and
+ * go to the master when the replicas have not caught up. findById reads filling the near cache
+ * go to the master. Other findById/exists reads that miss the near cache may be hedged to the
+ * master by {@link HedgedReads}.
+ */
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.user-store", name = "execution", havingValue = "reactive", matchIfMissing = true)
 public class UserRedisServiceImpl implements UserRedisService {
 
-  private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
-  private static final String USER_KEY_PREFIX = "user::";
+  private final UserStoreProperties properties;
+  private final UserNearCache nearCache;
+  private final UserStore userStore;
+  private final WriteBehindBuffer writeBehind;
+  private final SingleFlight singleFlight;
+  private final HedgedReads hedgedReads;
+  private final UserSecondaryIndex secondaryIndex;
+  private final HotKeyTracker hotKeys;
+  private final ExpirationPolicy expiration;
+  private final UserIndexRepair indexRepair;
 
   @Override
-  public Mono<Boolean> save(User user) {
-    String key = USER_KEY_PREFIX + user.getId();
-    return reactiveRedisTemplate.opsForValue().set(key, user);
+  public Mono<User> save(User user) {
+    String key = UserKeys.of(user.getId());
+    hotKeys.record(key);
+    if (writeBehind.isEnabled()) {
+      return writeBehind.submit(user, null);
+    }
+    return userStore.write(user, null)
+        .doFinally(signal -> invalidate(user.getId()))
+        .flatMap(version -> addToIndex(user.withVersion(version)));
   }
 
   @Override
   public Mono<User> findById(String id) {
-    String key = USER_KEY_PREFIX + id;
-    return reactiveRedisTemplate.opsForValue().get(key).cast(User.class);
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return Mono.deferContextual(context -> {
+      User buffered = writeBehind.buffered(id);
+      if (buffered != null) {
+        return Mono.just(buffered);
+      }
+      if (ReadConsistency.route(context) != ReadConsistency.Route.ANY) {
+        // a consistent read may not be answered from, nor populate, the near cache
+        return userStore.read(id);
+      }
+      User cached = nearCache.get(key);
+      if (cached != null) {
+        return Mono.just(cached);
+      }
+      return singleFlight.share("findById", id, () -> Mono.defer(() -> {
+        // taken before the read, so a write invalidating the key meanwhile keeps the answer out of the cache
+        long stamp = nearCache.stamp(key);
+        return cacheableRead(id)
+            .doOnNext(user -> nearCache.put(key, user, stamp));
+      }));
+    });
+  }
+
+  @Override
+  public Mono<User> create(User user) {
+    String key = UserKeys.of(user.getId());
+    hotKeys.record(key);
+    return writeBehind.settle(user.getId())
+        .then(Mono.defer(() -> userStore.create(user, null)))
+        .doFinally(signal -> invalidate(user.getId()))
+        .flatMap(version -> version > 0
+            ? addToIndex(user.withVersion(version))
+            : Mono.error(new DuplicateKeyException("User " + user.getId() + " already exists")));
+  }
+
+  @Override
+  public Mono<User> compareAndSet(User user, long expectedVersion) {
+    String key = UserKeys.of(user.getId());
+    hotKeys.record(key);
+    return writeBehind.settle(user.getId())
+        .then(Mono.defer(() -> userStore.compareAndSet(user, expectedVersion)))
+        .doFinally(signal -> invalidate(user.getId()))
+        .flatMap(version -> version > 0
+            ? addToIndex(user.withVersion(version))
+            : Mono.error(new OptimisticLockingFailureException(
+                "User " + user.getId() + " is no longer at version " + expectedVersion)));
+  }
+
+  @Override
+  public Mono<User> replace(User user) {
+    String key = UserKeys.of(user.getId());
+    hotKeys.record(key);
+    return writeBehind.settle(user.getId())
+        .then(Mono.defer(() -> userStore.replace(user)))
+        .doFinally(signal -> invalidate(user.getId()))
+        .filter(version -> version > 0)
+        .flatMap(version -> addToIndex(user.withVersion(version)));
+  }
+
+  @Override
+  public Mono<User> findById(String id, Collection<String> fields) {
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return Mono.deferContextual(context -> {
+      User cached = writeBehind.buffered(id);
+      if (cached == null && ReadConsistency.route(context) == ReadConsistency.Route.ANY) {
+        cached = nearCache.get(key);
+      }
+      if (cached != null) {
+        User latest = cached;
+        return Mono.fromCallable(() -> UserHashMapper.project(latest, fields));
+      }
+      return userStore.readFields(id, fields);
+    });
+  }
+
+  @Override
+  public Mono<User> findByEmail(String email) {
+    String wanted = UserSecondaryIndex.normalize(email);
+    return secondaryIndex.idByEmail(email)
+        .flatMap(this::findById)
+        // the entry is a hint, the user may have changed its email since
+        .filter(user -> user.getEmail() != null && UserSecondaryIndex.normalize(user.getEmail()).equals(wanted));
+  }
+
+  @Override
+  public Flux<User> findByAgeRange(int minAge, int maxAge, int offset, int limit) {
+    if (minAge > maxAge || offset < 0 || limit < 1 || limit > properties.getMaxPageSize()) {
+      return Flux.error(new IllegalArgumentException("The age range must not be empty, the offset not negative "
+          + "and the limit between 1 and " + properties.getMaxPageSize()));
+    }
+    return secondaryIndex.idsByAge(minAge, maxAge, offset, limit)
+        .buffer(properties.getFetchChunkSize())
+        .concatMap(userStore::readAll)
+        .filter(user -> user.getAge() != null && user.getAge() >= minAge && user.getAge() <= maxAge);
   }
 
   @Override
   public Flux<User> findAll() {
-    return reactiveRedisTemplate
-        .keys(USER_KEY_PREFIX + "*")
-        .flatMap(key -> reactiveRedisTemplate.opsForValue().get(key))
-        .cast(User.class);
+    return secondaryIndex.ids(properties.getScanCount())
+        .buffer(properties.getFetchChunkSize())
+        // ids of expired users linger in the index, the store skips their missing values;
+        // prefetch 1 keeps the reads no more than one chunk ahead of the subscriber
+        .concatMap(userStore::readAll, 1);
+  }
+
+  @Override
+  public Mono<UserPage> findPage(String cursor, int limit) {
+    if (limit < 1 || limit > properties.getMaxPageSize()) {
+      return Mono.error(new IllegalArgumentException(
+          "The limit must be between 1 and " + properties.getMaxPageSize()));
+    }
+    return Mono.fromCallable(() -> Optional.ofNullable(cursor).map(UserRedisServiceImpl::decodeCursor))
+        .flatMap(after -> secondaryIndex.page(after.orElse(null), limit))
+        .flatMap(ids -> Flux.fromIterable(ids)
+            .buffer(properties.getFetchChunkSize())
+            .concatMap(userStore::readAll)
+            .collectList()
+            .map(users -> new UserPage(users, ids.size() < limit ? null : encodeCursor(ids.get(ids.size() - 1)))));
   }
 
   @Override
   public Mono<Boolean> deleteById(String id) {
-    String key = USER_KEY_PREFIX + id;
-    return reactiveRedisTemplate.delete(key).map(count -> count > 0);
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return writeBehind.settle(id)
+        .then(Mono.defer(() -> userStore.delete(List.of(id))))
+        .doFinally(signal -> invalidate(id))
+        .map(deleted -> deleted.get(0));
   }
 
   @Override
   public Mono<Boolean> exists(String id) {
-    String key = USER_KEY_PREFIX + id;
-    return reactiveRedisTemplate.hasKey(key);
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return Mono.deferContextual(context -> {
+      if (writeBehind.buffered(id) != null
+          || (ReadConsistency.route(context) == ReadConsistency.Route.ANY && nearCache.get(key) != null)) {
+        return Mono.just(true);
+      }
+      if (ReadConsistency.route(context) != ReadConsistency.Route.ANY) {
+        return userStore.exists(id);
+      }
+      return singleFlight.share("exists", id, () -> hedgedReads.read(() -> userStore.exists(id)));
+    });
   }
 
   @Override
   public Mono<Long> count() {
-    return reactiveRedisTemplate.keys(USER_KEY_PREFIX + "*").count();
+    return secondaryIndex.count();
   }
 
   @Override
-  public Mono<Boolean> saveWithExpiration(User user, long timeoutInSeconds) {
-    String key = USER_KEY_PREFIX + user.getId();
-    return reactiveRedisTemplate.opsForValue().set(key, user, Duration.ofSeconds(timeoutInSeconds));
+  public Mono<User> saveWithExpiration(User user, long timeoutInSeconds) {
+    String key = UserKeys.of(user.getId());
+    hotKeys.record(key);
+    return saveExpiring(user, expiration.jittered(Duration.ofSeconds(timeoutInSeconds)), null);
   }
 
   @Override
   public Mono<Boolean> setExpiration(String id, long timeoutInSeconds) {
-    String key = USER_KEY_PREFIX + id;
-    return reactiveRedisTemplate.expire(key, Duration.ofSeconds(timeoutInSeconds));
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return writeBehind.settle(id)
+        .then(Mono.defer(() -> userStore.expire(id, expiration.jittered(Duration.ofSeconds(timeoutInSeconds)))));
+  }
+
+  @Override
+  public Mono<User> getOrLoad(String id, Duration ttl, Function<String, Mono<User>> loader) {
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    // concurrent loads of one user on this instance share one call of the loader
+    Mono<User> load = singleFlight.share("getOrLoad", id, () -> expiration.measured(() -> loader.apply(id))
+        .flatMap(loaded -> saveExpiring(loaded.get(), expiration.jittered(ttl), loaded.elapsed())));
+    return Mono.defer(() -> {
+      User buffered = writeBehind.buffered(id);
+      if (buffered != null) {
+        return Mono.just(buffered);
+      }
+      // the read, PTTL and load time are pipelined over the shared connection; a user without
+      // TTL or load time reads them as ZERO
+      return Mono.zip(userStore.read(id), userStore.timeToLive(id).defaultIfEmpty(Duration.ZERO),
+              userStore.loadTime(id).defaultIfEmpty(Duration.ZERO))
+          .flatMap(stored -> expiration.refreshEarly(stored.getT2(), stored.getT3())
+              ? load.defaultIfEmpty(stored.getT1()).onErrorReturn(stored.getT1())
+              : Mono.just(stored.getT1()))
+          .switchIfEmpty(load);
+    });
+  }
+
+  /**
+   * Saves with expiration; a loaded user keeps its load time beside it, written once the user
+   * is, with the same TTL
+   */
+  private Mono<User> saveExpiring(User user, Duration ttl, Duration loadTime) {
+    Mono<User> saved = writeBehind.isEnabled()
+        ? writeBehind.submit(user, ttl)
+        : userStore.write(user, ttl)
+            .doFinally(signal -> invalidate(user.getId()))
+            .flatMap(version -> addToIndex(user.withVersion(version)));
+    if (loadTime == null) {
+      return saved;
+    }
+    return saved.flatMap(stored -> userStore.writeLoadTime(user.getId(), loadTime, ttl).thenReturn(stored));
   }
 
   @Override
   public Mono<Boolean> deleteAll() {
-    return reactiveRedisTemplate
-        .keys(USER_KEY_PREFIX + "*")                     
-        .flatMap(reactiveRedisTemplate::delete)          
-        .reduce(0L, Long::sum)                           
-        .map(count -> count > 0)                         
-        .switchIfEmpty(Mono.just(false));
+    // ids are removed from the index chunk by chunk, so users saved while this runs survive
+    return writeBehind.settleAll()
+        .thenMany(secondaryIndex.ids(properties.getScanCount()))
+        .buffer(properties.getFetchChunkSize())
+        .concatMap(ids -> userStore.delete(ids)
+            .doFinally(signal -> invalidate(ids))
+            .map(deleted -> deleted.stream().filter(Boolean::booleanValue).count()))
+        .reduce(0L, Long::sum)
+        .map(count -> count > 0);
+  }
+
+  @Override
+  public Mono<Long> rebuildIndex() {
+    return indexRepair.rebuild();
+  }
+
+  @Override
+  public Mono<User> patch(String id, Map<String, String> fields) {
+    if (fields.containsKey(UserHashMapper.ID) || fields.containsKey(UserHashMapper.VERSION)
+        || fields.values().stream().anyMatch(Objects::isNull)) {
+      return Mono.error(new IllegalArgumentException("The id and version cannot be patched and fields cannot be patched to null"));
+    }
+    String key = UserKeys.of(id);
+    hotKeys.record(key);
+    return writeBehind.settle(id)
+        .then(Mono.defer(() -> userStore.patch(id, fields)))
+        .flatMap(user -> secondaryIndex.indexWritten(List.of(user)).thenReturn(user))
+        .doFinally(signal -> invalidate(id));
+  }
+
+  @Override
+  public Flux<BulkOperationResult> saveAll(List<User> users) {
+    return saveInChunks(users, user -> userStore.write(user, null));
+  }
+
+  @Override
+  public Flux<BulkOperationResult> saveAllWithExpiration(List<User> users, long timeoutInSeconds) {
+    Duration timeout = Duration.ofSeconds(timeoutInSeconds);
+    return saveInChunks(users, user -> userStore.write(user, expiration.jittered(timeout)));
+  }
+
+  @Override
+  public Flux<BulkOperationResult> deleteAllById(List<String> ids) {
+    return writeBehind.settleAll()
+        .thenMany(Flux.fromIterable(ids))
+        .buffer(properties.getBulkChunkSize())
+        // a chunk is deleted in one script outside a cluster, so it fails or succeeds as a whole
+        .concatMap(chunk -> userStore.delete(chunk)
+            .doFinally(signal -> invalidate(chunk))
+            .flatMapIterable(deleted -> {
+              List<BulkOperationResult> results = new ArrayList<>(chunk.size());
+              for (int i = 0; i < chunk.size(); i++) {
+                results.add(BulkOperationResult.succeeded(chunk.get(i), deleted.get(i)));
+              }
+              return results;
+            })
+            .onErrorResume(e -> Flux.fromIterable(chunk).map(id -> BulkOperationResult.failed(id, e))));
+  }
+
+  /**
+   * Issues one chunk at a time without waiting for individual replies, so Lettuce pipelines
+   * the whole chunk over the shared connection; in a cluster the chunk's users are then
+   * indexed together, elsewhere each write indexed its user.
+   */
+  private Flux<BulkOperationResult> saveInChunks(List<User> users, Function<User, Mono<Long>> write) {
+    // bulk saves bypass the write-behind buffer, whatever it holds must land first
+    return writeBehind.settleAll()
+        .thenMany(Flux.fromIterable(users))
+        .buffer(properties.getBulkChunkSize())
+        .concatMap(chunk -> Flux.fromIterable(chunk)
+            .flatMapSequential(user -> write.apply(user)
+                .doFinally(signal -> invalidate(user.getId()))
+                .map(version -> new Saved(user.withVersion(version), BulkOperationResult.succeeded(user.getId(), true)))
+                .onErrorResume(e -> Mono.just(new Saved(null, BulkOperationResult.failed(user.getId(), e)))), chunk.size())
+            .collectList()
+            .flatMapMany(this::indexSaved));
+  }
+
+  /** Indexes the users of a chunk that were saved, at the version stored */
+  private Flux<BulkOperationResult> indexSaved(List<Saved> chunk) {
+    List<User> saved = chunk.stream().map(Saved::stored).filter(Objects::nonNull).toList();
+    return secondaryIndex.indexWritten(saved)
+        .thenMany(Flux.fromIterable(chunk).map(Saved::result));
+  }
+
+  // the stored copy is null if the write failed
+  private record Saved(User stored, BulkOperationResult result) {
+  }
+
+  private Mono<User> addToIndex(User stored) {
+    return secondaryIndex.indexWritten(List.of(stored))
+        .thenReturn(stored);
+  }
+
+  static String encodeCursor(String id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String decodeCursor(String cursor) {
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+  }
+
+  /**
+   * Client tracking runs on the master, whose invalidation may arrive before a replica has the
+   * write; a replica read could then put the replaced user back for the whole time-to-live, so
+   * reads filling the near cache go to the master. Pinned users expire too soon for that to matter.
+   */
+  private Mono<User> cacheableRead(String id) {
+    if (nearCache.isEnabled()) {
+      return userStore.read(id).contextWrite(context -> ReadConsistency.with(context, ReadConsistency.Route.MASTER));
+    }
+    return hedgedReads.read(() -> userStore.read(id));
+  }
+
+  /** Drops what this instance holds of users it just wrote: near-cache entries and shared reads */
+  private void invalidate(String id) {
+    nearCache.invalidate(UserKeys.of(id));
+    singleFlight.forget(id);
+  }
+
+  private void invalidate(List<String> ids) {
+    nearCache.invalidate(toKeys(ids));
+    ids.forEach(singleFlight::forget);
+  }
+
+  private static List<String> toKeys(List<String> ids) {
+    return ids.stream().map(UserKeys::of).toList();
   }
 }
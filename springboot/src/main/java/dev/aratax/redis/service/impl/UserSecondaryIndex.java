@@ -0,0 +1,304 @@
+package dev.aratax.redis.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Secondary indexes of users by email and by age.
+ *
+ * <p>{@value UserKeys#EMAIL_INDEX} maps each lower-cased email to the id of the user holding it,
+ * {@value UserKeys#EMAIL_OF} maps ids back to their indexed email so a changed or deleted email
+ * can be dropped without reading the old user, and {@value UserKeys#AGE_INDEX} scores ids by
+ * age. {@value UserKeys#INDEXED_VERSION} records the version each id was indexed at, and an
+ * update carrying an older version is skipped, so the indexes follow the latest write whatever
+ * order updates arrive in. A script updates all four at once for a batch of users; they share
+ * a hash tag, so that holds in a cluster too.
+ *
+ * <p>Outside a cluster the stores run indexed variants of their write scripts, which call
+ * {@link #INDEX_WRITTEN_FUNCTION} once they wrote, and {@link #delete} removes users in one
+ * script too, so the value, {@value UserKeys#INDEX} and
+ * these indexes change in one step. In a cluster the
+ * user key lives in another slot, so {@link #indexWritten} updates them right after the write:
+ * until then lookups miss the new email, and an update that failed is redone by
+ * {@link UserIndexRepair}; a delete drops the entries right after the keys. Entries of users that expire or were deleted while being written
+ * linger until {@link UserIndexRepair} walks them. Lookups therefore treat an entry as a hint:
+ * callers read the user and check it still matches.
+ */
+@Component
+@RequiredArgsConstructor
+class UserSecondaryIndex {
+
+    static final List<String> KEYS = List.of(UserKeys.EMAIL_INDEX, UserKeys.EMAIL_OF, UserKeys.AGE_INDEX,
+            UserKeys.INDEXED_VERSION);
+
+    // an email or age argument that leaves the indexed one as it is; trimming removes it from any
+    // normalized email
+    static final String UNCHANGED = "\0";
+
+    // index(keys, id, email, age, version) with the keys in KEYS order, '' for an absent email
+    // or age and a nil version for a user stored without one; answers 0 if a later version is
+    // indexed already
+    private static final String INDEX_FUNCTION = """
+            local function index(keys, id, email, age, version)
+              local indexed = tonumber(redis.call('HGET', keys[4], id))
+              if indexed and version and indexed > version then
+                return 0
+              end
+              local previous = redis.call('HGET', keys[2], id)
+              if email == '\\0' then
+                email = previous or ''
+              end
+              if age == '\\0' then
+                age = redis.call('ZSCORE', keys[3], id) or ''
+              end
+              if previous and previous ~= email and redis.call('HGET', keys[1], previous) == id then
+                redis.call('HDEL', keys[1], previous)
+              end
+              if email == '' then
+                redis.call('HDEL', keys[2], id)
+              else
+                redis.call('HSET', keys[1], email, id)
+                redis.call('HSET', keys[2], id, email)
+              end
+              if age == '' then
+                redis.call('ZREM', keys[3], id)
+              else
+                redis.call('ZADD', keys[3], age, id)
+              end
+              if version then
+                redis.call('HSET', keys[4], id, version)
+              end
+              return 1
+            end
+            """;
+
+    // index_written(keys, id, email, age, version) adds a user just written to INDEX and the
+    // secondary indexes, with keys holding INDEX and then the KEYS; answers as index does. For
+    // the stores' indexed write scripts, which take their KEYS in writeKeys order
+    static final String INDEX_WRITTEN_FUNCTION = INDEX_FUNCTION + """
+            local function index_written(keys, id, email, age, version)
+              redis.call('ZADD', keys[1], 0, id)
+              return index({keys[2], keys[3], keys[4], keys[5]}, id, email, age, version)
+            end
+            """;
+
+    // ARGV holds (id, email, age, version) quadruples, '' for an absent email, age or version
+    static final RedisScript<Long> INDEX = RedisScript.of(INDEX_FUNCTION + """
+            local indexed = 0
+            for i = 1, #ARGV, 4 do
+              indexed = indexed + index(KEYS, ARGV[i], ARGV[i + 1], ARGV[i + 2], tonumber(ARGV[i + 3]))
+            end
+            return indexed
+            """, Long.class);
+
+    // remove(keys, id) drops the id from every index, with the keys in KEYS order
+    private static final String REMOVE_FUNCTION = """
+            local function remove(keys, id)
+              local email = redis.call('HGET', keys[2], id)
+              if email then
+                if redis.call('HGET', keys[1], email) == id then
+                  redis.call('HDEL', keys[1], email)
+                end
+                redis.call('HDEL', keys[2], id)
+              end
+              redis.call('ZREM', keys[3], id)
+              redis.call('HDEL', keys[4], id)
+            end
+            """;
+
+    // ARGV holds the ids to drop from every index
+    static final RedisScript<Long> REMOVE = RedisScript.of(REMOVE_FUNCTION + """
+            for _, id in ipairs(ARGV) do
+              remove(KEYS, id)
+            end
+            return #ARGV
+            """, Long.class);
+
+    // deletes users with their entries in INDEX and the secondary indexes. KEYS: INDEX, the KEYS
+    // of the secondary indexes, then the keys of every user in ARGV order, the same number per
+    // user and its stored value first; ARGV: the ids. Answers 1 per id whose value existed, else 0
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DELETE = RedisScript.of(REMOVE_FUNCTION + """
+            local index, indexes = KEYS[1], {KEYS[2], KEYS[3], KEYS[4], KEYS[5]}
+            local per_user = (#KEYS - 5) / #ARGV
+            local deleted = {}
+            for i, id in ipairs(ARGV) do
+              local first = 5 + (i - 1) * per_user + 1
+              deleted[i] = redis.call('DEL', KEYS[first])
+              if per_user > 1 then
+                redis.call('DEL', unpack(KEYS, first + 1, first + per_user - 1))
+              end
+              redis.call('ZREM', index, id)
+              remove(indexes, id)
+            end
+            return deleted
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate;
+    @Qualifier("bulkReactiveStringRedisTemplate")
+    private final ReactiveRedisTemplate<String, String> bulkStringRedisTemplate;
+    private final SlotBatcher slotBatcher;
+
+    /**
+     * The keys of an indexed write script: the keys the user is stored under, then those
+     * {@link #INDEX_WRITTEN_FUNCTION} takes
+     */
+    static List<String> writeKeys(List<String> userKeys) {
+        List<String> keys = new ArrayList<>(userKeys.size() + 1 + KEYS.size());
+        keys.addAll(userKeys);
+        keys.add(UserKeys.INDEX);
+        keys.addAll(KEYS);
+        return keys;
+    }
+
+    /** The (id, email, age) arguments {@link #INDEX_WRITTEN_FUNCTION} takes for the user */
+    static List<String> writeArgs(User user) {
+        return List.of(user.getId(), user.getEmail() == null ? "" : normalize(user.getEmail()),
+                user.getAge() == null ? "" : user.getAge().toString());
+    }
+
+    /**
+     * True outside a cluster, where the stores index a user in the script that writes it and
+     * {@link #indexWritten} has nothing left to do
+     */
+    boolean indexesOnWrite() {
+        return !slotBatcher.isClustered();
+    }
+
+    /**
+     * Adds users just written to {@value UserKeys#INDEX} and the secondary indexes, unless their
+     * write scripts did already
+     */
+    Mono<Void> indexWritten(Collection<User> users) {
+        if (users.isEmpty() || indexesOnWrite()) {
+            return Mono.empty();
+        }
+        List<TypedTuple<String>> ids = users.stream().map(user -> TypedTuple.of(user.getId(), 0d)).toList();
+        return reactiveStringRedisTemplate.opsForZSet().addAll(UserKeys.INDEX, ids)
+                .then(index(users));
+    }
+
+    Mono<Void> index(User user) {
+        return index(List.of(user));
+    }
+
+    Mono<Void> index(Collection<User> users) {
+        if (users.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveStringRedisTemplate.execute(INDEX, KEYS, indexArgs(users)).then();
+    }
+
+    /**
+     * Deletes users and their {@value UserKeys#INDEX} and secondary index entries, in one script
+     * outside a cluster; in a cluster each user's keys go first, then the entries of all of them
+     * @param keysOf the keys a user is stored under, its value first; the same number for every
+     *     user, and all in the value's slot
+     * @return Mono of whether the value of each user existed, in input order
+     */
+    Mono<List<Boolean>> delete(List<String> ids, Function<String, List<String>> keysOf) {
+        if (ids.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        if (indexesOnWrite()) {
+            List<String> keys = new ArrayList<>(KEYS.size() + 1);
+            keys.add(UserKeys.INDEX);
+            keys.addAll(KEYS);
+            ids.forEach(id -> keys.addAll(keysOf.apply(id)));
+            return reactiveStringRedisTemplate.execute(DELETE, keys, ids)
+                    .next()
+                    .map(deleted -> deleted.stream().map(count -> ((Long) count) > 0).toList());
+        }
+        // the keys of one user share a slot, so each DEL is legal; pipelined over the connection
+        return Flux.fromIterable(ids)
+                .flatMapSequential(id -> reactiveStringRedisTemplate.delete(keysOf.apply(id).toArray(String[]::new))
+                        .map(count -> count > 0))
+                .collectList()
+                .flatMap(deleted -> reactiveStringRedisTemplate.opsForZSet().remove(UserKeys.INDEX, ids.toArray())
+                        .then(remove(ids))
+                        .thenReturn(deleted));
+    }
+
+    Mono<Void> remove(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveStringRedisTemplate.execute(REMOVE, KEYS, List.copyOf(ids)).then();
+    }
+
+    /**
+     * @return Flux of every id in {@value UserKeys#INDEX}, walked with ZSCAN on the bulk connection
+     */
+    Flux<String> ids(int scanCount) {
+        ScanOptions options = ScanOptions.scanOptions().count(scanCount).build();
+        return bulkStringRedisTemplate.opsForZSet()
+                .scan(UserKeys.INDEX, options)
+                .map(TypedTuple::getValue);
+    }
+
+    /**
+     * Every entry of {@value UserKeys#INDEX} has score 0, so ZRANGEBYLEX walks the ids in order
+     * @return Mono containing up to {@code limit} ids following {@code after}, from the first if null
+     */
+    Mono<List<String>> page(String after, int limit) {
+        Range<String> range = after == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.exclusive(after));
+        return bulkStringRedisTemplate.opsForZSet()
+                .rangeByLex(UserKeys.INDEX, range, Limit.limit().count(limit))
+                .collectList();
+    }
+
+    /**
+     * @return Mono containing the number of ids in {@value UserKeys#INDEX}
+     */
+    Mono<Long> count() {
+        return reactiveStringRedisTemplate.opsForZSet().size(UserKeys.INDEX);
+    }
+
+    /**
+     * @return Mono containing the id indexed for the email, or empty if none
+     */
+    Mono<String> idByEmail(String email) {
+        return reactiveStringRedisTemplate.<String, String>opsForHash().get(UserKeys.EMAIL_INDEX, normalize(email));
+    }
+
+    /**
+     * @return Flux of the ids with an indexed age in [minAge, maxAge], ordered by age
+     */
+    Flux<String> idsByAge(int minAge, int maxAge, int offset, int limit) {
+        return reactiveStringRedisTemplate.opsForZSet()
+                .rangeByScore(UserKeys.AGE_INDEX, Range.closed((double) minAge, (double) maxAge),
+                        Limit.limit().offset(offset).count(limit));
+    }
+
+    /** The (id, email, age, version) quadruples the {@link #INDEX} script expects */
+    static List<String> indexArgs(Collection<User> users) {
+        List<String> args = new ArrayList<>(users.size() * 4);
+        for (User user : users) {
+            args.addAll(writeArgs(user));
+            args.add(user.getVersion() == null ? "" : user.getVersion().toString());
+        }
+        return args;
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
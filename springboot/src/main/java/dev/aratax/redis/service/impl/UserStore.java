@@ -0,0 +1,97 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import dev.aratax.redis.model.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Storage layout of a single user under its {@link dev.aratax.redis.service.UserKeys} key.
+ * Caching and chunking stay in {@link UserRedisServiceImpl}; implementations decide how a user
+ * is written to, read from and deleted from its key.
+ *
+ * <p>Every write stores the user at the stored version plus one (1 for a new key), ignoring the
+ * version the user carries, and answers the version it stored; the user passed in is left as
+ * it is.
+ */
+interface UserStore {
+
+    /**
+     * Replace the stored user; a null ttl stores it without expiration
+     * @return Mono containing the version stored
+     */
+    Mono<Long> write(User user, Duration ttl);
+
+    /**
+     * Store the user only if no user is stored under its key yet; a null ttl stores it
+     * without expiration
+     * @return Mono containing the version stored, or 0 if the key was taken
+     */
+    Mono<Long> create(User user, Duration ttl);
+
+    /**
+     * Replace an existing user, keeping its expiration
+     * @return Mono containing the version stored, or 0 if the user does not exist
+     */
+    Mono<Long> replace(User user);
+
+    /**
+     * Replace an existing user, keeping its expiration, provided the version stored with it
+     * equals {@code expectedVersion}; a user stored without a version counts as version 0.
+     * Check and write are one atomic step on the server.
+     * @return Mono containing the version stored, 0 if the stored version differs, or empty if
+     *     the user does not exist
+     */
+    Mono<Long> compareAndSet(User user, long expectedVersion);
+
+    /**
+     * Delete users with their entries in the user index and the secondary indexes, in the same
+     * atomic step outside a cluster, see {@link UserSecondaryIndex#delete}
+     * @return Mono of whether each user existed, in input order
+     */
+    Mono<List<Boolean>> delete(List<String> ids);
+
+    Mono<User> read(String id);
+
+    /** Whether a user is stored under the id, asked on the route of the read consistency */
+    Mono<Boolean> exists(String id);
+
+    /**
+     * Let the user expire after the ttl
+     * @return Mono containing false if the user does not exist
+     */
+    Mono<Boolean> expire(String id, Duration ttl);
+
+    /**
+     * @return Mono containing the time the user has left to live, {@link Duration#ZERO} for a
+     *     user without expiration, or empty if it does not exist
+     */
+    Mono<Duration> timeToLive(String id);
+
+    /**
+     * Keeps how long loading the user took beside it, for getOrLoad on any instance to weigh
+     * early refreshes by; it expires after the ttl on its own, not with the user
+     */
+    Mono<Boolean> writeLoadTime(String id, Duration loadTime, Duration ttl);
+
+    /** @return Mono containing the load time kept beside the user, or empty if there is none */
+    Mono<Duration> loadTime(String id);
+
+    /** Read users in input order, skipping ids that no longer exist; runs on the bulk connection */
+    Flux<User> readAll(List<String> ids);
+
+    /** Read only the given fields; empty if the user does not exist */
+    Mono<User> readFields(String id, Collection<String> fields);
+
+    /**
+     * Overwrite the given fields of an existing user, keeping its expiration, in one atomic
+     * step or retried until no other write interleaved; a user deleted meanwhile stays deleted
+     * @return Mono containing the updated user, or empty if the user does not exist; errors with
+     *     OptimisticLockingFailureException if concurrent writes kept winning
+     */
+    Mono<User> patch(String id, Map<String, String> fields);
+}
@@ -0,0 +1,287 @@
+package dev.aratax.redis.service.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.routing.ReadConsistency;
+import dev.aratax.redis.service.UserKeys;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stores each user as one serialized value (the default layout), and its version as a number
+ * under {@link UserKeys#versionOf}, which the write script advances and reads combine with the
+ * value; the serialized value does not carry it. Partial updates and projections are served by
+ * reading and rewriting the whole value, under a version check.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.user-store", name = "storage", havingValue = "value", matchIfMissing = true)
+class ValueUserStore implements UserStore {
+
+    // write(value_key, version_key, value, condition, ttl, expected) stores the value, and the
+    // stored version plus one under version_key, which expires with the value, so versions only
+    // move forward whichever path wrote last. condition is any, absent or present, ttl is in
+    // millis ('' for none, 'keep' to keep it) and expected the version to be at ('' for any).
+    // Answers the new version, 0 if the user exists for 'absent' or is at another version, -1 if
+    // it is missing for 'present'. A value without a version key counts as version 0.
+    private static final String WRITE_FUNCTION = """
+            local function write(value_key, version_key, value, condition, ttl, expected)
+              local exists = redis.call('EXISTS', value_key) == 1
+              if exists then
+                if condition == 'absent' then
+                  return 0
+                end
+              elseif condition == 'present' then
+                return -1
+              end
+              local version = exists and tonumber(redis.call('GET', version_key)) or 0
+              if expected ~= '' and version ~= tonumber(expected) then
+                return 0
+              end
+              version = version + 1
+              if ttl == 'keep' then
+                redis.call('SET', value_key, value, 'KEEPTTL')
+              elseif ttl ~= '' then
+                redis.call('SET', value_key, value, 'PX', ttl)
+              else
+                redis.call('SET', value_key, value)
+              end
+              local left = redis.call('PTTL', value_key)
+              if left > 0 then
+                redis.call('SET', version_key, version, 'PX', left)
+              else
+                redis.call('SET', version_key, version)
+              end
+              return version
+            end
+            """;
+
+    // KEYS: the value and version keys; ARGV: value, condition, ttl, expected version
+    static final RedisScript<Long> WRITE = RedisScript.of(WRITE_FUNCTION + """
+            local value, condition, ttl, expected = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+            return write(KEYS[1], KEYS[2], value, condition, ttl, expected)
+            """, Long.class);
+
+    // WRITE indexing the user in the same step, outside a cluster. KEYS: the value and version
+    // keys, then the index keys (see UserSecondaryIndex.writeKeys); ARGV: those of WRITE, then
+    // id, email, age
+    static final RedisScript<Long> WRITE_INDEXED = RedisScript.of(WRITE_FUNCTION + UserSecondaryIndex.INDEX_WRITTEN_FUNCTION + """
+            local value, condition, ttl, expected = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+            local id, email, age = ARGV[5], ARGV[6], ARGV[7]
+            local version = write(KEYS[1], KEYS[2], value, condition, ttl, expected)
+            if version > 0 then
+              index_written({unpack(KEYS, 3)}, id, email, age, version)
+            end
+            return version
+            """, Long.class);
+
+    // expires the value and its version key together. KEYS: the value and version keys; ARGV:
+    // ttl millis. Answers 1 if the user exists, else 0
+    private static final RedisScript<Long> EXPIRE = RedisScript.of("""
+            local set = redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            if set == 1 then
+              redis.call('PEXPIRE', KEYS[2], ARGV[1])
+            end
+            return set
+            """, Long.class);
+
+    // a patch losing to concurrent writers this often in a row gives up
+    static final int PATCH_ATTEMPTS = 16;
+
+    // arguments are serialized up front, the value with the template's codec
+    private static final RedisElementWriter<ByteBuffer> SERIALIZED = buffer -> buffer;
+    private static final RedisElementReader<Long> LONG = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    @Qualifier("bulkReactiveRedisTemplate")
+    private final ReactiveRedisTemplate<String, Object> bulkRedisTemplate;
+    @Qualifier("masterReactiveRedisTemplate")
+    private final ReactiveRedisTemplate<String, Object> masterRedisTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate;
+    private final SlotBatcher slotBatcher;
+    private final UserSecondaryIndex secondaryIndex;
+
+    @Override
+    public Mono<Long> write(User user, Duration ttl) {
+        return write(user, "any", ttl == null ? "" : Long.toString(ttl.toMillis()), null);
+    }
+
+    @Override
+    public Mono<Long> create(User user, Duration ttl) {
+        return write(user, "absent", ttl == null ? "" : Long.toString(ttl.toMillis()), null);
+    }
+
+    @Override
+    public Mono<Long> replace(User user) {
+        return write(user, "present", "keep", null)
+                .map(result -> Math.max(result, 0));
+    }
+
+    @Override
+    public Mono<Long> compareAndSet(User user, long expectedVersion) {
+        return write(user, "present", "keep", expectedVersion)
+                .filter(result -> result >= 0);
+    }
+
+    @Override
+    public Mono<List<Boolean>> delete(List<String> ids) {
+        return secondaryIndex.delete(ids, ValueUserStore::keysOf);
+    }
+
+    @Override
+    public Mono<User> read(String id) {
+        return ReadConsistency.select(reactiveRedisTemplate, masterRedisTemplate)
+                .flatMap(template -> template.execute(connection -> multiGet(template, connection, List.of(id))).next());
+    }
+
+    @Override
+    public Mono<Boolean> exists(String id) {
+        return ReadConsistency.select(reactiveRedisTemplate, masterRedisTemplate)
+                .flatMap(template -> template.hasKey(UserKeys.of(id)));
+    }
+
+    @Override
+    public Mono<Boolean> expire(String id, Duration ttl) {
+        return reactiveRedisTemplate
+                .execute(EXPIRE, keysOf(id), List.of(StandardCharsets.UTF_8.encode(Long.toString(ttl.toMillis()))),
+                        SERIALIZED, LONG)
+                .next()
+                .map(set -> set > 0);
+    }
+
+    @Override
+    public Mono<Duration> timeToLive(String id) {
+        return reactiveRedisTemplate.getExpire(UserKeys.of(id));
+    }
+
+    @Override
+    public Mono<Boolean> writeLoadTime(String id, Duration loadTime, Duration ttl) {
+        return reactiveStringRedisTemplate.opsForValue().set(UserKeys.loadTimeOf(id), Long.toString(loadTime.toNanos()), ttl);
+    }
+
+    @Override
+    public Mono<Duration> loadTime(String id) {
+        return reactiveStringRedisTemplate.opsForValue().get(UserKeys.loadTimeOf(id))
+                .map(nanos -> Duration.ofNanos(Long.parseLong(nanos)));
+    }
+
+    @Override
+    public Flux<User> readAll(List<String> ids) {
+        Collection<List<String>> groups = slotBatcher.bySlot(ids, UserKeys::of);
+        if (groups.size() == 1) {
+            return bulkRedisTemplate.execute(connection -> multiGet(bulkRedisTemplate, connection, ids));
+        }
+        // one MGET per slot, all in flight at once over one borrowed connection, which Lettuce
+        // routes to the shards; answered in input order
+        return bulkRedisTemplate
+                .execute(connection -> Flux.fromIterable(groups)
+                        .flatMap(group -> multiGet(bulkRedisTemplate, connection, group), groups.size()))
+                .collectMap(User::getId)
+                .flatMapIterable(users -> ids.stream().map(users::get).filter(Objects::nonNull).toList());
+    }
+
+    // one MGET of the value and version key of every user, whose keys share a slot per user
+    private static Flux<User> multiGet(ReactiveRedisTemplate<String, Object> template, ReactiveRedisConnection connection,
+                                       List<String> ids) {
+        RedisSerializationContext<String, Object> serialization = template.getSerializationContext();
+        return connection.stringCommands()
+                .mGet(ids.stream()
+                        .flatMap(id -> keysOf(id).stream())
+                        .map(key -> serialization.getKeySerializationPair().write(key))
+                        .toList())
+                .flatMapIterable(values -> {
+                    List<User> users = new ArrayList<>(ids.size());
+                    for (int i = 0; i + 1 < values.size(); i += 2) {
+                        // a missing key answers as an empty value
+                        ByteBuffer value = values.get(i);
+                        if (value != null && value.hasRemaining()) {
+                            User user = (User) serialization.getValueSerializationPair().read(value);
+                            ByteBuffer version = values.get(i + 1);
+                            user.setVersion(version != null && version.hasRemaining()
+                                    ? Long.valueOf(StandardCharsets.UTF_8.decode(version).toString()) : null);
+                            users.add(user);
+                        }
+                    }
+                    return users;
+                });
+    }
+
+    // the value first, as UserSecondaryIndex.delete expects
+    private static List<String> keysOf(String id) {
+        return List.of(UserKeys.of(id), UserKeys.versionOf(id));
+    }
+
+    @Override
+    public Mono<User> readFields(String id, Collection<String> fields) {
+        return read(id).map(user -> UserHashMapper.project(user, fields));
+    }
+
+    /**
+     * Read-modify-write of the whole value, committed with {@link #compareAndSet}: the user is
+     * read on the master route and swapped only while still at the version read. A conflicting write sends the patch back to read again, and a user deleted
+     * in between is not recreated.
+     */
+    @Override
+    public Mono<User> patch(String id, Map<String, String> fields) {
+        return patch(id, fields, PATCH_ATTEMPTS);
+    }
+
+    private Mono<User> patch(String id, Map<String, String> fields, int attempts) {
+        return read(id)
+                .contextWrite(context -> ReadConsistency.with(context, ReadConsistency.Route.MASTER))
+                .flatMap(current -> {
+                    long version = current.getVersion() == null ? 0 : current.getVersion();
+                    User patched = UserHashMapper.apply(current, fields);
+                    return compareAndSet(patched, version)
+                            .flatMap(stored -> {
+                                if (stored > 0) {
+                                    return Mono.just(patched.withVersion(stored));
+                                }
+                                return attempts > 1
+                                        ? patch(id, fields, attempts - 1)
+                                        : Mono.error(new OptimisticLockingFailureException(
+                                                "User " + id + " kept changing while it was patched"));
+                            });
+                });
+    }
+
+    // runs WRITE, indexing the user where that can be one step; the value is stored without
+    // the version the user carries, the version key holds the stored one
+    private Mono<Long> write(User user, String condition, String ttl, Long expectedVersion) {
+        List<ByteBuffer> args = new ArrayList<>(List.of(
+                reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().write(user.withVersion(null)),
+                StandardCharsets.UTF_8.encode(condition),
+                StandardCharsets.UTF_8.encode(ttl),
+                StandardCharsets.UTF_8.encode(expectedVersion == null ? "" : expectedVersion.toString())));
+        List<String> keys = keysOf(user.getId());
+        boolean indexing = secondaryIndex.indexesOnWrite();
+        if (indexing) {
+            UserSecondaryIndex.writeArgs(user).forEach(arg -> args.add(StandardCharsets.UTF_8.encode(arg)));
+        }
+        return reactiveRedisTemplate
+                .execute(indexing ? WRITE_INDEXED : WRITE,
+                        indexing ? UserSecondaryIndex.writeKeys(keys) : keys, args, SERIALIZED, LONG)
+                .next();
+    }
+}
@@ -0,0 +1,366 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.BulkOperationResult;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.model.UserPage;
+import dev.aratax.redis.service.UserRedisService;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * UserRedisService that runs each operation as plain blocking code on a virtual thread.
+ * Selected with {@code app.user-store.execution=virtual-threads}.
+ *
+ * <p>Only the execution model differs from {@link UserRedisServiceImpl}: users are read, written
+ * and indexed by the configured {@link UserStore} and the {@link UserSecondaryIndex}, seen
+ * through a {@link BlockingUserStore}, so the two implementations issue the same commands and
+ * can take turns on the same data. A virtual thread waiting for Redis is parked and releases its
+ * carrier. Bulk operations write the users of a chunk on one virtual thread each. This variant
+ * is kept simple on purpose: it has no near cache, no single-flight reads, no write-behind and
+ * no read-your-writes routing, and it refuses an enabled write-behind buffer at startup.
+ *
+ * <p>It is stopped after the web server and before the connection factories, which are
+ * stopped in phase 0: it stops taking operations and waits up to {@value #CLOSE_TIMEOUT_SECONDS}
+ * seconds for those running, so they finish over open connections; operations still running
+ * then are interrupted.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.user-store", name = "execution", havingValue = "virtual-threads")
+public class VirtualThreadUserRedisService implements UserRedisService, SmartLifecycle {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final BlockingUserStore store;
+    private final UserStoreProperties properties;
+    private final ExpirationPolicy expiration;
+    private final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Scheduler scheduler = Schedulers.fromExecutorService(virtualThreads, "user-service");
+    private volatile boolean running;
+
+    public VirtualThreadUserRedisService(BlockingUserStore store, UserStoreProperties properties,
+                                         ExpirationPolicy expiration) {
+        if (properties.getWriteBehind().isEnabled()) {
+            throw new IllegalStateException("app.user-store.execution=virtual-threads does not support write-behind");
+        }
+        this.store = store;
+        this.properties = properties;
+        this.expiration = expiration;
+    }
+
+    @Override
+    public Mono<User> save(User user) {
+        return call(() -> write(user, null));
+    }
+
+    @Override
+    public Mono<User> findById(String id) {
+        return call(() -> store.read(id));
+    }
+
+    @Override
+    public Mono<User> create(User user) {
+        return call(() -> {
+            long version = store.create(user, null);
+            if (version == 0) {
+                throw new DuplicateKeyException("User " + user.getId() + " already exists");
+            }
+            return indexWritten(user.withVersion(version));
+        });
+    }
+
+    @Override
+    public Mono<User> compareAndSet(User user, long expectedVersion) {
+        return call(() -> {
+            Long version = store.compareAndSet(user, expectedVersion);
+            if (version == null) {
+                return null;
+            }
+            if (version == 0) {
+                throw new OptimisticLockingFailureException(
+                        "User " + user.getId() + " is no longer at version " + expectedVersion);
+            }
+            return indexWritten(user.withVersion(version));
+        });
+    }
+
+    @Override
+    public Mono<User> replace(User user) {
+        return call(() -> {
+            long version = store.replace(user);
+            return version == 0 ? null : indexWritten(user.withVersion(version));
+        });
+    }
+
+    @Override
+    public Mono<User> findById(String id, Collection<String> fields) {
+        return call(() -> store.readFields(id, fields));
+    }
+
+    @Override
+    public Mono<User> patch(String id, Map<String, String> fields) {
+        if (fields.containsKey(UserHashMapper.ID) || fields.containsKey(UserHashMapper.VERSION)
+                || fields.values().stream().anyMatch(Objects::isNull)) {
+            return Mono.error(new IllegalArgumentException("The id and version cannot be patched and fields cannot be patched to null"));
+        }
+        return call(() -> {
+            User user = store.patch(id, fields);
+            return user == null ? null : indexWritten(user);
+        });
+    }
+
+    @Override
+    public Flux<User> findAll() {
+        // one page of the index per chunk, so a slow consumer holds no connection between pages
+        return call(() -> store.page(null, properties.getFetchChunkSize()))
+                .expand(ids -> ids.size() < properties.getFetchChunkSize()
+                        ? Mono.empty()
+                        : call(() -> store.page(ids.get(ids.size() - 1), properties.getFetchChunkSize())))
+                .concatMap(ids -> call(() -> store.readAll(ids)).flatMapIterable(Function.identity()), 1);
+    }
+
+    @Override
+    public Mono<User> findByEmail(String email) {
+        String wanted = UserSecondaryIndex.normalize(email);
+        return call(() -> {
+            String id = store.idByEmail(email);
+            User user = id == null ? null : store.read(id);
+            // the entry is a hint, the user may have changed its email since
+            return user != null && user.getEmail() != null
+                    && UserSecondaryIndex.normalize(user.getEmail()).equals(wanted) ? user : null;
+        });
+    }
+
+    @Override
+    public Flux<User> findByAgeRange(int minAge, int maxAge, int offset, int limit) {
+        if (minAge > maxAge || offset < 0 || limit < 1 || limit > properties.getMaxPageSize()) {
+            return Flux.error(new IllegalArgumentException("The age range must not be empty, the offset not negative "
+                    + "and the limit between 1 and " + properties.getMaxPageSize()));
+        }
+        return call(() -> store.readAll(store.idsByAge(minAge, maxAge, offset, limit)))
+                .flatMapIterable(Function.identity())
+                .filter(user -> user.getAge() != null && user.getAge() >= minAge && user.getAge() <= maxAge);
+    }
+
+    @Override
+    public Mono<UserPage> findPage(String cursor, int limit) {
+        if (limit < 1 || limit > properties.getMaxPageSize()) {
+            return Mono.error(new IllegalArgumentException(
+                    "The limit must be between 1 and " + properties.getMaxPageSize()));
+        }
+        return call(() -> {
+            List<String> ids = store.page(cursor == null ? null : UserRedisServiceImpl.decodeCursor(cursor), limit);
+            return new UserPage(store.readAll(ids),
+                    ids.size() < limit ? null : UserRedisServiceImpl.encodeCursor(ids.get(ids.size() - 1)));
+        });
+    }
+
+    @Override
+    public Mono<Boolean> deleteById(String id) {
+        return call(() -> store.delete(List.of(id)).get(0));
+    }
+
+    @Override
+    public Mono<Boolean> exists(String id) {
+        return call(() -> store.exists(id));
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return call(store::count);
+    }
+
+    @Override
+    public Mono<User> saveWithExpiration(User user, long timeoutInSeconds) {
+        return call(() -> write(user, expiration.jittered(Duration.ofSeconds(timeoutInSeconds))));
+    }
+
+    @Override
+    public Mono<Boolean> setExpiration(String id, long timeoutInSeconds) {
+        return call(() -> store.expire(id, expiration.jittered(Duration.ofSeconds(timeoutInSeconds))));
+    }
+
+    @Override
+    public Mono<User> getOrLoad(String id, Duration ttl, Function<String, Mono<User>> loader) {
+        Mono<User> load = expiration.measured(() -> loader.apply(id))
+                .flatMap(loaded -> call(() -> {
+                    Duration jittered = expiration.jittered(ttl);
+                    User stored = write(loaded.get(), jittered);
+                    store.writeLoadTime(id, loaded.elapsed(), jittered);
+                    return stored;
+                }));
+        return call(() -> {
+            User user = store.read(id);
+            if (user == null) {
+                return null;
+            }
+            Duration remaining = store.timeToLive(id);
+            Duration loadTime = store.loadTime(id);
+            return new Stored(user, remaining == null ? Duration.ZERO : remaining, loadTime == null ? Duration.ZERO : loadTime);
+        }).flatMap(stored -> expiration.refreshEarly(stored.remaining(), stored.loadTime())
+                        ? load.defaultIfEmpty(stored.user()).onErrorReturn(stored.user())
+                        : Mono.just(stored.user()))
+                .switchIfEmpty(Mono.defer(() -> load));
+    }
+
+    private record Stored(User user, Duration remaining, Duration loadTime) {
+    }
+
+    @Override
+    public Mono<Boolean> deleteAll() {
+        // ids are removed from the index chunk by chunk, so users saved while this runs survive
+        return call(() -> {
+            long deleted = 0;
+            for (List<String> ids : store.ids(properties.getScanCount(), properties.getFetchChunkSize())) {
+                deleted += store.delete(ids).stream().filter(Boolean::booleanValue).count();
+            }
+            return deleted > 0;
+        });
+    }
+
+    @Override
+    public Flux<BulkOperationResult> saveAll(List<User> users) {
+        return inChunks(users, chunk -> saveChunk(chunk, null));
+    }
+
+    @Override
+    public Flux<BulkOperationResult> saveAllWithExpiration(List<User> users, long timeoutInSeconds) {
+        Duration timeout = Duration.ofSeconds(timeoutInSeconds);
+        return inChunks(users, chunk -> saveChunk(chunk, timeout));
+    }
+
+    @Override
+    public Flux<BulkOperationResult> deleteAllById(List<String> ids) {
+        return inChunks(ids, this::deleteChunk);
+    }
+
+    @Override
+    public Mono<Long> rebuildIndex() {
+        return call(store::rebuildIndex);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Stops taking operations and waits for the running ones
+     */
+    @Override
+    public void stop() {
+        running = false;
+        virtualThreads.shutdown();
+        try {
+            if (!virtualThreads.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Interrupting user operations still running {}s after shutdown", CLOSE_TIMEOUT_SECONDS);
+                virtualThreads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            virtualThreads.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /** Runs blocking code on a virtual thread; a null result completes the Mono empty */
+    private <T> Mono<T> call(Callable<T> operation) {
+        return Mono.fromCallable(operation).subscribeOn(scheduler);
+    }
+
+    private <T> Flux<BulkOperationResult> inChunks(List<T> items, ChunkOperation<T> operation) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += properties.getBulkChunkSize()) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + properties.getBulkChunkSize())));
+        }
+        return Flux.fromIterable(chunks)
+                .concatMap(chunk -> call(() -> operation.apply(chunk)).flatMapIterable(Function.identity()));
+    }
+
+    @FunctionalInterface
+    private interface ChunkOperation<T> {
+        List<BulkOperationResult> apply(List<T> chunk) throws InterruptedException;
+    }
+
+    private User write(User user, Duration ttl) {
+        return indexWritten(user.withVersion(store.write(user, ttl)));
+    }
+
+    private User indexWritten(User stored) {
+        store.indexWritten(List.of(stored));
+        return stored;
+    }
+
+    private List<BulkOperationResult> saveChunk(List<User> chunk, Duration ttl) throws InterruptedException {
+        // the stored copy of each user, or null where the write failed
+        List<User> stored = Arrays.asList(new User[chunk.size()]);
+        List<Future<BulkOperationResult>> writes = virtualThreads.invokeAll(IntStream.range(0, chunk.size())
+                .mapToObj(i -> (Callable<BulkOperationResult>) () -> {
+                    User user = chunk.get(i);
+                    try {
+                        stored.set(i, user.withVersion(store.write(user, ttl == null ? null : expiration.jittered(ttl))));
+                        return BulkOperationResult.succeeded(user.getId(), true);
+                    } catch (RuntimeException e) {
+                        return BulkOperationResult.failed(user.getId(), e);
+                    }
+                })
+                .toList());
+        List<BulkOperationResult> results = writes.stream().map(Future::resultNow).toList();
+        List<User> saved = stored.stream().filter(Objects::nonNull).toList();
+        if (!saved.isEmpty()) {
+            store.indexWritten(saved);
+        }
+        return results;
+    }
+
+    // one script per chunk outside a cluster, so the chunk fails or succeeds as a whole
+    private List<BulkOperationResult> deleteChunk(List<String> ids) {
+        List<BulkOperationResult> results = new ArrayList<>(ids.size());
+        try {
+            List<Boolean> deleted = store.delete(ids);
+            for (int i = 0; i < ids.size(); i++) {
+                results.add(BulkOperationResult.succeeded(ids.get(i), deleted.get(i)));
+            }
+        } catch (RuntimeException e) {
+            ids.forEach(id -> results.add(BulkOperationResult.failed(id, e)));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,332 @@
+package dev.aratax.redis.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.stereotype.Component;
+
+import dev.aratax.redis.cache.UserNearCache;
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Write-behind buffer for user saves.
+ *
+ * <p>Saves are buffered per user id; a save of an id that is already buffered replaces the
+ * buffered value, so a burst of updates to one user costs a single write. The buffer is
+ * flushed every {@code flush-interval} and whenever {@code batch-size} users are buffered,
+ * pipelining the writes of one flush over the shared connection; each write indexes its user,
+ * or in a cluster one ZADD to the index and one update of the secondary indexes follow. A save
+ * completes once the value it was coalesced into has been written, so callers still see the
+ * outcome of their write. With {@code max-pending} users buffered, saves of
+ * further users wait for a flush to make room.
+ *
+ * <p>Other modifications of a user first {@link #settle(String) settle} its buffered save, so
+ * they apply on top of it rather than being overwritten by a later flush.
+ *
+ * <p>Publishes {@code write.behind.pending}, the {@code write.behind.coalesced} and
+ * {@code write.behind.backpressure} counters, the {@code write.behind.flush.size} summary and
+ * the {@code write.behind.flush.lag} timer from buffering to the end of the flush. When
+ * {@code app.user-store.write-behind.enabled} is false nothing is buffered and
+ * {@link #settle(String)} completes right away.
+ */
+@Slf4j
+@Component
+class WriteBehindBuffer implements AutoCloseable {
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final UserStore userStore;
+    private final UserNearCache nearCache;
+    private final SingleFlight singleFlight;
+    private final UserSecondaryIndex secondaryIndex;
+    private final boolean enabled;
+    private final int maxPending;
+    private final int batchSize;
+
+    // guarded by this; latest unwritten value per id, in order of first buffering
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    // guarded by this; entries of the flush in progress
+    private final Map<String, Entry> inFlight = new HashMap<>();
+    // guarded by this; saves waiting for room in the buffer
+    private final Queue<Runnable> blocked = new ArrayDeque<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Disposable ticker;
+
+    private final Counter coalesced;
+    private final Counter backpressure;
+    private final DistributionSummary flushSize;
+    private final Timer flushLag;
+
+    WriteBehindBuffer(UserStore userStore, UserNearCache nearCache, SingleFlight singleFlight,
+                      UserSecondaryIndex secondaryIndex, UserStoreProperties properties, MeterRegistry meterRegistry) {
+        UserStoreProperties.WriteBehind config = properties.getWriteBehind();
+        this.userStore = userStore;
+        this.nearCache = nearCache;
+        this.singleFlight = singleFlight;
+        this.secondaryIndex = secondaryIndex;
+        this.enabled = config.isEnabled();
+        this.maxPending = config.getMaxPending();
+        this.batchSize = Math.min(config.getBatchSize(), config.getMaxPending());
+
+        this.coalesced = Counter.builder("write.behind.coalesced")
+                .description("Saves merged into a user already waiting to be written").register(meterRegistry);
+        this.backpressure = Counter.builder("write.behind.backpressure")
+                .description("Saves that waited for room in a full buffer").register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("write.behind.flush.size")
+                .description("Users written per flush").register(meterRegistry);
+        this.flushLag = Timer.builder("write.behind.flush.lag")
+                .description("Time from buffering a user until it was written")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("write.behind.pending", this, WriteBehindBuffer::size)
+                .description("Users buffered or being written").register(meterRegistry);
+
+        this.ticker = enabled
+                ? Flux.interval(config.getFlushInterval()).subscribe(tick -> flush())
+                : null;
+        if (enabled) {
+            log.info("User write-behind enabled (maxPending={}, batchSize={}, flushInterval={})",
+                    maxPending, batchSize, config.getFlushInterval());
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers a save; a null ttl stores the user without expiration
+     * @return Mono containing a copy of the user stored by the write the save ended up in, at
+     *     the version stored
+     */
+    Mono<User> submit(User user, Duration ttl) {
+        return Mono.create(sink -> offer(user, ttl, sink));
+    }
+
+    /**
+     * @return the latest buffered value of the user, or null if none is waiting to be written
+     */
+    synchronized User buffered(String id) {
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            entry = inFlight.get(id);
+        }
+        return entry == null ? null : entry.user;
+    }
+
+    /**
+     * @return Mono completing once any buffered save of the user has been written
+     */
+    Mono<Void> settle(String id) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.<User>create(sink -> {
+                    synchronized (this) {
+                        Entry entry = pending.get(id);
+                        if (entry == null) {
+                            entry = inFlight.get(id);
+                        }
+                        if (entry == null) {
+                            sink.success();
+                            return;
+                        }
+                        entry.waiters.add(sink);
+                    }
+                    flush();
+                })
+                // the failure belongs to the buffered save, not to the operation waiting for it
+                .onErrorComplete()
+                .then();
+    }
+
+    /**
+     * @return Mono completing once every save buffered so far has been written
+     */
+    Mono<Void> settleAll() {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Flux.defer(() -> {
+                    List<String> ids;
+                    synchronized (this) {
+                        ids = new ArrayList<>(inFlight.keySet());
+                        ids.addAll(pending.keySet());
+                    }
+                    return Flux.fromIterable(ids);
+                })
+                .flatMap(this::settle)
+                .then();
+    }
+
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        ticker.dispose();
+        settleAll().block(CLOSE_TIMEOUT);
+    }
+
+    private void offer(User user, Duration ttl, MonoSink<User> sink) {
+        boolean flushNow;
+        synchronized (this) {
+            Entry entry = pending.get(user.getId());
+            if (entry != null) {
+                entry.user = user;
+                entry.ttl = ttl;
+                entry.waiters.add(sink);
+                coalesced.increment();
+            } else if (pending.size() < maxPending) {
+                entry = new Entry(user, ttl);
+                entry.waiters.add(sink);
+                pending.put(user.getId(), entry);
+            } else {
+                blocked.add(() -> offer(user, ttl, sink));
+                backpressure.increment();
+            }
+            flushNow = pending.size() >= batchSize;
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes up to one batch of buffered users. Flushes run one at a time, so two values of the
+     * same user are never written out of order; a flush requested while another runs is
+     * started as soon as that one completes.
+     */
+    private void flush() {
+        flushRequested.set(true);
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushRequested.set(false);
+        List<Entry> batch = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> entries = pending.values().iterator();
+            while (entries.hasNext() && batch.size() < batchSize) {
+                Entry entry = entries.next();
+                entries.remove();
+                inFlight.put(entry.user.getId(), entry);
+                batch.add(entry);
+            }
+        }
+        if (batch.isEmpty()) {
+            flushing.set(false);
+            return;
+        }
+        flushSize.record(batch.size());
+        write(batch).subscribe(this::complete, e -> complete(batch.stream()
+                .map(entry -> new Written(entry, null, e))
+                .toList()));
+    }
+
+    private Mono<List<Written>> write(List<Entry> batch) {
+        return Flux.fromIterable(batch)
+                .flatMapSequential(entry -> userStore.write(entry.user, entry.ttl)
+                        .doFinally(signal -> {
+                            nearCache.invalidate(UserKeys.of(entry.user.getId()));
+                            singleFlight.forget(entry.user.getId());
+                        })
+                        .map(version -> new Written(entry, entry.user.withVersion(version), null))
+                        .onErrorResume(e -> Mono.just(new Written(entry, null, e))), batch.size())
+                .collectList()
+                .flatMap(written -> index(written).thenReturn(written));
+    }
+
+    private Mono<Void> index(List<Written> written) {
+        List<User> saved = written.stream()
+                .map(Written::stored)
+                .filter(Objects::nonNull)
+                .toList();
+        return secondaryIndex.indexWritten(saved)
+                .onErrorResume(e -> {
+                    log.warn("Failed to index {} written users: {}", saved.size(), e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private void complete(List<Written> written) {
+        List<List<MonoSink<User>>> waiters = new ArrayList<>(written.size());
+        List<Runnable> unblocked;
+        synchronized (this) {
+            // once out of inFlight no new waiter can attach, so this snapshot is final
+            for (Written result : written) {
+                inFlight.remove(result.entry().user.getId());
+                waiters.add(List.copyOf(result.entry().waiters));
+            }
+            unblocked = new ArrayList<>(blocked);
+            blocked.clear();
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < written.size(); i++) {
+            Written result = written.get(i);
+            flushLag.record(now - result.entry().bufferedAt, TimeUnit.NANOSECONDS);
+            waiters.get(i).forEach(result::complete);
+        }
+        flushing.set(false);
+        unblocked.forEach(Runnable::run);
+        if (flushRequested.get() || pendingCount() >= batchSize) {
+            flush();
+        }
+    }
+
+    private synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private synchronized int size() {
+        return pending.size() + inFlight.size();
+    }
+
+    private static final class Entry {
+
+        private final long bufferedAt = System.nanoTime();
+        // guarded by the buffer
+        private final List<MonoSink<User>> waiters = new ArrayList<>();
+        private User user;
+        private Duration ttl;
+
+        Entry(User user, Duration ttl) {
+            this.user = user;
+            this.ttl = ttl;
+        }
+    }
+
+    // the stored copy is null if the write failed
+    private record Written(Entry entry, User stored, Throwable error) {
+
+        void complete(MonoSink<User> sink) {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.success(stored);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.aratax.redis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import io.lettuce.core.KillArgs;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// needs the master of the replica profile on localhost:6379
+class ClientTrackingConnectionIntegrationTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final String clientName = "near-cache-test-" + UUID.randomUUID();
+    private final String key = UserKeys.of(UUID.randomUUID().toString());
+    private final User user = new User("1", "Tracked User", "tracked@example.com", 30);
+    private final ClientResources clientResources = DefaultClientResources.create();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserStoreProperties properties = nearCacheProperties();
+    private final HotKeyTracker hotKeys = new HotKeyTracker(properties, meterRegistry);
+    private final UserNearCache nearCache = new UserNearCache(properties, hotKeys, meterRegistry);
+    private final RedisClient admin = RedisClient.create(clientResources, RedisURI.create("localhost", 6379));
+    private final StatefulRedisConnection<String, String> commands = admin.connect();
+    private ClientTrackingConnection tracking;
+
+    @AfterEach
+    void tearDown() {
+        if (tracking != null) {
+            tracking.close();
+        }
+        commands.sync().del(key);
+        commands.close();
+        admin.shutdown();
+        hotKeys.close();
+        clientResources.shutdown();
+    }
+
+    @Test
+    void testWriteByAnotherClientInvalidatesTheEntry() {
+        // Given tracking is enabled and a user cached
+        tracking = newTrackingConnection();
+        await(() -> cacheable());
+
+        // When another client writes the key
+        commands.sync().set(key, "changed");
+
+        // Then
+        await(() -> nearCache.get(key) == null);
+    }
+
+    @Test
+    void testNothingIsCachedUntilTrackingIsEnabledAgainAfterAReconnect() {
+        // Given a cached user
+        tracking = newTrackingConnection();
+        await(() -> cacheable());
+
+        // When the tracking connection is dropped
+        long stamp = nearCache.stamp(key);
+        commands.sync().clientKill(KillArgs.Builder.id(trackingClientId()));
+
+        // Then the cache is flushed, a read started before the drop is not cached,
+        // and caching resumes once tracking is back
+        await(() -> nearCache.get(key) == null);
+        nearCache.put(key, user, stamp);
+        assertNull(nearCache.get(key));
+        await(() -> cacheable());
+        commands.sync().set(key, "changed");
+        await(() -> nearCache.get(key) == null);
+    }
+
+    private ClientTrackingConnection newTrackingConnection() {
+        RedisURI uri = RedisURI.builder().withHost("localhost").withPort(6379).withClientName(clientName).build();
+        return new ClientTrackingConnection(clientResources, uri, UserKeys.PREFIX, nearCache);
+    }
+
+    private boolean cacheable() {
+        nearCache.put(key, user, nearCache.stamp(key));
+        return nearCache.get(key) == user;
+    }
+
+    private long trackingClientId() {
+        for (String client : commands.sync().clientList().split("\n")) {
+            if (client.contains("name=" + clientName + " ")) {
+                return Long.parseLong(client.substring(client.indexOf("id=") + 3, client.indexOf(' ')));
+            }
+        }
+        throw new AssertionError("no client named " + clientName);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within " + WAIT);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static UserStoreProperties nearCacheProperties() {
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getNearCache().setEnabled(true);
+        return properties;
+    }
+}
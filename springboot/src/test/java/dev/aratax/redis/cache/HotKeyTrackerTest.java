@@ -0,0 +1,208 @@
+package dev.aratax.redis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import io.lettuce.core.cluster.SlotHash;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HotKeyTrackerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HotKeyTracker tracker;
+
+    @AfterEach
+    void tearDown() {
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+
+    @Test
+    void testHottestKeysAreReportedHottestFirst() {
+        // Given every access counted and room for three keys
+        tracker = newTracker(properties(3, false));
+
+        // When a few keys are hammered among many that are read once
+        for (int i = 0; i < 5_000; i++) {
+            tracker.record(UserKeys.of("cold-" + i));
+            if (i % 5 == 0) {
+                tracker.record(UserKeys.of("warm"));
+            }
+            if (i % 2 == 0) {
+                tracker.record(UserKeys.of("hot"));
+            }
+            if (i % 10 == 0) {
+                tracker.record(UserKeys.of("tepid"));
+            }
+        }
+        tracker.roll();
+
+        // Then
+        List<HotKeyTracker.HotKey> keys = tracker.report().keys();
+        assertEquals(List.of(UserKeys.of("hot"), UserKeys.of("warm"), UserKeys.of("tepid")),
+                keys.stream().map(HotKeyTracker.HotKey::key).toList());
+        assertTrue(keys.get(0).rate() > keys.get(1).rate());
+        assertEquals(SlotHash.getSlot(UserKeys.of("hot")), keys.get(0).slot());
+        assertFalse(keys.get(0).pinned());
+        assertEquals(keys.get(0).rate(), meterRegistry.get("hot.keys.max.rate").gauge().value());
+    }
+
+    @Test
+    void testSketchNeverUnderestimates() {
+        // Given a sketch much smaller than the number of keys
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("key-" + (i % 1_000));
+        }
+        sketch.add("key-7");
+
+        // Then
+        assertTrue(sketch.estimate("key-7") >= 11);
+        assertTrue(sketch.estimate("key-999") >= 10);
+
+        // When
+        sketch.clear();
+
+        // Then
+        assertEquals(0, sketch.estimate("key-7"));
+    }
+
+    @Test
+    void testKeysWithTheSameStringHashCodeAreCountedApart() {
+        // Given two keys String.hashCode cannot tell apart
+        CountMinSketch sketch = new CountMinSketch(4096, 4);
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            sketch.add("Aa");
+        }
+
+        // Then
+        assertEquals(100, sketch.estimate("Aa"));
+        assertEquals(0, sketch.estimate("BB"));
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNoAccesses() throws Exception {
+        // Given every access counted and room for two keys
+        tracker = newTracker(properties(2, false));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When threads record the same keys among keys of their own at once
+        try {
+            List<Future<?>> recorders = IntStream.range(0, threads)
+                    .<Future<?>>mapToObj(thread -> executor.submit(() -> {
+                        for (int i = 0; i < 2_000; i++) {
+                            tracker.record(UserKeys.of("hot"));
+                            tracker.record(UserKeys.of("cold-" + thread + "-" + i));
+                            if (i % 2 == 0) {
+                                tracker.record(UserKeys.of("warm"));
+                            }
+                        }
+                    }))
+                    .toList();
+            for (Future<?> recorder : recorders) {
+                recorder.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        tracker.roll();
+
+        // Then
+        List<HotKeyTracker.HotKey> keys = tracker.report().keys();
+        assertEquals(List.of(UserKeys.of("hot"), UserKeys.of("warm")),
+                keys.stream().map(HotKeyTracker.HotKey::key).toList());
+        assertTrue(keys.get(0).rate() > keys.get(1).rate());
+    }
+
+    @Test
+    void testKeyThatCoolsDownLeavesTheReport() {
+        // Given
+        tracker = newTracker(properties(3, false));
+        for (int i = 0; i < 100; i++) {
+            tracker.record(UserKeys.of("hot"));
+        }
+        tracker.roll();
+        assertEquals(1, tracker.report().keys().size());
+
+        // When a window passes without accesses
+        tracker.roll();
+
+        // Then
+        assertTrue(tracker.report().keys().isEmpty());
+    }
+
+    @Test
+    void testHotKeysArePinnedWhileTheNearCacheIsOff() {
+        // Given pinning from one access per second
+        UserStoreProperties properties = properties(3, true);
+        tracker = newTracker(properties);
+        UserNearCache nearCache = new UserNearCache(properties, tracker, meterRegistry);
+        User hot = new User("hot", "Hot User", "hot@example.com", 30);
+        User cold = new User("cold", "Cold User", "cold@example.com", 30);
+
+        // When
+        nearCache.put(UserKeys.of("hot"), hot, nearCache.stamp(UserKeys.of("hot")));
+
+        // Then nothing is pinned before a window reports the key hot
+        assertNull(nearCache.get(UserKeys.of("hot")));
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            tracker.record(UserKeys.of("hot"));
+        }
+        tracker.roll();
+        nearCache.put(UserKeys.of("hot"), hot, nearCache.stamp(UserKeys.of("hot")));
+        nearCache.put(UserKeys.of("cold"), cold, nearCache.stamp(UserKeys.of("cold")));
+
+        // Then only the key reported hot is pinned
+        assertTrue(tracker.report().keys().get(0).pinned());
+        assertSame(hot, nearCache.get(UserKeys.of("hot")));
+        assertNull(nearCache.get(UserKeys.of("cold")));
+
+        // When the user is written
+        nearCache.invalidate(UserKeys.of("hot"));
+
+        // Then
+        assertNull(nearCache.get(UserKeys.of("hot")));
+    }
+
+    private HotKeyTracker newTracker(UserStoreProperties properties) {
+        return new HotKeyTracker(properties, meterRegistry);
+    }
+
+    private static UserStoreProperties properties(int topK, boolean pin) {
+        UserStoreProperties properties = new UserStoreProperties();
+        UserStoreProperties.HotKeys hotKeys = properties.getHotKeys();
+        hotKeys.setSampleRate(1);
+        hotKeys.setTopK(topK);
+        // windows are closed by the test
+        hotKeys.setWindow(Duration.ofHours(1));
+        hotKeys.getPin().setEnabled(pin);
+        hotKeys.getPin().setMinRate(1);
+        return properties;
+    }
+}
@@ -0,0 +1,128 @@
+package dev.aratax.redis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UserNearCacheTest {
+
+    private static final String KEY = UserKeys.of("1");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User user = new User("1", "Cached User", "cached@example.com", 30);
+    private final UserStoreProperties properties = nearCacheProperties();
+    private final HotKeyTracker hotKeys = new HotKeyTracker(properties, meterRegistry);
+    private final UserNearCache nearCache = new UserNearCache(properties, hotKeys, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        hotKeys.close();
+    }
+
+    @Test
+    void testReadIsCachedWhenNothingWasInvalidated() {
+        // Given
+        long stamp = nearCache.stamp(KEY);
+
+        // When
+        nearCache.put(KEY, user, stamp);
+
+        // Then
+        assertSame(user, nearCache.get(KEY));
+    }
+
+    @Test
+    void testReadOvertakenByAnInvalidationIsNotCached() {
+        // Given a read in flight
+        long stamp = nearCache.stamp(KEY);
+
+        // When the key is written before the read answers
+        nearCache.invalidate(KEY);
+        nearCache.put(KEY, user, stamp);
+
+        // Then
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void testReadOvertakenByATrackedInvalidationIsNotCached() {
+        // Given a read in flight
+        long stamp = nearCache.stamp(KEY);
+
+        // When Redis reports the key as modified before the read answers
+        nearCache.invalidate(List.of(KEY));
+        nearCache.put(KEY, user, stamp);
+
+        // Then
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void testReadOvertakenByAFlushIsNotCached() {
+        // Given a read in flight
+        long stamp = nearCache.stamp(KEY);
+
+        // When
+        nearCache.invalidateAll();
+        nearCache.put(KEY, user, stamp);
+
+        // Then
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void testInvalidationAfterThePutRemovesTheEntry() {
+        // Given
+        nearCache.put(KEY, user, nearCache.stamp(KEY));
+
+        // When
+        nearCache.invalidate(KEY);
+
+        // Then
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void testNothingIsCachedWhileTrackingIsLost() {
+        // Given a cached user
+        nearCache.put(KEY, user, nearCache.stamp(KEY));
+
+        // When
+        nearCache.trackingLost();
+        nearCache.put(KEY, user, nearCache.stamp(KEY));
+
+        // Then
+        assertNull(nearCache.get(KEY));
+    }
+
+    @Test
+    void testReadStartedBeforeTrackingWasRestoredIsNotCached() {
+        // Given a read started while tracking was lost
+        nearCache.trackingLost();
+        long stamp = nearCache.stamp(KEY);
+
+        // When
+        nearCache.trackingRestored();
+        nearCache.put(KEY, user, stamp);
+
+        // Then it is dropped, while a read started afterwards is cached
+        assertNull(nearCache.get(KEY));
+        nearCache.put(KEY, user, nearCache.stamp(KEY));
+        assertSame(user, nearCache.get(KEY));
+    }
+
+    private static UserStoreProperties nearCacheProperties() {
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getNearCache().setEnabled(true);
+        return properties;
+    }
+}
@@ -0,0 +1,130 @@
+package dev.aratax.redis.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import dev.aratax.redis.config.RedisConfig;
+import dev.aratax.redis.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CompressingValueSerializerTest {
+
+    private final VersionedValueSerializer jsonSerializer = new VersionedValueSerializer(ValueCodec.JSON,
+            new GenericJackson2JsonRedisSerializer(new RedisConfig().redisObjectMapper()));
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CompressingValueSerializer serializer = compressing(true, meterRegistry);
+
+    private final User large = new User("123e4567-e89b-12d3-a456-426614174000", "John Doe ".repeat(100),
+            "john.doe@example.com", 30);
+
+    private final User small = new User("123e4567-e89b-12d3-a456-426614174000", "John Doe", "john.doe@example.com", 30);
+
+    @Test
+    void testLargeValueIsCompressed() {
+        // When
+        byte[] bytes = serializer.serialize(large);
+
+        // Then
+        assertTrue(CompressingValueSerializer.isCompressed(bytes));
+        assertTrue(bytes.length < jsonSerializer.serialize(large).length);
+        assertEquals(large, serializer.deserialize(bytes));
+        assertEquals(1, meterRegistry.get("redis.codec.compression.ratio").summary().count());
+        assertEquals(1, meterRegistry.get("redis.codec.compress").timer().count());
+    }
+
+    @Test
+    void testSmallValueIsStoredAsWritten() {
+        // When
+        byte[] bytes = serializer.serialize(small);
+
+        // Then
+        assertArrayEquals(jsonSerializer.serialize(small), bytes);
+        assertEquals(small, serializer.deserialize(bytes));
+        assertEquals(0, meterRegistry.get("redis.codec.compress").timer().count());
+    }
+
+    @Test
+    void testBinaryValuesAreReadThrough() {
+        // Given a value written before compression was enabled
+        byte[] legacy = new VersionedValueSerializer(ValueCodec.BINARY, jsonSerializer).serialize(large);
+
+        // When
+        Object user = serializer.deserialize(legacy);
+
+        // Then
+        assertFalse(CompressingValueSerializer.isCompressed(legacy));
+        assertEquals(large, user);
+    }
+
+    @Test
+    void testCompressedValuesAreReadWhenDisabled() {
+        // Given
+        byte[] bytes = serializer.serialize(large);
+        CompressingValueSerializer disabled =
+                compressing(false, new SimpleMeterRegistry());
+
+        // When
+        Object user = disabled.deserialize(bytes);
+
+        // Then
+        assertEquals(large, user);
+        assertFalse(CompressingValueSerializer.isCompressed(disabled.serialize(large)));
+    }
+
+    @Test
+    void testValueWithAVersionTrailerIsStillRead() {
+        // Given a value written when the version was appended after the stream
+        byte[] written = serializer.serialize(large);
+        byte[] bytes = ByteBuffer.allocate(written.length + Long.BYTES).put(written).putLong(7L).array();
+        bytes[1] = CompressingValueSerializer.VERSION_TRAILER;
+
+        // When
+        Object read = serializer.deserialize(bytes);
+
+        // Then the trailer is skipped
+        assertEquals(0, written[1]);
+        assertEquals(large, read);
+    }
+
+    @Test
+    void testLengthBeyondWhatTheStreamCanInflateToIsRejected() {
+        // Given a header claiming 2GB
+        byte[] bytes = serializer.serialize(large);
+        ByteBuffer.wrap(bytes).putInt(2, Integer.MAX_VALUE);
+
+        // When
+        SerializationException e = assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+
+        // Then no buffer of that size was allocated
+        assertTrue(e.getMessage().contains("claims to inflate to"), e.getMessage());
+    }
+
+    @Test
+    void testValuesAreStillCompressedAfterClose() {
+        // Given pooled streams
+        byte[] bytes = serializer.serialize(large);
+
+        // When
+        serializer.close();
+
+        // Then new streams are made and ended per call
+        assertEquals(large, serializer.deserialize(serializer.serialize(large)));
+        assertEquals(large, serializer.deserialize(bytes));
+    }
+
+    private CompressingValueSerializer compressing(boolean enabled, MeterRegistry meterRegistry) {
+        return new CompressingValueSerializer(jsonSerializer, enabled, 256, 1, meterRegistry);
+    }
+}
@@ -0,0 +1,101 @@
+package dev.aratax.redis.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import dev.aratax.redis.config.RedisConfig;
+import dev.aratax.redis.model.User;
+
+class VersionedValueSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer =
+            new GenericJackson2JsonRedisSerializer(new RedisConfig().redisObjectMapper());
+
+    private final VersionedValueSerializer binarySerializer =
+            new VersionedValueSerializer(ValueCodec.BINARY, jsonSerializer);
+
+    private final User user = new User("123e4567-e89b-12d3-a456-426614174000", "John Doe", "john.doe@example.com", 30);
+
+    @Test
+    void testBinaryRoundTrip() {
+        // Given
+        user.setCreatedAt(LocalDateTime.of(2023, 12, 1, 10, 30, 0, 123_456_789));
+
+        // When
+        byte[] bytes = binarySerializer.serialize(user);
+
+        // Then
+        assertTrue(UserBinaryCodec.isBinary(bytes));
+        assertEquals(user, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void testBinaryVersionEndsTheValue() {
+        // Given
+        user.setVersion(258L);
+
+        // When
+        byte[] bytes = binarySerializer.serialize(user);
+
+        // Then it is the last 8 bytes, big-endian
+        assertEquals(258L, ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong());
+        assertEquals(user, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void testBinaryRoundTripWithNullFields() {
+        // Given
+        User sparse = new User();
+        sparse.setId("sparse");
+
+        // When & Then
+        assertEquals(sparse, binarySerializer.deserialize(binarySerializer.serialize(sparse)));
+    }
+
+    @Test
+    void testBinaryIsSmallerThanJson() {
+        assertTrue(binarySerializer.serialize(user).length < jsonSerializer.serialize(user).length);
+    }
+
+    @Test
+    void testReadsLegacyJsonValues() {
+        // Given
+        byte[] legacy = jsonSerializer.serialize(user);
+
+        // When & Then
+        assertFalse(UserBinaryCodec.isBinary(legacy));
+        assertEquals(user, binarySerializer.deserialize(legacy));
+    }
+
+    @Test
+    void testJsonCodecReadsBinaryValues() {
+        // Given
+        VersionedValueSerializer json = new VersionedValueSerializer(ValueCodec.JSON, jsonSerializer);
+
+        // When & Then
+        assertFalse(UserBinaryCodec.isBinary(json.serialize(user)));
+        assertEquals(user, json.deserialize(binarySerializer.serialize(user)));
+    }
+
+    @Test
+    void testNonUserValuesFallBackToJson() {
+        // Given
+        Map<String, Object> value = new HashMap<>(Map.of("name", "John Doe"));
+
+        // When
+        byte[] bytes = binarySerializer.serialize(value);
+
+        // Then
+        assertFalse(UserBinaryCodec.isBinary(bytes));
+        assertEquals(value, binarySerializer.deserialize(bytes));
+    }
+}
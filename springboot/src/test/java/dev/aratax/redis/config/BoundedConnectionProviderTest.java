@@ -0,0 +1,145 @@
+package dev.aratax.redis.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionProvider;
+
+import io.lettuce.core.api.StatefulConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BoundedConnectionProviderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BoundedConnectionProvider provider;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        provider.destroy();
+    }
+
+    @Test
+    void testQueuedAcquisitionGetsReleasedConnection() throws Exception {
+        // Given
+        provider = newProvider(1, Duration.ofSeconds(5));
+        StatefulConnection<?, ?> first = acquire().get();
+
+        // When
+        CompletableFuture<StatefulConnection<?, ?>> queued = acquire();
+
+        // Then
+        assertFalse(queued.isDone());
+        assertEquals(1, meterRegistry.get("redis.pool.pending").gauge().value());
+
+        // When
+        provider.release(first);
+
+        // Then
+        assertSame(first, queued.get());
+        assertEquals(0, meterRegistry.get("redis.pool.pending").gauge().value());
+        assertEquals(1, meterRegistry.get("redis.pool.active").gauge().value());
+    }
+
+    @Test
+    void testAcquisitionTimesOutWithoutLeakingPermits() throws Exception {
+        // Given
+        provider = newProvider(1, Duration.ofMillis(50));
+        StatefulConnection<?, ?> first = acquire().get();
+
+        // When
+        ExecutionException error = assertThrows(ExecutionException.class, () -> acquire().get());
+
+        // Then
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertEquals(1, meterRegistry.get("redis.pool.acquire.timeouts").counter().count());
+
+        // When
+        provider.release(first);
+
+        // Then
+        assertTrue(acquire().isDone());
+        assertEquals(1, meterRegistry.get("redis.pool.active").gauge().value());
+    }
+
+    @Test
+    void testRefreshRetiresBorrowedConnections() throws Exception {
+        // Given
+        provider = newProvider(1, Duration.ofSeconds(5));
+        StatefulConnection<?, ?> borrowed = acquire().get();
+
+        // When
+        provider.refresh();
+        provider.release(borrowed);
+
+        // Then
+        assertFalse(borrowed.isOpen());
+        assertNotSame(borrowed, acquire().get());
+    }
+
+    @Test
+    void testIdleConnectionsBeingOpenedDoNotTurnPermitHoldersAway() throws Exception {
+        // Given connections that take a while to open, and a pool that keeps one idle
+        LettuceConnectionProvider connectionProvider = mock(LettuceConnectionProvider.class);
+        when(connectionProvider.getConnectionAsync(StatefulConnection.class))
+                .thenAnswer(invocation -> CompletableFuture.supplyAsync(BoundedConnectionProviderTest::newConnection,
+                        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)));
+        RedisConfigProperties.Pool pool = new RedisConfigProperties.Pool();
+        pool.setMaxActive(2);
+        pool.setMaxIdle(2);
+        pool.setMinIdle(1);
+        pool.setMaxWait(Duration.ofSeconds(5));
+        provider = new BoundedConnectionProvider(connectionProvider, pool, meterRegistry, "test");
+
+        // When both permits are taken while the pool is still opening its idle connection
+        CompletableFuture<StatefulConnection<?, ?>> first = acquire();
+        CompletableFuture<StatefulConnection<?, ?>> second = acquire();
+
+        // Then neither is turned away
+        assertNotSame(first.get(), second.get());
+    }
+
+    private CompletableFuture<StatefulConnection<?, ?>> acquire() {
+        return provider.getConnectionAsync(StatefulConnection.class)
+                .<StatefulConnection<?, ?>>thenApply(connection -> connection)
+                .toCompletableFuture();
+    }
+
+    private BoundedConnectionProvider newProvider(int maxActive, Duration maxWait) {
+        LettuceConnectionProvider connectionProvider = mock(LettuceConnectionProvider.class);
+        when(connectionProvider.getConnectionAsync(StatefulConnection.class))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(newConnection()));
+
+        RedisConfigProperties.Pool pool = new RedisConfigProperties.Pool();
+        pool.setMaxActive(maxActive);
+        pool.setMaxIdle(maxActive);
+        pool.setMaxWait(maxWait);
+        return new BoundedConnectionProvider(connectionProvider, pool, meterRegistry, "test");
+    }
+
+    private static StatefulConnection<?, ?> newConnection() {
+        StatefulConnection<?, ?> connection = mock(StatefulConnection.class);
+        AtomicBoolean open = new AtomicBoolean(true);
+        when(connection.isOpen()).thenAnswer(invocation -> open.get());
+        when(connection.closeAsync()).thenAnswer(invocation -> {
+            open.set(false);
+            return CompletableFuture.completedFuture(null);
+        });
+        return connection;
+    }
+}
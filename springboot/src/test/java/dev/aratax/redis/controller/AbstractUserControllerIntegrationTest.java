@@ -1,7 +1,17 @@
 package dev.aratax.redis.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer;
@@ -9,14 +19,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.BulkOperationResult;
 import dev.aratax.redis.model.User;
+import dev.aratax.redis.model.UserPage;
 import reactor.core.publisher.Mono;
 
+// a listing given up on by a timed-out assertion leaves its exchange open, and a graceful
+// shutdown would wait the whole shutdown phase for it when the cached contexts are closed
 @TestMethodOrder(MethodOrderer.MethodName.class)
-@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "server.shutdown=immediate")
 abstract class AbstractUserControllerIntegrationTest {
 
     @Autowired
@@ -54,6 +72,187 @@ abstract class AbstractUserControllerIntegrationTest {
         System.out.println("Users: " + users);
     }
 
+    @Test
+    void testConditionalWrites() {
+        // create-if-absent starts the version at 1 and refuses a taken id
+        webTestClient.post()
+                .uri("/api/users")
+                .header(HttpHeaders.IF_NONE_MATCH, "*")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(1L, user.getVersion()));
+        webTestClient.post()
+                .uri("/api/users")
+                .header(HttpHeaders.IF_NONE_MATCH, "*")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // compare-and-set succeeds once per version
+        sampleUser.setName("Versioned Test User");
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(2L, user.getVersion()));
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .header(HttpHeaders.IF_MATCH, "1")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.put()
+                .uri("/api/users/{id}", UUID.randomUUID())
+                .header(HttpHeaders.IF_MATCH, "1")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        // replace keeping the TTL only updates existing users
+        webTestClient.put()
+                .uri("/api/users/{id}?keep-ttl=true", UUID.randomUUID())
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.post()
+                .uri("/api/users/{id}/expire?seconds=600", sampleUser.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.put()
+                .uri("/api/users/{id}?keep-ttl=true", sampleUser.getId())
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testFindUsersByEmailAndAge() {
+        sampleUser.setEmail("Lookup-" + sampleUser.getId() + "@Example.com");
+        sampleUser.setAge(141);
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/api/users/by-email?email={email}", sampleUser.getEmail().toLowerCase())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(sampleUser.getId(), user.getId()));
+        webTestClient.get()
+                .uri("/api/users/by-age?min=140&max=142&limit=1000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .value(users -> assertTrue(users.stream().anyMatch(user -> user.getId().equals(sampleUser.getId()))));
+        webTestClient.get()
+                .uri("/api/users/by-age?min=140&max=142&limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .hasSize(1);
+
+        // a changed email and age move the user within the indexes
+        String oldEmail = sampleUser.getEmail();
+        sampleUser.setEmail("moved-" + sampleUser.getId() + "@example.com");
+        sampleUser.setAge(30);
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("/api/users/by-email?email={email}", oldEmail)
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get()
+                .uri("/api/users/by-email?email={email}", sampleUser.getEmail())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("/api/users/by-age?min=140&max=142&limit=1000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .value(users -> assertTrue(users.stream().noneMatch(user -> user.getId().equals(sampleUser.getId()))));
+
+        webTestClient.delete()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get()
+                .uri("/api/users/by-email?email={email}", sampleUser.getEmail())
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get()
+                .uri("/api/users/by-age?min=142&max=140")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetUserPages() {
+        List<User> users = IntStream.range(0, 5)
+                .mapToObj(i -> new User("page-" + UUID.randomUUID(), "Page Test User", "page@example.com", i))
+                .toList();
+        webTestClient.post()
+                .uri("/api/users/bulk")
+                .bodyValue(users)
+                .exchange()
+                .expectStatus().isOk();
+
+        // walk the whole listing two users at a time
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        do {
+            String uri = cursor == null ? "/api/users?limit=2" : "/api/users?limit=2&cursor=" + cursor;
+            UserPage page = webTestClient.get().uri(uri)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(UserPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            assertTrue(page.getUsers().size() <= 2);
+            page.getUsers().forEach(user -> assertTrue(seen.add(user.getId()), "listed twice: " + user.getId()));
+            cursor = page.getNext();
+        } while (cursor != null);
+        users.forEach(user -> assertTrue(seen.contains(user.getId())));
+
+        webTestClient.get().uri("/api/users?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/api/users?limit=2&cursor=not*base64")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testStreamAllUsers() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        List<User> users = webTestClient.get().uri("/api/users")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(User.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertTrue(users.stream().anyMatch(user -> user.getId().equals(sampleUser.getId())));
+    }
+
     @Test
     void testGetUser() {
 
@@ -88,6 +287,166 @@ abstract class AbstractUserControllerIntegrationTest {
                 .expectBody(User.class);
     }
 
+    @Test
+    void testPatchUser() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.patch()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(Map.of("age", 31))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> {
+                    assertEquals(31, user.getAge());
+                    assertEquals(sampleUser.getName(), user.getName());
+                });
+
+        webTestClient.patch()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(Map.of("unknown", "value"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testEveryWriteAdvancesTheVersion() {
+        // Given a user saved with a made-up version
+        sampleUser.setVersion(41L);
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(1L, user.getVersion()));
+
+        // When it is saved again carrying an old version, then patched
+        sampleUser.setVersion(0L);
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(2L, user.getVersion()));
+        webTestClient.patch()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(Map.of("age", 31))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(3L, user.getVersion()));
+
+        // Then a version read before those writes no longer matches
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .header(HttpHeaders.IF_MATCH, "1")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .header(HttpHeaders.IF_MATCH, "3")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(4L, user.getVersion()));
+    }
+
+    @Test
+    void testEmailIndexFollowsTheLastOfConcurrentWrites() throws InterruptedException {
+        // Given
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(sampleUser)
+                .exchange()
+                .expectStatus().isOk();
+
+        // When saves of different emails race each other
+        IntStream.range(0, 16).parallel().forEach(i -> webTestClient.put()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(new User(sampleUser.getId(), "Racing User", i + "-" + sampleUser.getEmail(), 30))
+                .exchange()
+                .expectStatus().isOk());
+
+        // Then the user is found by the email that was stored last, once replicated
+        Thread.sleep(200);
+        User stored = webTestClient.get().uri("/api/users/{id}", sampleUser.getId())
+                .exchange()
+                .expectBody(User.class)
+                .returnResult().getResponseBody();
+        webTestClient.get()
+                .uri("/api/users/by-email?email={email}", stored.getEmail())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(sampleUser.getId(), user.getId()));
+    }
+
+    @Test
+    void testConcurrentPatchesAreAllApplied() throws InterruptedException {
+        // Given
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+        User created = webTestClient.get().uri("/api/users/{id}", sampleUser.getId())
+                .exchange()
+                .expectBody(User.class)
+                .returnResult().getResponseBody();
+        long version = created.getVersion() == null ? 0 : created.getVersion();
+
+        // When patches race each other
+        IntStream.range(0, 8).parallel().forEach(i -> webTestClient.patch()
+                .uri("/api/users/{id}", sampleUser.getId())
+                .bodyValue(Map.of("age", i))
+                .exchange()
+                .expectStatus().isOk());
+
+        // Then each one was applied on top of the one before, once replicated
+        Thread.sleep(200);
+        webTestClient.get().uri("/api/users/{id}", sampleUser.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> assertEquals(version + 8, user.getVersion()));
+    }
+
+    @Test
+    void testPatchUserNotFound() {
+        webTestClient.patch()
+                .uri("/api/users/{id}", "non-existent-id")
+                .bodyValue(Map.of("age", 31))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testGetUserFields() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/api/users/{id}?fields=name", sampleUser.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(user -> {
+                    assertEquals(sampleUser.getName(), user.getName());
+                    assertNull(user.getEmail());
+                });
+    }
+
     @Test
     void testDeleteUser() {
         webTestClient.post()
@@ -111,6 +470,90 @@ abstract class AbstractUserControllerIntegrationTest {
                 .expectStatus().isNotFound();
     }
 
+    @Test
+    void testGetUserCount() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/api/users/count")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class)
+                .value(count -> assertTrue(count > 0));
+    }
+
+    @Test
+    void testBulkCreateAndDeleteUsers() {
+        User other = new User(UUID.randomUUID().toString(), "Bulk Test User", "bulk@example.com", 40);
+
+        webTestClient.post()
+                .uri("/api/users/bulk")
+                .bodyValue(List.of(sampleUser, other))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkOperationResult.class)
+                .value(results -> {
+                    assertEquals(2, results.size());
+                    assertEquals(sampleUser.getId(), results.get(0).getId());
+                    assertTrue(results.stream().allMatch(BulkOperationResult::isSuccess));
+                });
+
+        webTestClient.post()
+                .uri("/api/users/bulk/delete")
+                .bodyValue(List.of(sampleUser.getId(), other.getId(), "non-existent-id"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkOperationResult.class)
+                .value(results -> {
+                    assertEquals(3, results.size());
+                    assertTrue(results.get(0).isSuccess());
+                    assertTrue(results.get(1).isSuccess());
+                    assertFalse(results.get(2).isSuccess());
+                });
+    }
+
+    @Test
+    void testRedisCommandLatencyMetrics() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/actuator/metrics/lettuce.command.completion")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.availableTags[?(@.tag == 'command')]").exists()
+                .jsonPath("$.availableTags[?(@.tag == 'remote')]").exists();
+    }
+
+    @Test
+    void testGetAllUsersUsesBulkPool() {
+        webTestClient.post()
+                .uri("/api/users")
+                .body(Mono.just(sampleUser), User.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get().uri("/api/users")
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/actuator/metrics/redis.pool.acquire?tag=pool:bulk")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").value(counts ->
+                        assertTrue(((Number) ((List<?>) counts).get(0)).doubleValue() > 0));
+    }
+
     @Test
     void testDeleteAllUsers() {
         webTestClient.post()
@@ -0,0 +1,71 @@
+package dev.aratax.redis.controller;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.test.context.ActiveProfiles;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import io.lettuce.core.cluster.SlotHash;
+
+@ActiveProfiles("cluster")
+public class ClusterUserControllerIntegrationTest extends AbstractUserControllerIntegrationTest {
+
+    @Test
+    void testClusterListsAndDeletesUsersAcrossSlots() {
+        // Given users spread over many slots, more than the bulk pool has connections
+        List<User> users = IntStream.range(0, 200)
+                .mapToObj(i -> new User("slot-" + UUID.randomUUID(), "Slot Test User", "slot@example.com", i))
+                .toList();
+        assertTrue(users.stream().map(user -> SlotHash.getSlot(UserKeys.of(user.getId()))).distinct().count() > 100);
+        webTestClient.post()
+                .uri("/api/users/bulk")
+                .bodyValue(users)
+                .exchange()
+                .expectStatus().isOk();
+
+        // When / Then the listing reads every slot
+        Set<String> listed = listedIds();
+        users.forEach(user -> assertTrue(listed.contains(user.getId()), "not listed: " + user.getId()));
+
+        // When / Then deleting all reaches every slot
+        webTestClient.delete()
+                .uri("/api/users")
+                .exchange()
+                .expectStatus().isOk();
+        Set<String> remaining = listedIds();
+        users.forEach(user -> assertTrue(!remaining.contains(user.getId()), "not deleted: " + user.getId()));
+    }
+
+    @Test
+    void testNearCacheIsRefusedWithoutClientTracking() {
+        // Given / When / Then this profile sets up no invalidation channel for the near cache
+        assertThrows(IllegalStateException.class, () -> new SpringApplicationBuilder(RedisApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("cluster")
+                .run("--app.user-store.near-cache.enabled=true"));
+    }
+
+    private Set<String> listedIds() {
+        return webTestClient.get().uri("/api/users")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .map(User::getId)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,72 @@
+package dev.aratax.redis.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.routing.ReadYourWritesFilter;
+
+@ActiveProfiles("replica")
+@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.data.redis.read-routing.read-your-writes.enabled=true")
+class ReadYourWritesIntegrationTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void testReadWithConsistencyTokenSeesOwnWrite() {
+        // Given a user written through the API
+        User user = new User(UUID.randomUUID().toString(), "Consistency Test User", "ryw@example.com", 30);
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(user)
+                .exchange()
+                .expectStatus().isOk();
+
+        // When it is patched, the response carries a consistency token
+        String token = webTestClient.patch()
+                .uri("/api/users/{id}", user.getId())
+                .bodyValue(Map.of("age", 31))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseHeaders()
+                .getFirst(ReadYourWritesFilter.TOKEN_HEADER);
+        assertNotNull(token);
+
+        // Then a read presenting the token sees the patched value
+        webTestClient.get()
+                .uri("/api/users/{id}", user.getId())
+                .header(ReadYourWritesFilter.TOKEN_HEADER, token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .value(read -> assertEquals(31, read.getAge()));
+
+        webTestClient.get()
+                .uri("/actuator/metrics/redis.read.consistency.wait")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testFailedWriteIssuesNoToken() {
+        webTestClient.patch()
+                .uri("/api/users/{id}", "non-existent-id")
+                .bodyValue(Map.of("age", 31))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().doesNotExist(ReadYourWritesFilter.TOKEN_HEADER);
+    }
+}
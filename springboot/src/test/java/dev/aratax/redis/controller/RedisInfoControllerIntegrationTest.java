@@ -27,5 +27,35 @@ class RedisInfoControllerIntegrationTest {
                 })
                 .isEqualTo("PONG");
     }
+
+    @Test
+    void testDiagnostics() {
+        webTestClient.get()
+                .uri("/api/redis/diagnostics")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.mode").isEqualTo("replica")
+                .jsonPath("$.status").isEqualTo("UP")
+                .jsonPath("$.nodes.length()").isEqualTo(3)
+                .jsonPath("$.nodes[0].role").isEqualTo("master")
+                .jsonPath("$.nodes[0].rttMillis").isNumber()
+                .jsonPath("$.nodes[0].usedMemoryBytes").isNumber()
+                .jsonPath("$.nodes[1].role").isEqualTo("replica")
+                .jsonPath("$.nodes[1].masterLinkUp").isEqualTo(true)
+                .jsonPath("$.nodes[1].lagBytes").isNumber();
+    }
+
+    @Test
+    void testHealthIsAnsweredFromDiagnostics() {
+        webTestClient.get()
+                .uri("/actuator/health")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.components.redis.status").isEqualTo("UP")
+                .jsonPath("$.components.redis.details.mode").isEqualTo("replica")
+                .jsonPath("$.components.redis.details.reachable").isEqualTo("3/3");
+    }
     
 }
@@ -0,0 +1,45 @@
+package dev.aratax.redis.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserRedisService;
+
+@ActiveProfiles("replica")
+@TestPropertySource(properties = "app.user-store.execution=virtual-threads")
+public class VirtualThreadUserControllerIntegrationTest extends AbstractUserControllerIntegrationTest {
+
+    @Test
+    void testContextClosesAfterRunningOperationsFinish() {
+        // Given a context of its own with a save under way
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RedisApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("replica")
+                .run("--app.user-store.execution=virtual-threads");
+        UserRedisService userService = context.getBean(UserRedisService.class);
+        User user = new User(UUID.randomUUID().toString(), "Closing User", "closing@example.com", 30);
+        CompletableFuture<User> saved = userService.save(user).toFuture();
+
+        // When it is closed
+        assertTimeoutPreemptively(Duration.ofSeconds(20), context::close);
+
+        // Then the save finished on open connections and no more operations are taken
+        assertEquals(1L, saved.join().getVersion());
+        assertThrows(RejectedExecutionException.class, () -> userService.findById(user.getId()).block());
+    }
+}
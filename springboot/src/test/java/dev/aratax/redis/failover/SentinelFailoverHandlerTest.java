@@ -0,0 +1,72 @@
+package dev.aratax.redis.failover;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import dev.aratax.redis.config.RedisConfigProperties;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SentinelFailoverHandlerTest {
+
+    private final ClientResources clientResources = DefaultClientResources.create();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LettuceConnectionFactory connectionFactory = mock(LettuceConnectionFactory.class);
+    private final SentinelFailoverHandler handler = newHandler();
+
+    @AfterEach
+    void tearDown() {
+        handler.close();
+        clientResources.shutdown();
+    }
+
+    @Test
+    void testEventsFromSeveralSentinelsAreHandledOnce() {
+        // Given the same event published by three sentinels
+        for (int i = 0; i < 3; i++) {
+            handler.onEvent("+sdown", "slave 127.0.0.1:6380 127.0.0.1 6380 @ mymaster 127.0.0.1 6379");
+        }
+
+        // Then it is counted once
+        assertEquals(1, meterRegistry.counter("redis.sentinel.events", "event", "+sdown").count());
+    }
+
+    @Test
+    void testOtherMastersAreIgnored() {
+        // When another master fails over
+        handler.onEvent("+switch-master", "othermaster 127.0.0.1 7379 127.0.0.1 7380");
+
+        // Then the connections are left alone
+        verify(connectionFactory, never()).resetConnection();
+        assertEquals(0, meterRegistry.find("redis.sentinel.events").counters().size());
+    }
+
+    @Test
+    void testSwitchMasterResetsConnections() {
+        // When the monitored master is replaced
+        handler.onEvent("+odown", "master mymaster 127.0.0.1 6379 #quorum 2/2");
+        handler.onEvent("+switch-master", "mymaster 127.0.0.1 6379 127.0.0.1 6380");
+
+        // Then the factories reconnect, and the failover is timed out as the mock never answers
+        verify(connectionFactory, timeout(1000)).resetConnection();
+        verify(connectionFactory, timeout(2000).atLeastOnce()).getReactiveConnection();
+    }
+
+    private SentinelFailoverHandler newHandler() {
+        RedisConfigProperties.Failover settings = new RedisConfigProperties.Failover();
+        settings.setRecoveryTimeout(Duration.ofMillis(200));
+        return new SentinelFailoverHandler(clientResources, "mymaster", List.of(), List.of(connectionFactory),
+                settings, meterRegistry);
+    }
+}
@@ -0,0 +1,86 @@
+package dev.aratax.redis.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.models.role.RedisInstance.Role;
+import io.lettuce.core.models.role.RedisNodeDescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LagAwareReadFromTest {
+
+    private final RedisNodeDescription master = new Node(RedisURI.create("localhost", 6379), Role.UPSTREAM);
+    private final RedisNodeDescription fresh = new Node(RedisURI.create("localhost", 6380), Role.REPLICA);
+    private final RedisNodeDescription lagging = new Node(RedisURI.create("localhost", 6381), Role.REPLICA);
+    private final ReadFrom.Nodes nodes = new Nodes(List.of(master, fresh, lagging));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReplicaHealthMonitor monitor = mock(ReplicaHealthMonitor.class);
+
+    @BeforeEach
+    void setup() {
+        when(monitor.isEligible(any())).thenReturn(true);
+    }
+
+    @Test
+    void testExcludedReplicaIsSkipped() {
+        // Given
+        when(monitor.isEligible(lagging.getUri())).thenReturn(false);
+        ReadFrom readFrom = new LagAwareReadFrom(ReadFrom.ANY_REPLICA, monitor, meterRegistry);
+
+        // When
+        List<RedisNodeDescription> selection = readFrom.select(nodes);
+
+        // Then
+        assertEquals(List.of(fresh), selection);
+        assertEquals(1, meterRegistry.get("redis.read.routing").tag("decision", "rerouted").counter().count());
+    }
+
+    @Test
+    void testHealthyReplicasAreSelectedDirectly() {
+        // Given
+        ReadFrom readFrom = new LagAwareReadFrom(ReadFrom.ANY_REPLICA, monitor, meterRegistry);
+
+        // When
+        List<RedisNodeDescription> selection = readFrom.select(nodes);
+
+        // Then
+        assertEquals(List.of(fresh, lagging), selection);
+        assertEquals(1, meterRegistry.get("redis.read.routing").tag("decision", "direct").counter().count());
+    }
+
+    @Test
+    void testFallsBackToMasterWhenNoReplicaIsEligible() {
+        // Given
+        when(monitor.isEligible(any())).thenReturn(false);
+        ReadFrom readFrom = new LagAwareReadFrom(ReadFrom.ANY_REPLICA, monitor, meterRegistry);
+
+        // When
+        List<RedisNodeDescription> selection = readFrom.select(nodes);
+
+        // Then
+        assertEquals(List.of(master), selection);
+        assertEquals(1, meterRegistry.get("redis.read.routing").tag("decision", "fallback").counter().count());
+    }
+
+    private record Node(RedisURI getUri, Role getRole) implements RedisNodeDescription {
+    }
+
+    private record Nodes(List<RedisNodeDescription> getNodes) implements ReadFrom.Nodes {
+
+        @Override
+        public Iterator<RedisNodeDescription> iterator() {
+            return getNodes.iterator();
+        }
+    }
+}
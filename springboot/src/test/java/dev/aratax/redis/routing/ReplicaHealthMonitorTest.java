@@ -0,0 +1,108 @@
+package dev.aratax.redis.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.RedisConfigProperties;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+// needs the master of the replica profile on localhost:6379
+class ReplicaHealthMonitorTest {
+
+    private final String clientName = "replica-monitor-test-" + UUID.randomUUID();
+    private final ClientResources clientResources = DefaultClientResources.create();
+    private final RedisClient admin = RedisClient.create(clientResources, RedisURI.create("localhost", 6379));
+    private final StatefulRedisConnection<String, String> commands = admin.connect();
+    private ReplicaHealthMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        if (monitor != null) {
+            monitor.close();
+        }
+        commands.sync().del("replica-monitor-test");
+        commands.close();
+        admin.shutdown();
+        clientResources.shutdown();
+    }
+
+    @Test
+    void testConcurrentCallersShareOneProbeConnection() {
+        // Given a monitor that has not connected yet
+        RedisURI masterUri = RedisURI.builder().withHost("localhost").withPort(6379).withClientName(clientName).build();
+        monitor = new ReplicaHealthMonitor(clientResources, masterUri, List.of(),
+                new RedisConfigProperties.ReadRouting(), new SimpleMeterRegistry());
+
+        // When many callers race for the connection
+        Flux.range(0, 32)
+                .flatMap(i -> monitor.masterOffset())
+                .blockLast(Duration.ofSeconds(5));
+
+        // Then only one of them stayed connected
+        assertEquals(1, connections());
+    }
+
+    @Test
+    void testWaitersShareOnePollLoopPerReplica() {
+        // Given a replica that will not reach the offset and no periodic sampling to speak of
+        RedisConfigProperties.ReadRouting settings = new RedisConfigProperties.ReadRouting();
+        settings.setSampleInterval(Duration.ofHours(1));
+        monitor = new ReplicaHealthMonitor(clientResources, RedisURI.create("localhost", 6379),
+                List.of(RedisURI.create("localhost", 6380)), settings, new SimpleMeterRegistry());
+        long unreachable = monitor.masterOffset().block(Duration.ofSeconds(5)) + (1L << 40);
+        long infoCalls = infoCalls();
+
+        // When many reads wait on it at once
+        List<Boolean> caughtUp = Flux.range(0, 50)
+                .flatMap(i -> monitor.awaitReplicas(unreachable, Duration.ofMillis(200)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Then they gave up together after polling it as often as one of them alone would
+        assertEquals(50, caughtUp.stream().filter(reached -> !reached).count());
+        long polls = infoCalls() - infoCalls;
+        assertTrue(polls < 100, polls + " INFO calls");
+    }
+
+    @Test
+    void testWaiterReturnsOnceTheReplicaHasCaughtUp() {
+        // Given
+        monitor = new ReplicaHealthMonitor(clientResources, RedisURI.create("localhost", 6379),
+                List.of(RedisURI.create("localhost", 6380)), new RedisConfigProperties.ReadRouting(),
+                new SimpleMeterRegistry());
+        commands.sync().set("replica-monitor-test", "1");
+        long offset = monitor.masterOffset().block(Duration.ofSeconds(5));
+
+        // When / Then
+        assertTrue(monitor.awaitReplicas(offset, Duration.ofSeconds(1)).block());
+    }
+
+    private long infoCalls() {
+        try (StatefulRedisConnection<String, String> replica = admin.connect(RedisURI.create("localhost", 6380))) {
+            return ReplicaHealthMonitor.parseInfo(replica.sync().info("commandstats")).entrySet().stream()
+                    .filter(stat -> stat.getKey().equals("cmdstat_info"))
+                    .map(stat -> Long.parseLong(stat.getValue().substring(6, stat.getValue().indexOf(','))))
+                    .findFirst()
+                    .orElse(0L);
+        }
+    }
+
+    private long connections() {
+        return commands.sync().clientList().lines()
+                .filter(client -> client.contains("name=" + clientName + " "))
+                .count();
+    }
+}
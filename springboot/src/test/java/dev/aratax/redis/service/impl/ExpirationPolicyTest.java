@@ -0,0 +1,82 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Timed;
+
+class ExpirationPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testTtlIsStretchedByUpToTheJitter() {
+        // Given
+        ExpirationPolicy policy = new ExpirationPolicy(new UserStoreProperties(), meterRegistry);
+        Duration ttl = Duration.ofSeconds(600);
+
+        // When
+        Set<Duration> ttls = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            ttls.add(policy.jittered(ttl));
+        }
+
+        // Then
+        assertTrue(ttls.stream().allMatch(jittered -> jittered.compareTo(ttl) >= 0
+                && jittered.compareTo(Duration.ofSeconds(660)) <= 0));
+        assertTrue(ttls.size() > 900);
+    }
+
+    @Test
+    void testNoJitterKeepsTheTtl() {
+        // Given
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getExpiration().setJitter(0);
+        ExpirationPolicy policy = new ExpirationPolicy(properties, meterRegistry);
+
+        // When / Then
+        assertEquals(Duration.ofSeconds(60), policy.jittered(Duration.ofSeconds(60)));
+    }
+
+    @Test
+    void testRefreshGetsLikelyOnlyNearExpiry() {
+        // Given
+        ExpirationPolicy policy = new ExpirationPolicy(new UserStoreProperties(), meterRegistry);
+
+        // Then nothing is refreshed early before a load was measured
+        assertFalse(policy.refreshEarly(Duration.ofNanos(1), Duration.ZERO));
+
+        // When a load takes about 50ms
+        Timed<String> loaded = policy.measured(() -> Mono.delay(Duration.ofMillis(50)).thenReturn("user"))
+                .block(Duration.ofSeconds(5));
+
+        // Then
+        assertTrue(loaded.elapsed().compareTo(Duration.ofMillis(50)) >= 0);
+        assertTrue(policy.loadNanos() >= Duration.ofMillis(50).toNanos());
+        assertFalse(policy.refreshEarly(Duration.ofHours(1), Duration.ZERO));
+        assertFalse(policy.refreshEarly(Duration.ZERO, Duration.ZERO));
+        assertTrue(policy.refreshEarly(Duration.ofNanos(1), Duration.ZERO));
+        assertEquals(1, meterRegistry.get("user.load.early").counter().count());
+        assertEquals(1, meterRegistry.get("user.load").timer().count());
+    }
+
+    @Test
+    void testStoredLoadTimeOutweighsThisInstance() {
+        // Given an instance that never loaded a user
+        ExpirationPolicy policy = new ExpirationPolicy(new UserStoreProperties(), meterRegistry);
+
+        // When / Then the load time stored with the user, an hour, decides
+        assertTrue(policy.refreshEarly(Duration.ofNanos(1), Duration.ofHours(1)));
+        assertFalse(policy.refreshEarly(Duration.ofDays(365), Duration.ofNanos(1)));
+    }
+}
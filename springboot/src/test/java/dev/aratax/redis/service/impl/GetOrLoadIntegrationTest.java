@@ -0,0 +1,100 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import dev.aratax.redis.service.UserRedisService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// with this beta and loads of about 20ms, a user with a second left is all but certainly refreshed
+// by the next read, and one with a day left all but certainly not
+@ActiveProfiles("replica")
+@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.user-store.expiration.early-refresh-beta=100000")
+class GetOrLoadIntegrationTest {
+
+    private static final Duration DAY = Duration.ofDays(1);
+
+    @Autowired
+    UserRedisService userRedisService;
+
+    @Autowired
+    ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate;
+
+    @Test
+    void testMissIsLoadedOnceAndStoredWithJitteredTtl() {
+        // Given
+        String id = UUID.randomUUID().toString();
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Mono<User>> loader = loaderCounting(loads, "Loaded User");
+
+        // When concurrent readers miss
+        List<User> users = Flux.range(0, 20)
+                .flatMap(i -> userRedisService.getOrLoad(id, DAY, loader))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        // Then
+        assertEquals(20, users.size());
+        assertEquals(1, loads.get());
+        Duration ttl = reactiveStringRedisTemplate.getExpire(UserKeys.of(id)).block(Duration.ofSeconds(5));
+        assertTrue(ttl.compareTo(DAY.minusSeconds(10)) > 0 && ttl.compareTo(DAY.multipliedBy(11).dividedBy(10)) <= 0);
+        assertEquals(true, userRedisService.exists(id).block(Duration.ofSeconds(5)));
+        String loadTime = reactiveStringRedisTemplate.opsForValue().get(UserKeys.loadTimeOf(id)).block(Duration.ofSeconds(5));
+        assertTrue(Long.parseLong(loadTime) >= Duration.ofMillis(20).toNanos());
+        assertTrue(reactiveStringRedisTemplate.getExpire(UserKeys.loadTimeOf(id)).block(Duration.ofSeconds(5)).isPositive());
+    }
+
+    @Test
+    void testUserIsReloadedShortlyBeforeExpiry() throws Exception {
+        // Given a stored user far from expiry
+        String id = UUID.randomUUID().toString();
+        AtomicInteger loads = new AtomicInteger();
+        userRedisService.getOrLoad(id, DAY, loaderCounting(loads, "First")).block(Duration.ofSeconds(5));
+        Thread.sleep(100);
+
+        // When
+        User cached = userRedisService.getOrLoad(id, DAY, loaderCounting(loads, "Second"))
+                .block(Duration.ofSeconds(5));
+
+        // Then
+        assertEquals("First", cached.getName());
+        assertEquals(1, loads.get());
+
+        // When it has a second left
+        reactiveStringRedisTemplate.expire(UserKeys.of(id), Duration.ofSeconds(1)).block(Duration.ofSeconds(5));
+        Thread.sleep(100);
+        User refreshed = userRedisService.getOrLoad(id, DAY, loaderCounting(loads, "Second"))
+                .block(Duration.ofSeconds(5));
+
+        // Then
+        assertEquals("Second", refreshed.getName());
+        assertEquals(2, loads.get());
+        assertTrue(reactiveStringRedisTemplate.getExpire(UserKeys.of(id)).block(Duration.ofSeconds(5))
+                .compareTo(DAY.minusSeconds(10)) > 0);
+    }
+
+    private static Function<String, Mono<User>> loaderCounting(AtomicInteger loads, String name) {
+        return id -> Mono.delay(Duration.ofMillis(20))
+                .map(tick -> {
+                    loads.incrementAndGet();
+                    return new User(id, name, id + "@example.com", 30);
+                });
+    }
+}
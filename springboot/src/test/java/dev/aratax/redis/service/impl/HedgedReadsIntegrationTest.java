@@ -0,0 +1,78 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserRedisService;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// replica read routing is off so stalled replicas are not excluded from reads before the hedge can act
+@ActiveProfiles("replica")
+@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+            "spring.data.redis.read-routing.enabled=false",
+            "app.user-store.hedging.enabled=true",
+            "app.user-store.hedging.min-delay=20ms",
+            "app.user-store.hedging.max-delay=20ms",
+            "app.user-store.hedging.max-extra-load=1"
+        })
+class HedgedReadsIntegrationTest {
+
+    private static final List<String> REPLICAS = List.of("redis://localhost:6380", "redis://localhost:6381");
+
+    @Autowired
+    UserRedisService userRedisService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testReadFromStalledReplicaIsAnsweredByTheMaster() throws Exception {
+        // Given a replicated user
+        User user = new User(UUID.randomUUID().toString(), "Hedged User", "hedged@example.com", 30);
+        userRedisService.save(user).block(Duration.ofSeconds(5));
+        Thread.sleep(200);
+        double won = meterRegistry.get("user.read.hedges").tag("outcome", "won").counter().count();
+
+        // When both replicas stall for a second
+        List<RedisClient> clients = REPLICAS.stream().map(RedisClient::create).toList();
+        try {
+            List<RedisFuture<String>> stalls = clients.stream()
+                    .map(client -> client.connect().async().<String>dispatch(CommandType.DEBUG,
+                            new StatusOutput<>(StringCodec.UTF8), new CommandArgs<>(StringCodec.UTF8).add("SLEEP").add(1)))
+                    .toList();
+            Thread.sleep(50);
+            long start = System.nanoTime();
+            User found = userRedisService.findById(user.getId()).block(Duration.ofSeconds(5));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Then
+            assertEquals("Hedged User", found.getName());
+            assertTrue(elapsedMillis < 500, "read took " + elapsedMillis + "ms");
+            assertEquals(won + 1, meterRegistry.get("user.read.hedges").tag("outcome", "won").counter().count());
+            for (RedisFuture<String> stall : stalls) {
+                stall.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.forEach(RedisClient::shutdown);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.routing.ReadConsistency;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+class HedgedReadsTest {
+
+    private static final Duration STALL = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger sent = new AtomicInteger();
+    private HedgedReads hedgedReads;
+
+    @AfterEach
+    void tearDown() {
+        if (hedgedReads != null) {
+            hedgedReads.close();
+        }
+    }
+
+    @Test
+    void testStalledReadIsOvertakenByItsHedge() {
+        // Given a replica that stalls
+        hedgedReads = new HedgedReads(properties(1), true, meterRegistry);
+
+        // When
+        long start = System.nanoTime();
+        String answer = hedgedReads.read(() -> read(STALL)).block();
+
+        // Then the master answered after the hedge delay
+        assertEquals("master", answer);
+        assertEquals(2, sent.get());
+        assertEquals(1, hedges("won"));
+        assertEquals(0, hedges("lost"));
+        assertTrue(System.nanoTime() - start < STALL.toNanos() / 2);
+        assertEquals(1, reads().count());
+        assertTrue(reads().totalTime(TimeUnit.NANOSECONDS) < STALL.toNanos() / 2);
+    }
+
+    @Test
+    void testOnlyAnsweredReadsAreTimed() {
+        // Given hedging that never kicks in
+        UserStoreProperties properties = properties(1);
+        properties.getHedging().setMinDelay(STALL);
+        properties.getHedging().setMaxDelay(STALL);
+        hedgedReads = new HedgedReads(properties, true, meterRegistry);
+
+        // When one read fails, one is given up by its caller and one is answered
+        assertThrows(IllegalStateException.class,
+                () -> hedgedReads.read(() -> Mono.error(new IllegalStateException("replica down"))).block());
+        hedgedReads.read(() -> read(STALL)).timeout(Duration.ofMillis(50), Mono.just("gave up")).block();
+        hedgedReads.read(() -> read(Duration.ZERO)).block();
+
+        // Then
+        assertEquals(1, reads().count());
+    }
+
+    @Test
+    void testFastReadIsNotHedged() {
+        // Given
+        hedgedReads = new HedgedReads(properties(1), true, meterRegistry);
+
+        // When
+        String answer = hedgedReads.read(() -> read(Duration.ZERO)).block();
+
+        // Then
+        assertEquals("replica", answer);
+        assertEquals(1, sent.get());
+        assertEquals(0, hedges("won") + hedges("lost") + hedges("throttled"));
+    }
+
+    @Test
+    void testEmptyAnswerWinsLikeAValue() {
+        // Given a replica answering just after the hedge was sent, a master that stalls
+        hedgedReads = new HedgedReads(properties(1), true, meterRegistry);
+
+        // When
+        String answer = hedgedReads.read(() -> Mono.deferContextual(context -> {
+            sent.incrementAndGet();
+            return ReadConsistency.route(context) == ReadConsistency.Route.MASTER
+                    ? Mono.delay(STALL).thenReturn("master")
+                    : Mono.delay(Duration.ofMillis(50)).then(Mono.<String>empty());
+        })).block();
+
+        // Then the replica's miss is the answer
+        assertNull(answer);
+        assertEquals(2, sent.get());
+        assertEquals(1, hedges("lost"));
+    }
+
+    @Test
+    void testHedgesAreCappedByTheExtraLoadBudget() {
+        // Given every read earns half a hedge
+        hedgedReads = new HedgedReads(properties(0.5), true, meterRegistry);
+
+        // When four reads stall
+        for (int i = 0; i < 4; i++) {
+            hedgedReads.read(() -> read(Duration.ofMillis(100))).block();
+        }
+
+        // Then every second read could be hedged
+        assertEquals(2, hedges("won"));
+        assertEquals(2, hedges("throttled"));
+        assertEquals(6, sent.get());
+    }
+
+    @Test
+    void testDelayFollowsRecentReadLatency() {
+        // Given
+        UserStoreProperties properties = properties(1);
+        properties.getHedging().setMaxDelay(Duration.ofSeconds(1));
+        hedgedReads = new HedgedReads(properties, true, meterRegistry);
+        assertEquals(Duration.ofSeconds(1), hedgedReads.delay());
+
+        // When reads took about 30ms
+        for (int i = 0; i < 100; i++) {
+            meterRegistry.get("user.read").timer().record(30, TimeUnit.MILLISECONDS);
+        }
+        hedgedReads.refreshDelay();
+
+        // Then reads slower than them are hedged
+        long delayMillis = hedgedReads.delay().toMillis();
+        assertTrue(delayMillis >= 25 && delayMillis <= 35, "delay " + delayMillis + "ms");
+    }
+
+    @Test
+    void testNothingIsHedgedWithoutAMasterConnection() {
+        // Given hedging asked for in a profile whose master route is the read's own connection
+        hedgedReads = new HedgedReads(properties(1), false, meterRegistry);
+
+        // When
+        String answer = hedgedReads.read(() -> read(Duration.ofMillis(50))).block();
+
+        // Then the read is sent once
+        assertEquals("replica", answer);
+        assertEquals(1, sent.get());
+        assertEquals(0, hedges("won") + hedges("lost") + hedges("throttled"));
+    }
+
+    // the master answers at once, the replica after the given time
+    private Mono<String> read(Duration replicaLatency) {
+        return Mono.deferContextual(context -> {
+            sent.incrementAndGet();
+            return ReadConsistency.route(context) == ReadConsistency.Route.MASTER
+                    ? Mono.just("master")
+                    : Mono.delay(replicaLatency).thenReturn("replica");
+        });
+    }
+
+    private Timer reads() {
+        return meterRegistry.get("user.read").timer();
+    }
+
+    private double hedges(String outcome) {
+        return meterRegistry.get("user.read.hedges").tag("outcome", outcome).counter().count();
+    }
+
+    private static UserStoreProperties properties(double maxExtraLoad) {
+        UserStoreProperties properties = new UserStoreProperties();
+        UserStoreProperties.Hedging hedging = properties.getHedging();
+        hedging.setEnabled(true);
+        hedging.setMinDelay(Duration.ofMillis(10));
+        hedging.setMaxDelay(Duration.ofMillis(10));
+        hedging.setMaxExtraLoad(maxExtraLoad);
+        return properties;
+    }
+}
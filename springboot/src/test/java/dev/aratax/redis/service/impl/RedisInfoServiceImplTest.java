@@ -1,7 +1,13 @@
 package dev.aratax.redis.service.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,7 +17,9 @@ import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 
-import dev.aratax.redis.service.impl.RedisInfoServiceImpl;
+import dev.aratax.redis.config.RedisConfigProperties;
+import dev.aratax.redis.diagnostics.TopologyProbe;
+import dev.aratax.redis.model.RedisDiagnostics;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -27,11 +35,16 @@ class RedisInfoServiceImplTest {
     @Mock
     private ReactiveRedisConnection connection;
 
+    @Mock
+    private TopologyProbe topologyProbe;
+
     private RedisInfoServiceImpl redisInfoService;
 
     @BeforeEach
     void setup() {
-        redisInfoService = new RedisInfoServiceImpl(reactiveRedisTemplate);
+        RedisConfigProperties properties = new RedisConfigProperties();
+        properties.getDiagnostics().setTimeToLive(Duration.ofMinutes(1));
+        redisInfoService = new RedisInfoServiceImpl(reactiveRedisTemplate, topologyProbe, properties);
     }
 
     @Test
@@ -47,4 +60,20 @@ class RedisInfoServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    void testDiagnosticsAreReusedWithinTimeToLive() {
+        // Given a probe that counts its runs
+        AtomicInteger probes = new AtomicInteger();
+        when(topologyProbe.probe()).thenReturn(Mono.fromSupplier(() -> new RedisDiagnostics(
+                "replica", RedisDiagnostics.Status.UP, Instant.ofEpochSecond(probes.incrementAndGet()), List.of())));
+
+        // When polled repeatedly within the time to live
+        RedisDiagnostics first = redisInfoService.diagnostics().block();
+        RedisDiagnostics second = redisInfoService.diagnostics().block();
+
+        // Then the nodes were probed once
+        assertEquals(1, probes.get());
+        assertEquals(first, second);
+    }
+
 }
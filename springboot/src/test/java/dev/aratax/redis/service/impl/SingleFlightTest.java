@@ -0,0 +1,87 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.config.UserStoreProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(new UserStoreProperties(), meterRegistry);
+
+    @Test
+    void testConcurrentReadsOfOneKeyShareOneCommand() throws Exception {
+        // Given a read that stays in flight until the reply is emitted
+        AtomicInteger commands = new AtomicInteger();
+        Sinks.One<String> reply = Sinks.one();
+
+        // When
+        List<CompletableFuture<String>> reads = IntStream.range(0, 100)
+                .mapToObj(i -> singleFlight.share("findById", "1", () -> {
+                    commands.incrementAndGet();
+                    return reply.asMono();
+                }).toFuture())
+                .toList();
+        Mono<String> otherKey = singleFlight.share("findById", "2", () -> {
+            commands.incrementAndGet();
+            return Mono.just("other");
+        });
+
+        // Then
+        assertEquals("other", otherKey.block(Duration.ofSeconds(5)));
+        assertFalse(reads.get(0).isDone());
+
+        // When
+        reply.tryEmitValue("shared");
+
+        // Then
+        for (CompletableFuture<String> read : reads) {
+            assertEquals("shared", read.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, commands.get());
+        assertEquals(99, meterRegistry.get("single.flight.coalesced").tag("operation", "findById").counter().count());
+        assertEquals(0, meterRegistry.get("single.flight.in.flight").gauge().value());
+    }
+
+    @Test
+    void testReadAfterAWriteDoesNotJoinAnEarlierRead() throws Exception {
+        // Given a read issued before a write of its key, still in flight
+        Sinks.One<String> beforeWrite = Sinks.one();
+        CompletableFuture<String> early = singleFlight.share("findById", "1", beforeWrite::asMono).toFuture();
+
+        // When the write lands and another caller reads
+        singleFlight.forget("1");
+        Mono<String> late = singleFlight.share("findById", "1", () -> Mono.just("written"));
+
+        // Then the late caller reads the write, the early one still gets its read
+        assertEquals("written", late.block(Duration.ofSeconds(5)));
+        beforeWrite.tryEmitValue("stale");
+        assertEquals("stale", early.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testReadAfterCompletionIssuesANewCommand() {
+        // Given
+        AtomicInteger commands = new AtomicInteger();
+
+        // When
+        singleFlight.share("exists", "1", () -> Mono.fromCallable(commands::incrementAndGet)).block();
+        Integer second = singleFlight.share("exists", "1", () -> Mono.fromCallable(commands::incrementAndGet)).block();
+
+        // Then
+        assertEquals(2, second);
+    }
+}
@@ -0,0 +1,71 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import dev.aratax.redis.service.UserKeys;
+import io.lettuce.core.cluster.SlotHash;
+
+class SlotBatcherTest {
+
+    private final List<String> keys = IntStream.range(0, 100).mapToObj(i -> UserKeys.of("user-" + i)).toList();
+
+    @Test
+    void testBatchStaysWholeOutsideACluster() {
+        // Given
+        SlotBatcher slotBatcher = new SlotBatcher(factory(false));
+
+        // When
+        Collection<List<String>> groups = slotBatcher.bySlot(keys, Function.identity());
+
+        // Then
+        assertEquals(List.of(keys), List.copyOf(groups));
+    }
+
+    @Test
+    void testClusterBatchIsGroupedBySlot() {
+        // Given
+        SlotBatcher slotBatcher = new SlotBatcher(factory(true));
+
+        // When
+        Collection<List<String>> groups = slotBatcher.bySlot(keys, Function.identity());
+
+        // Then every group is one slot, and no key is lost or repeated
+        long slots = keys.stream().map(SlotHash::getSlot).distinct().count();
+        assertEquals(slots, groups.size());
+        groups.forEach(group -> assertEquals(1, group.stream().map(SlotHash::getSlot).distinct().count()));
+        List<String> regrouped = new ArrayList<>();
+        groups.forEach(regrouped::addAll);
+        assertEquals(keys.size(), regrouped.size());
+        assertEquals(keys.stream().sorted().toList(), regrouped.stream().sorted().toList());
+    }
+
+    @Test
+    void testGroupsKeepTheOrderOfFirstAppearance() {
+        // Given two ids of the same slot around one of another slot
+        SlotBatcher slotBatcher = new SlotBatcher(factory(true));
+        List<String> ids = List.of("{a}1", "b", "{a}2");
+
+        // When
+        Collection<List<String>> groups = slotBatcher.bySlot(ids, id -> "user::" + id);
+
+        // Then
+        assertEquals(List.of(List.of("{a}1", "{a}2"), List.of("b")), List.copyOf(groups));
+    }
+
+    private static LettuceConnectionFactory factory(boolean clusterAware) {
+        LettuceConnectionFactory factory = mock(LettuceConnectionFactory.class);
+        when(factory.isClusterAware()).thenReturn(clusterAware);
+        return factory;
+    }
+}
@@ -0,0 +1,118 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import dev.aratax.redis.RedisApplication;
+import dev.aratax.redis.model.User;
+import dev.aratax.redis.service.UserKeys;
+import dev.aratax.redis.service.UserRedisService;
+
+@ActiveProfiles("replica")
+@SpringBootTest(classes = RedisApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserIndexRepairIntegrationTest {
+
+    @Autowired
+    UserRedisService userRedisService;
+
+    @Autowired
+    UserIndexRepair indexRepair;
+
+    @Autowired
+    UserSecondaryIndex secondaryIndex;
+
+    @Autowired
+    ReactiveRedisTemplate<String, String> reactiveStringRedisTemplate;
+
+    @Test
+    void testRepairRemovesOnlyIdsOfMissingUsers() throws Exception {
+        // Given a live user, a user about to expire and an id without any user
+        User live = new User(UUID.randomUUID().toString(), "Live User", "live@example.com", 30);
+        User expiring = new User(UUID.randomUUID().toString(), "Expiring User", "expiring@example.com", 30);
+        String orphan = UUID.randomUUID().toString();
+        userRedisService.save(live).block(Duration.ofSeconds(5));
+        userRedisService.saveWithExpiration(expiring, 1).block(Duration.ofSeconds(5));
+        reactiveStringRedisTemplate.opsForZSet().add(UserKeys.INDEX, orphan, 0).block(Duration.ofSeconds(5));
+        Thread.sleep(1500);
+
+        // When
+        Long removed = indexRepair.repair().block(Duration.ofSeconds(30));
+
+        // Then
+        assertNotNull(removed);
+        assertTrue(removed >= 2);
+        assertNotNull(score(live.getId()));
+        assertNull(score(expiring.getId()));
+        assertNull(score(orphan));
+        assertEquals(true, userRedisService.exists(live.getId()).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testRebuildIndexesStoredUsersMissingFromTheIndex() {
+        // Given a stored user whose index updates were lost
+        String email = UUID.randomUUID() + "@example.com";
+        User unindexed = new User(UUID.randomUUID().toString(), "Unindexed User", email, 30);
+        userRedisService.save(unindexed).block(Duration.ofSeconds(5));
+        reactiveStringRedisTemplate.opsForZSet().remove(UserKeys.INDEX, unindexed.getId()).block(Duration.ofSeconds(5));
+        secondaryIndex.remove(List.of(unindexed.getId())).block(Duration.ofSeconds(5));
+
+        // When
+        Long indexed = userRedisService.rebuildIndex().block(Duration.ofSeconds(30));
+
+        // Then it is counted and found by email again
+        assertNotNull(indexed);
+        assertTrue(indexed >= 1);
+        assertNotNull(score(unindexed.getId()));
+        assertEquals(unindexed.getId(), userRedisService.findByEmail(email).map(User::getId).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testOnlyOneInstanceTakesTheTurnPerInterval() {
+        // Given no instance has walked the index in this interval
+        reactiveStringRedisTemplate.delete(UserKeys.INDEX_REPAIR).block(Duration.ofSeconds(5));
+
+        // When this instance asks twice
+        Boolean first = indexRepair.takeTurn().block(Duration.ofSeconds(5));
+        Boolean second = indexRepair.takeTurn().block(Duration.ofSeconds(5));
+
+        // Then only the first takes it, and the lock expires with the interval
+        assertEquals(true, first);
+        assertEquals(false, second);
+        Duration ttl = reactiveStringRedisTemplate.getExpire(UserKeys.INDEX_REPAIR).block(Duration.ofSeconds(5));
+        assertNotNull(ttl);
+        assertTrue(ttl.isPositive());
+        reactiveStringRedisTemplate.delete(UserKeys.INDEX_REPAIR).block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testIndexUpdateOfAnOlderVersionIsSkipped() {
+        // Given a user saved twice, with a new email the second time
+        String email = UUID.randomUUID() + "@example.com";
+        User user = new User(UUID.randomUUID().toString(), "Moving User", "old-" + email, 30);
+        User first = userRedisService.save(user).block(Duration.ofSeconds(5));
+        user.setEmail(email);
+        userRedisService.save(user).block(Duration.ofSeconds(5));
+
+        // When the index update of the first save arrives late
+        secondaryIndex.index(first).block(Duration.ofSeconds(5));
+
+        // Then the user is still found by the email stored last
+        assertEquals(user.getId(), userRedisService.findByEmail(email).map(User::getId).block(Duration.ofSeconds(5)));
+    }
+
+    private Double score(String id) {
+        return reactiveStringRedisTemplate.opsForZSet().score(UserKeys.INDEX, id).block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,115 @@
+package dev.aratax.redis.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.aratax.redis.cache.HotKeyTracker;
+import dev.aratax.redis.cache.UserNearCache;
+import dev.aratax.redis.config.UserStoreProperties;
+import dev.aratax.redis.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class WriteBehindBufferTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserStore userStore = mock(UserStore.class);
+    private final UserSecondaryIndex secondaryIndex = mock(UserSecondaryIndex.class);
+    private final UserStoreProperties properties = new UserStoreProperties();
+    private WriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setup() {
+        when(secondaryIndex.indexWritten(anyCollection())).thenReturn(Mono.empty());
+        properties.getWriteBehind().setEnabled(true);
+        // only size thresholds and explicit settles flush in these tests
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+
+    @Test
+    void testSavesOfOneUserAreCoalesced() throws Exception {
+        // Given
+        when(userStore.write(any(), any())).thenReturn(Mono.just(1L));
+        buffer = newBuffer();
+        User first = new User("1", "First", "one@example.com", 30);
+        User latest = new User("1", "Latest", "one@example.com", 31);
+
+        // When
+        CompletableFuture<User> firstSave = buffer.submit(first, null).toFuture();
+        CompletableFuture<User> latestSave = buffer.submit(latest, null).toFuture();
+
+        // Then
+        assertFalse(firstSave.isDone());
+        assertEquals("Latest", buffer.buffered("1").getName());
+
+        // When
+        buffer.settle("1").block(Duration.ofSeconds(5));
+
+        // Then
+        assertEquals("Latest", firstSave.get(5, TimeUnit.SECONDS).getName());
+        assertEquals(1L, latestSave.get(5, TimeUnit.SECONDS).getVersion());
+        assertNull(latest.getVersion());
+        verify(userStore, times(1)).write(any(), any());
+        verify(userStore).write(eq(latest), any());
+        assertEquals(1, meterRegistry.counter("write.behind.coalesced").count());
+        assertEquals(1, meterRegistry.get("write.behind.flush.lag").timer().count());
+    }
+
+    @Test
+    void testFullBufferHoldsSavesUntilAFlushMakesRoom() throws Exception {
+        // Given a buffer of one user whose first write is still in flight
+        Sinks.One<Long> firstWrite = Sinks.one();
+        when(userStore.write(any(), any()))
+                .thenReturn(firstWrite.asMono())
+                .thenReturn(Mono.just(1L));
+        properties.getWriteBehind().setMaxPending(1);
+        properties.getWriteBehind().setBatchSize(1);
+        buffer = newBuffer();
+        CompletableFuture<User> a = buffer.submit(new User("a", "A", null, null), null).toFuture();
+        CompletableFuture<User> b = buffer.submit(new User("b", "B", null, null), null).toFuture();
+
+        // When
+        CompletableFuture<User> c = buffer.submit(new User("c", "C", null, null), null).toFuture();
+
+        // Then
+        assertEquals(1, meterRegistry.counter("write.behind.backpressure").count());
+        assertFalse(c.isDone());
+
+        // When
+        firstWrite.tryEmitValue(1L);
+
+        // Then
+        assertEquals(1L, a.get(5, TimeUnit.SECONDS).getVersion());
+        assertEquals(1L, b.get(5, TimeUnit.SECONDS).getVersion());
+        assertEquals(1L, c.get(5, TimeUnit.SECONDS).getVersion());
+        verify(userStore, times(3)).write(any(), any());
+    }
+
+    private WriteBehindBuffer newBuffer() {
+        return new WriteBehindBuffer(userStore, new UserNearCache(new UserStoreProperties(),
+                new HotKeyTracker(new UserStoreProperties(), meterRegistry), meterRegistry),
+                new SingleFlight(new UserStoreProperties(), meterRegistry), secondaryIndex, properties, meterRegistry);
+    }
+}